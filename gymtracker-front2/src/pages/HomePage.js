@@ -208,21 +208,18 @@ const HomePage = () => {
   const [isEditing, setIsEditing] = useState(false);
   const [exerciseToEdit, setExerciseToEdit] = useState(null);
 
-  // Function to fetch exercises
+  // Function to fetch exercises with the totals of their two latest training days in one request
   const fetchExercises = async () => {
-    console.log('Fetching exercises...');
+    console.log('Fetching dashboard...');
     try {
-      const response = await axios.get(`/users/${userId}/exercises`, {
+      const response = await axios.get(`/users/${userId}/dashboard`, {
+        params: { days: 2 },
         headers: {
           Authorization: `Bearer ${authToken}`,
         },
       });
-      console.log('Fetched Exercises:', response.data);
+      console.log('Fetched Dashboard:', response.data);
       setExercises(response.data);
-
-      // After fetching exercises, fetch logs
-      await fetchLogs(response.data); // Pass exercises to fetchLogs
-
       setIsLoading(false);
     } catch (error) {
       console.error('Failed to fetch exercises:', error);
@@ -235,39 +232,26 @@ const HomePage = () => {
     }
   };
 
-  // Function to fetch all exercise logs
-  const fetchLogs = async (fetchedExercises) => {
+  // Function to fetch the logs of the selected exercise, grouped by date
+  const fetchLogs = async (exerciseId) => {
     try {
-      // Create an array of promises to fetch logs for each exercise
-      const logsPromises = fetchedExercises.map((exercise) =>
-        axios.get(`/exercises/${exercise.id}/logs`, {
-          headers: {
-            Authorization: `Bearer ${authToken}`,
-          },
-        })
-      );
-
-      // Wait for all log fetch requests to complete
-      const logsResponses = await Promise.all(logsPromises);
-
-      // Group logs by exerciseId and then by date
-      const grouped = {};
-
-      logsResponses.forEach((response, index) => {
-        const exerciseId = fetchedExercises[index].id;
-        const logsData = response.data; // Array of log objects
+      const response = await axios.get(`/exercises/${exerciseId}/logs`, {
+        headers: {
+          Authorization: `Bearer ${authToken}`,
+        },
+      });
 
-        grouped[exerciseId] = {};
+      const grouped = {};
+      grouped[exerciseId] = {};
 
-        logsData.forEach((log) => {
-          const date = new Date(log.timestamp).toISOString().split('T')[0]; // Format: YYYY-MM-DD
+      response.data.forEach((log) => {
+        const date = new Date(log.timestamp).toISOString().split('T')[0]; // Format: YYYY-MM-DD
 
-          if (!grouped[exerciseId][date]) {
-            grouped[exerciseId][date] = [];
-          }
+        if (!grouped[exerciseId][date]) {
+          grouped[exerciseId][date] = [];
+        }
 
-          grouped[exerciseId][date].push(log);
-        });
+        grouped[exerciseId][date].push(log);
       });
 
       setLogsGrouped(grouped);
@@ -283,6 +267,13 @@ const HomePage = () => {
     console.log('useEffect triggered, fetching exercises...');
     fetchExercises();
   }, [userId, logsUpdated]);
+
+  // Fetch the logs of the selected exercise only when one is selected
+  useEffect(() => {
+    if (selectedExerciseId) {
+      fetchLogs(selectedExerciseId);
+    }
+  }, [selectedExerciseId, logsUpdated]);
   
   const handleExerciseAdded = () => {
     console.log('handleExerciseAdded called');
@@ -382,30 +373,19 @@ const HomePage = () => {
             ) : (
               <GridContainer>
                 {exercises.map((exercise) => {
-                  const exerciseLogs = logsGrouped[exercise.id] || {};
-                  const dates = Object.keys(exerciseLogs);
+                  // Days come from the dashboard, newest first
+                  const days = exercise.days || [];
 
                   // Calculate total kg and difference
                   let totalKg = 0;
                   let diffDisplay = null;
                   let variant = 'neutral';
 
-                  if (dates.length > 0) {
-                    const sortedDates = dates.sort((a, b) => new Date(b) - new Date(a));
-                    const latestDate = sortedDates[0];
-                    const latestLogs = exerciseLogs[latestDate];
-                    totalKg = latestLogs.reduce(
-                      (sum, log) => sum + log.weight * log.reps,
-                      0
-                    );
-
-                    if (sortedDates.length >= 2) {
-                      const secondLatestDate = sortedDates[1];
-                      const secondLatestLogs = exerciseLogs[secondLatestDate];
-                      const secondTotalKg = secondLatestLogs.reduce(
-                        (sum, log) => sum + log.weight * log.reps,
-                        0
-                      );
+                  if (days.length > 0) {
+                    totalKg = days[0].volume;
+
+                    if (days.length >= 2) {
+                      const secondTotalKg = days[1].volume;
 
                       const diffPercent =
                         secondTotalKg > 0
@@ -0,0 +1,16 @@
+package backendsyksy24.gymtracker.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+
+// Non-blocking stack for the high-fan-in reads of gymtracker: the exercise list and the exercise logs, on WebFlux and
+// R2DBC. It reads the tables the servlet application writes and accepts its tokens; everything else stays there.
+// Users only come from tokens, so there is no user details service.
+@SpringBootApplication(exclude = ReactiveUserDetailsServiceAutoConfiguration.class)
+public class GymtrackerReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(GymtrackerReactiveApplication.class, args);
+    }
+}
@@ -0,0 +1,86 @@
+package backendsyksy24.gymtracker.reactive.controller;
+
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import backendsyksy24.gymtracker.reactive.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.reactive.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.reactive.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.reactive.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.reactive.util.LogCursor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The read endpoints of the servlet application's ExerciseController, with the same paths, parameters and JSON.
+// Bodies are written as the rows arrive; a full log is never held in memory.
+@RestController
+@RequestMapping("/api")
+public class ExerciseController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final LocalDateTime MIN_TIMESTAMP = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+
+    public ExerciseController(ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository) {
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+    }
+
+    /* Returns all exercises for the specified user. */
+    @GetMapping("/users/{userId}/exercises")
+    public Flux<ExerciseDTO> getUserExercises(@PathVariable Long userId) {
+        return exerciseRepository.findDtosByUserId(userId);
+    }
+
+    /* Returns the logs for the specified exercise.
+     * Without parameters all logs are streamed, oldest first: a JSON array, or one object per line when the client
+     * accepts application/x-ndjson. Rows are read as fast as the client takes them. With limit, cursor, from or
+     * to, one page is returned newest first, optionally limited to the time range [from, to). The cursor for the
+     * next page is in the X-Next-Cursor header. */
+    @GetMapping("/exercises/{exerciseId}/logs")
+    public Mono<ResponseEntity<Flux<ExerciseLogDTO>>> getExerciseLogs(@PathVariable Long exerciseId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (limit == null && cursor == null && from == null && to == null) {
+            return Mono.just(ResponseEntity.ok(exerciseLogRepository.findDtosByExerciseId(exerciseId)));
+        }
+
+        LogCursor after;
+        try {
+            after = cursor != null ? LogCursor.decode(cursor)
+                    : new LogCursor(to != null ? to : MAX_TIMESTAMP, Long.MIN_VALUE);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+
+        // Fetch one extra row to find out whether there is a next page
+        return exerciseLogRepository.findPage(exerciseId, from != null ? from : MIN_TIMESTAMP, after.getTimestamp(),
+                        after.getId(), pageSize + 1)
+                .collectList()
+                .map(logs -> {
+                    if (logs.size() <= pageSize) {
+                        return ResponseEntity.ok(Flux.fromIterable(logs));
+                    }
+                    ExerciseLogDTO last = logs.get(pageSize - 1);
+                    return ResponseEntity.ok()
+                            .header(NEXT_CURSOR_HEADER, new LogCursor(last.getTimestamp(), last.getId()).encode())
+                            .body(Flux.fromIterable(logs.subList(0, pageSize)));
+                });
+    }
+}
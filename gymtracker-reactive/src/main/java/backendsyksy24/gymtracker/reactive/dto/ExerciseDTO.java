@@ -0,0 +1,39 @@
+package backendsyksy24.gymtracker.reactive.dto;
+
+//Data Transfer Object for Exercise, encapsulating exercise details.
+public class ExerciseDTO {
+    private Long id;
+    private String name;
+    private String description;
+
+    public ExerciseDTO(Long id, String name, String description) {
+        this.id = id;
+        this.name = name;
+        this.description = description; 
+    }
+
+    // Getters and setters 
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
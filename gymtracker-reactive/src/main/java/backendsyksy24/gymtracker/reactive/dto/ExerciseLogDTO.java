@@ -0,0 +1,52 @@
+package backendsyksy24.gymtracker.reactive.dto;
+
+import java.time.LocalDateTime;
+
+// Data Transfer Object for one logged set, selected straight from the log table. Serializes like the servlet
+// application's ExerciseLogDTO.
+public class ExerciseLogDTO {
+    private Long id;
+    private LocalDateTime timestamp;
+    private int weight;
+    private int reps;
+
+    public ExerciseLogDTO(Long id, LocalDateTime timestamp, int weight, int reps) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.weight = weight;
+        this.reps = reps;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getReps() {
+        return reps;
+    }
+
+    public void setReps(int reps) {
+        this.reps = reps;
+    }
+}
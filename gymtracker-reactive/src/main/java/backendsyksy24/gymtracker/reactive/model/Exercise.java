@@ -0,0 +1,70 @@
+package backendsyksy24.gymtracker.reactive.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+// Row of the exercise table, as the servlet application's Exercise entity maps it. Rows with deletedAt set are
+// deleted and wait for the purger.
+@Table("exercise_table")
+public class Exercise {
+
+    @Id
+    private Long id;
+    private String name;
+    private String description;
+    private Long userId;
+    private LocalDateTime deletedAt;
+
+    public Exercise() {
+    }
+
+    public Exercise(Long id, String name, String description, Long userId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.userId = userId;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,70 @@
+package backendsyksy24.gymtracker.reactive.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+// Row of the exercise log table, as the servlet application's ExerciseLog entity maps it
+@Table("exercise_log_table")
+public class ExerciseLog {
+
+    @Id
+    private Long id;
+    private LocalDateTime timestamp;
+    private int weight;
+    private int reps;
+    private Long exerciseId;
+
+    public ExerciseLog() {
+    }
+
+    public ExerciseLog(Long id, Long exerciseId, LocalDateTime timestamp, int weight, int reps) {
+        this.id = id;
+        this.exerciseId = exerciseId;
+        this.timestamp = timestamp;
+        this.weight = weight;
+        this.reps = reps;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getReps() {
+        return reps;
+    }
+
+    public void setReps(int reps) {
+        this.reps = reps;
+    }
+
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+}
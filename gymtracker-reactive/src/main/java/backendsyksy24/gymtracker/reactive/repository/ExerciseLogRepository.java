@@ -0,0 +1,32 @@
+package backendsyksy24.gymtracker.reactive.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import backendsyksy24.gymtracker.reactive.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.reactive.model.ExerciseLog;
+import reactor.core.publisher.Flux;
+
+// Reactive counterpart of the servlet application's ExerciseLogRepository, for the queries the read endpoints use.
+// Rows are emitted as the subscriber requests them, so a slow client also slows down the reading of the result.
+public interface ExerciseLogRepository extends ReactiveCrudRepository<ExerciseLog, Long> {
+
+    // All logs of an exercise, oldest first, in the order of the (exercise_id, timestamp, id) index
+    @Query("select id, timestamp, weight, reps from exercise_log_table where exercise_id = :exerciseId "
+            + "order by timestamp, id")
+    Flux<ExerciseLogDTO> findDtosByExerciseId(@Param("exerciseId") Long exerciseId);
+
+    // Keyset page, newest first: logs in [from, before) plus the logs at exactly "before" with a smaller id
+    @Query("select id, timestamp, weight, reps from exercise_log_table where exercise_id = :exerciseId "
+            + "and timestamp >= :from "
+            + "and (timestamp < :beforeTimestamp or (timestamp = :beforeTimestamp and id < :beforeId)) "
+            + "order by timestamp desc, id desc limit :limit")
+    Flux<ExerciseLogDTO> findPage(@Param("exerciseId") Long exerciseId,
+                                  @Param("from") LocalDateTime from,
+                                  @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                  @Param("beforeId") Long beforeId,
+                                  @Param("limit") int limit);
+}
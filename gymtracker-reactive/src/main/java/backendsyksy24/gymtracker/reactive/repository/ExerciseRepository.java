@@ -0,0 +1,18 @@
+package backendsyksy24.gymtracker.reactive.repository;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import backendsyksy24.gymtracker.reactive.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.reactive.model.Exercise;
+import reactor.core.publisher.Flux;
+
+// Reactive counterpart of the servlet application's ExerciseRepository, for the queries the read endpoints use
+public interface ExerciseRepository extends ReactiveCrudRepository<Exercise, Long> {
+
+    // Selects only the columns the exercise list needs. Deleted exercises are hidden, like the entity's restriction.
+    @Query("select id, name, description from exercise_table where user_id = :userId and deleted_at is null "
+            + "order by id")
+    Flux<ExerciseDTO> findDtosByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,56 @@
+package backendsyksy24.gymtracker.reactive.security;
+
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.jsonwebtoken.JwtException;
+import reactor.core.publisher.Mono;
+
+// Port of the servlet application's JwtRequestFilter: verifies the bearer token once and authenticates the request
+// from its claims. Tokens without the role and user id claims (issued before they were added, long expired by now)
+// are not accepted; there is no database lookup on this stack. An invalid token leaves the request anonymous.
+// Added to the security chain by WebSecurityConfig; not a bean, which WebFlux would also run outside the chain.
+public class JwtAuthenticationWebFilter implements WebFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationWebFilter.class);
+    private static final String BEARER = "Bearer ";
+
+    private final JwtVerifier jwtVerifier;
+
+    public JwtAuthenticationWebFilter(JwtVerifier jwtVerifier) {
+        this.jwtVerifier = jwtVerifier;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorizationHeader == null || !authorizationHeader.startsWith(BEARER)) {
+            return chain.filter(exchange);
+        }
+        VerifiedToken token;
+        try {
+            token = jwtVerifier.verify(authorizationHeader.substring(BEARER.length()));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("JWT token verification failed", e);
+            return chain.filter(exchange);
+        }
+        if (token.getSubject() == null || token.getUserId() == null || token.getRoles().isEmpty()
+                || token.isExpired(Instant.now())) {
+            return chain.filter(exchange);
+        }
+        AuthenticatedUser user = new AuthenticatedUser(token.getUserId(), token.getSubject(), "",
+                AuthorityUtils.createAuthorityList(token.getRoles()));
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
+    }
+}
@@ -0,0 +1,106 @@
+package backendsyksy24.gymtracker.reactive.security;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+
+/*
+ * Verifies the tokens the servlet application issues, with the keys of its shared JWT keyring file
+ * (gymtracker.jwt.keyring.location, lines  kid=base64Secret[,activationInstant]). Every key in the file verifies;
+ * this application signs nothing, so activation times are ignored. The file is read once at startup.
+ */
+@Component
+public class JwtVerifier {
+
+    // Claim names of JwtUtil in the servlet application
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    private static final Logger log = LoggerFactory.getLogger(JwtVerifier.class);
+
+    private final Map<String, Key> keys;
+    private final JwtParser parser;
+
+    public JwtVerifier(@Value("${gymtracker.jwt.keyring.location:}") String location) {
+        if (StringUtils.hasText(location)) {
+            this.keys = load(Path.of(location));
+        } else {
+            log.warn("No JWT keyring configured, no token can be verified");
+            this.keys = Map.of();
+        }
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = verificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new SignatureException("Unknown signing key id: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
+
+    // Parses the token and verifies its signature and expiry once.
+    // Throws a JwtException if the token is malformed, tampered with or expired.
+    public VerifiedToken verify(String token) throws JwtException {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        String role = claims.get(ROLE_CLAIM, String.class);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get(USER_ID_CLAIM, Long.class),
+                role == null ? List.of() : List.of(role),
+                expiration == null ? null : expiration.toInstant());
+    }
+
+    // Tokens without a kid are only accepted when the keyring holds a single key, like JwtKeyring
+    private Key verificationKey(String kid) {
+        if (kid == null) {
+            return keys.size() == 1 ? keys.values().iterator().next() : null;
+        }
+        return keys.get(kid);
+    }
+
+    private static Map<String, Key> load(Path path) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load JWT keyring from " + path, e);
+        }
+        Map<String, Key> keys = new HashMap<>();
+        for (String kid : properties.stringPropertyNames()) {
+            String secret = properties.getProperty(kid).split(",", 2)[0].trim();
+            keys.put(kid, Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret)));
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("JWT keyring " + path + " contains no keys");
+        }
+        return Map.copyOf(keys);
+    }
+}
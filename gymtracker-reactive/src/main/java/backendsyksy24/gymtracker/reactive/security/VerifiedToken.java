@@ -0,0 +1,42 @@
+package backendsyksy24.gymtracker.reactive.security;
+
+import java.time.Instant;
+import java.util.List;
+
+// Immutable result of parsing and verifying a JWT once. Holds everything the web filter needs.
+public final class VerifiedToken {
+
+    private final String subject;
+    private final Long userId;
+    private final List<String> roles;
+    private final Instant expiration;
+
+    public VerifiedToken(String subject, Long userId, List<String> roles, Instant expiration) {
+        this.subject = subject;
+        this.userId = userId;
+        this.roles = List.copyOf(roles);
+        this.expiration = expiration;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    // Null for tokens issued before the user id claim was added
+    public Long getUserId() {
+        return userId;
+    }
+
+    // Empty for tokens issued before the role claim was added
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiration != null && !expiration.isAfter(now);
+    }
+}
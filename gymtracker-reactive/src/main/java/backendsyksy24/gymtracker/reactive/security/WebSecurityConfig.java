@@ -0,0 +1,34 @@
+package backendsyksy24.gymtracker.reactive.security;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+// Configures the security settings like the servlet application: stateless, every request authenticated by its JWT.
+// Logging in stays on the servlet application, which issues the tokens. Requests without a valid token get 403,
+// as there.
+@Configuration
+@EnableWebFluxSecurity
+public class WebSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain filterChain(ServerHttpSecurity http, JwtVerifier jwtVerifier) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable) // Disabled CSRF protection for JWT-based stateless API
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN)))
+                .authorizeExchange(exchange -> exchange.anyExchange().authenticated())
+                .addFilterAt(new JwtAuthenticationWebFilter(jwtVerifier), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+}
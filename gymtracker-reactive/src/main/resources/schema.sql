@@ -0,0 +1,19 @@
+-- The tables the read endpoints use, as the servlet application's Hibernate mapping creates them.
+-- Only run for an embedded database; existing tables are left as they are.
+create table if not exists exercise_table (
+    id bigint not null primary key,
+    name varchar(255) not null,
+    description varchar(255),
+    user_id bigint,
+    deleted_at timestamp(6)
+);
+
+create table if not exists exercise_log_table (
+    id bigint not null primary key,
+    timestamp timestamp(6) not null,
+    weight integer not null,
+    reps integer not null,
+    exercise_id bigint
+);
+
+create index if not exists idx_exercise_log_exercise_time on exercise_log_table (exercise_id, timestamp, id);
@@ -0,0 +1,182 @@
+package backendsyksy24.gymtracker.reactive.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import backendsyksy24.gymtracker.reactive.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.reactive.model.Exercise;
+import backendsyksy24.gymtracker.reactive.model.ExerciseLog;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ExerciseControllerTests {
+
+    private static final Key KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private static final AtomicLong IDS = new AtomicLong(1000);
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    private Long userId;
+    private Exercise exercise;
+    private LocalDateTime first;
+    private String token;
+
+    // A keyring file like the servlet application's, holding the key the tokens are signed with
+    @DynamicPropertySource
+    static void keyring(DynamicPropertyRegistry registry) throws IOException {
+        Path keyring = Files.createTempFile("keyring", ".properties");
+        keyring.toFile().deleteOnExit();
+        Files.writeString(keyring, "test=" + Base64.getEncoder().encodeToString(KEY.getEncoded()) + "\n");
+        registry.add("gymtracker.jwt.keyring.location", keyring::toString);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        userId = IDS.incrementAndGet();
+        exercise = template.insert(new Exercise(IDS.incrementAndGet(), "Bench Press", "Chest exercise", userId))
+                .block();
+        Exercise deleted = new Exercise(IDS.incrementAndGet(), "Deadlift", "", userId);
+        deleted.setDeletedAt(LocalDateTime.now());
+        template.insert(deleted).block();
+        first = LocalDateTime.of(2024, 3, 1, 18, 0);
+        Flux.range(0, 5)
+                .concatMap(i -> template.insert(new ExerciseLog(IDS.incrementAndGet(), exercise.getId(),
+                        first.plusDays(i), 100 + i, 5)))
+                .blockLast();
+        token = token("user" + userId, userId, "USER");
+    }
+
+    @Test
+    @DisplayName("Refuse requests without a valid token")
+    public void testUnauthenticated() {
+        webTestClient.get().uri("/api/users/{userId}/exercises", userId)
+                .exchange()
+                .expectStatus().isForbidden();
+
+        Key otherKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        String forged = Jwts.builder().setHeaderParam("kid", "test").setSubject("user" + userId)
+                .claim("uid", userId).claim("role", "USER").signWith(otherKey).compact();
+        webTestClient.get().uri("/api/users/{userId}/exercises", userId)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + forged)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    @DisplayName("List the user's exercises without the deleted ones")
+    public void testUserExercises() {
+        webTestClient.get().uri("/api/users/{userId}/exercises", userId)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Bench Press")
+                .jsonPath("$[0].description").isEqualTo("Chest exercise");
+    }
+
+    @Test
+    @DisplayName("Stream all logs as a JSON array or as NDJSON, oldest first")
+    public void testAllLogs() {
+        webTestClient.get().uri("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5)
+                .jsonPath("$[0].weight").isEqualTo(100)
+                .jsonPath("$[0].timestamp").isEqualTo("2024-03-01T18:00:00");
+
+        // Arrange: a client that asks for two logs at a time
+        Flux<ExerciseLogDTO> stream = webTestClient.get().uri("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ExerciseLogDTO.class)
+                .getResponseBody();
+
+        // Act & Assert
+        StepVerifier.create(stream, 2)
+                .expectNextMatches(log -> log.getWeight() == 100)
+                .expectNextMatches(log -> log.getWeight() == 101)
+                .thenRequest(3)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Page through the logs newest first with the cursor header, and reject a bad cursor")
+    public void testLogPages() {
+        // Act
+        var firstPage = webTestClient.get()
+                .uri("/api/exercises/{exerciseId}/logs?limit=3", exercise.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ExerciseLogDTO.class)
+                .returnResult();
+        String cursor = firstPage.getResponseHeaders().getFirst(ExerciseController.NEXT_CURSOR_HEADER);
+        List<ExerciseLogDTO> secondPage = webTestClient.get()
+                .uri("/api/exercises/{exerciseId}/logs?limit=3&cursor={cursor}", exercise.getId(), cursor)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ExerciseController.NEXT_CURSOR_HEADER)
+                .expectBodyList(ExerciseLogDTO.class)
+                .returnResult().getResponseBody();
+
+        // Assert
+        assertThat(cursor).isNotNull();
+        assertThat(firstPage.getResponseBody()).extracting(ExerciseLogDTO::getWeight).containsExactly(104, 103, 102);
+        assertThat(secondPage).extracting(ExerciseLogDTO::getWeight).containsExactly(101, 100);
+
+        webTestClient.get().uri("/api/exercises/{exerciseId}/logs?cursor=not-a-cursor", exercise.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Signed like JwtUtil in the servlet application
+    private static String token(String username, Long userId, String role) {
+        return Jwts.builder()
+                .setHeaderParam("kid", "test")
+                .setSubject(username)
+                .claim("uid", userId)
+                .claim("role", role)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(KEY)
+                .compact();
+    }
+}
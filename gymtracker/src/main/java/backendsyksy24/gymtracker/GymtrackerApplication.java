@@ -8,6 +8,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import backendsyksy24.gymtracker.model.AppUser;
 import backendsyksy24.gymtracker.model.Exercise;
@@ -20,6 +21,7 @@ import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
 import java.time.LocalDateTime;
 
 @SpringBootApplication
+@EnableScheduling
 public class GymtrackerApplication {
     private static final Logger log = LoggerFactory.getLogger(GymtrackerApplication.class);
 
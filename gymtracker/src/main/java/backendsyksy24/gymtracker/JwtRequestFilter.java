@@ -1,10 +1,16 @@
 package backendsyksy24.gymtracker;
 
 import backendsyksy24.gymtracker.util.JwtUtil;
+import backendsyksy24.gymtracker.util.VerifiedToken;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+import backendsyksy24.gymtracker.web.PrincipalCache;
 import backendsyksy24.gymtracker.web.UserDetailServiceImpl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -19,12 +25,20 @@ import java.io.IOException;
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
+    // "claims" builds the authentication from the signed token, "lookup" loads the user from the database on every request
+    static final String CLAIMS_MODE = "claims";
+
     private final JwtUtil jwtUtil;
     private final UserDetailServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
+    private final boolean trustClaims;
 
-    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailServiceImpl userDetailsService) {
+    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailServiceImpl userDetailsService, PrincipalCache principalCache,
+                            @Value("${gymtracker.jwt.auth-mode:claims}") String authMode) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.trustClaims = CLAIMS_MODE.equalsIgnoreCase(authMode);
     }
 
     // Extracts the JWT token from the Authorization header, validates it, and sets the authentication
@@ -34,35 +48,48 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
-
-        // Extracting JWT token from the Authorization header
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+        // Extracting JWT token from the Authorization header. The token is parsed and verified once per request.
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String jwt = authorizationHeader.substring(7);
+            VerifiedToken token = null;
             try {
-                username = jwtUtil.extractUsername(jwt);
+                token = jwtUtil.verify(jwt);
             } catch (Exception e) {
                 logger.error("JWT token extraction failed", e);
             }
-        }
 
-        // Validating the token and setting authentication
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            // Validating the token and setting authentication
+            if (token != null && token.getSubject() != null) {
+                UserDetails userDetails = resolvePrincipal(token);
 
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                UsernamePasswordAuthenticationToken authenticationToken = 
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                if (userDetails != null && jwtUtil.validateToken(token, userDetails.getUsername())) {
+                    UsernamePasswordAuthenticationToken authenticationToken = 
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
-                authenticationToken.setDetails(
-                        new WebAuthenticationDetailsSource().buildDetails(request));
+                    authenticationToken.setDetails(
+                            new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                    SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                }
             }
         }
 
         // Continuing the filter chain
         chain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    // Builds the principal from the token claims when allowed. Tokens without a role claim and the lookup mode
+    // fall back to the database through the principal cache. Returns null if the user no longer exists.
+    private UserDetails resolvePrincipal(VerifiedToken token) {
+        if (trustClaims && !token.getRoles().isEmpty()) {
+            return new AuthenticatedUser(token.getUserId(), token.getSubject(), "",
+                    AuthorityUtils.createAuthorityList(token.getRoles()));
+        }
+        try {
+            return principalCache.get(token.getSubject(), userDetailsService::loadUserByUsername);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
+}
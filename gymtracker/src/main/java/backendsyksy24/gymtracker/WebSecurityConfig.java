@@ -50,9 +50,10 @@ public class WebSecurityConfig {
             @Override
             public void addCorsMappings(CorsRegistry registry) {
                 registry.addMapping("/**") // All endpoints
-                        .allowedOrigins("*") // Frontend URL (added to allow all origins)
+                        .allowedOriginPatterns("*") // Frontend URL (patterns, because credentials cannot be combined with a plain "*")
                         .allowedMethods("*") // GET, POST, PUT, DELETE, PATCH
                         .allowedHeaders("*") // Authorization, Content-Type
+                        .exposedHeaders("X-Next-Cursor", "X-Query-Count", "ETag") // Keyset cursor of paged log responses, statement count in dev, version of cached reads
                         .allowCredentials(true); // Allow cookies
             }
         };
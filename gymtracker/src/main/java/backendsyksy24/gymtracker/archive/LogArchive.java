@@ -0,0 +1,270 @@
+package backendsyksy24.gymtracker.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+
+// Cold exercise logs, kept out of the database in one segment file per user (see LogSegment), written by LogArchiver.
+// Archived logs are read-only: their rollup rows and records stay in the database, so only the log endpoints and
+// rebuilds read them back.
+// A segment is replaced by an atomic rename, so readers never see a half-written file. The new file gets the old one's
+// compressed blocks copied over unread plus a block per exercise of the new logs, so appending costs a sequential
+// copy rather than decoding and re-encoding the user's whole archive. Writers must hold
+// the user's row lock (AppUserRepository.lockById) so that instances sharing the directory take turns.
+// Open segments are cached and checked against the file on every read, so a segment replaced by another instance
+// is reopened.
+public class LogArchive {
+
+    // Newest first, the order of the log pages
+    private static final Comparator<ExerciseLogDTO> NEWEST_FIRST =
+            Comparator.comparing(ExerciseLogDTO::getTimestamp).thenComparing(ExerciseLogDTO::getId).reversed();
+
+    private final Path directory;
+    private final ExerciseRepository exerciseRepository;
+    private final Cache<Long, LogSegment> openSegments;
+
+    public LogArchive(Path directory, ExerciseRepository exerciseRepository, long maxOpenSegments) {
+        this.directory = directory;
+        this.exerciseRepository = exerciseRepository;
+        this.openSegments = Caffeine.newBuilder().maximumSize(maxOpenSegments).build();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create the log archive directory " + directory, e);
+        }
+    }
+
+    /* All archived logs of the exercise, oldest first. */
+    public List<ExerciseLog> findByExerciseId(Long exerciseId) {
+        LogSegment segment = segmentOfExercise(exerciseId);
+        return segment != null ? segment.read(exerciseId) : List.of();
+    }
+
+    /* All archived logs of the exercise as the log endpoints return them, oldest first. */
+    public List<ExerciseLogDTO> findDtosByExerciseId(Long exerciseId) {
+        return findByExerciseId(exerciseId).stream().map(LogArchive::toDto).collect(Collectors.toList());
+    }
+
+    /* Passes the archived logs of the exercise to the consumer one by one, oldest first, without building a list. */
+    public void forEachLog(Long exerciseId, Consumer<ExerciseLogDTO> consumer) {
+        LogSegment segment = segmentOfExercise(exerciseId);
+        if (segment != null) {
+            segment.forEach(exerciseId, consumer);
+        }
+    }
+
+    /* The ids of the exercise's archived logs, sorted for a binary search. */
+    public long[] findIds(Long exerciseId) {
+        LogSegment segment = segmentOfExercise(exerciseId);
+        return segment != null ? segment.readIds(exerciseId) : new long[0];
+    }
+
+    /* A keyset page of archived logs, like ExerciseLogRepository.findPage: newest first, in [from, before) plus the
+     * logs at exactly "before" with a smaller id. */
+    public List<ExerciseLogDTO> findPage(Long exerciseId, LocalDateTime from, LocalDateTime beforeTimestamp,
+                                         Long beforeId, int limit) {
+        LogSegment segment = segmentOfExercise(exerciseId);
+        if (segment == null) {
+            return List.of();
+        }
+        return segment.readPage(exerciseId, from, beforeTimestamp, beforeId, limit).stream()
+                .map(LogArchive::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /* Up to limit archived logs of the user's exercises with an id above afterId, in id order: a page of a sync
+     * snapshot. */
+    public List<ExerciseLog> findAfter(Long userId, Collection<Long> exerciseIds, long afterId, int limit) {
+        LogSegment segment = segment(userId);
+        if (segment == null) {
+            return List.of();
+        }
+        return segment.readAfter(exerciseIds, afterId, limit);
+    }
+
+    /* Whether the log is archived, from the id columns of the blocks whose id range holds it. */
+    public boolean contains(Long exerciseId, Long logId) {
+        LogSegment segment = segmentOfExercise(exerciseId);
+        return segment != null && segment.contains(exerciseId, logId);
+    }
+
+    /* Merges two newest-first lists of logs into one of at most limit logs. A log in both, left over by an archive
+     * run that failed after writing its segment, is returned once. */
+    public static List<ExerciseLogDTO> merge(List<ExerciseLogDTO> hot, List<ExerciseLogDTO> archived, int limit) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Map<Long, ExerciseLogDTO> merged = new LinkedHashMap<>();
+        List<ExerciseLogDTO> all = new ArrayList<>(hot.size() + archived.size());
+        all.addAll(hot);
+        all.addAll(archived);
+        all.sort(NEWEST_FIRST);
+        for (ExerciseLogDTO log : all) {
+            if (merged.size() == limit) {
+                break;
+            }
+            merged.putIfAbsent(log.getId(), log);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /* Adds logs to the user's segment and drops the exercises that are no longer in liveExerciseIds.
+     * Call with the user's row lock held. */
+    public void append(Long userId, Collection<ExerciseLog> logs, Set<Long> liveExerciseIds) {
+        Map<Long, Map<Long, ExerciseLog>> byExercise = new HashMap<>();
+        for (ExerciseLog log : logs) {
+            byExercise.computeIfAbsent(log.getExercise().getId(), id -> new HashMap<>()).put(log.getId(), log);
+        }
+        LogSegment segment = segment(userId);
+        Set<Long> kept = new HashSet<>();
+        if (segment != null) {
+            for (Long exerciseId : segment.getExerciseIds()) {
+                if (liveExerciseIds.contains(exerciseId)) {
+                    kept.add(exerciseId);
+                }
+            }
+            // A log already archived by a run that failed before deleting its rows is not added again. Chunks go by
+            // id, so the new ids rarely fall in an existing block's id range and no block is decoded.
+            byExercise.forEach((exerciseId, exerciseLogs) -> {
+                if (kept.contains(exerciseId)) {
+                    long[] archived = segment.readIds(exerciseId, Collections.min(exerciseLogs.keySet()),
+                            Collections.max(exerciseLogs.keySet()));
+                    exerciseLogs.keySet().removeIf(id -> Arrays.binarySearch(archived, id) >= 0);
+                }
+            });
+        }
+        replace(userId, segment, kept, byExercise);
+    }
+
+    /* Removes an exercise from the user's segment. Call with the user's row lock held. */
+    public void removeExercise(Long userId, Long exerciseId) {
+        LogSegment segment = segment(userId);
+        if (segment == null || !segment.getExerciseIds().contains(exerciseId)) {
+            return;
+        }
+        Set<Long> remaining = new HashSet<>(segment.getExerciseIds());
+        remaining.remove(exerciseId);
+        replace(userId, segment, remaining, Map.of());
+    }
+
+    public void deleteUser(Long userId) {
+        try {
+            Files.deleteIfExists(path(userId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        openSegments.invalidate(userId);
+    }
+
+    /* The number of archived logs of the user, per exercise. */
+    public Map<Long, Integer> countByExercise(Long userId) {
+        LogSegment segment = segment(userId);
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        if (segment != null) {
+            segment.getExerciseIds().forEach(exerciseId -> counts.put(exerciseId, segment.getLogCount(exerciseId)));
+        }
+        return counts;
+    }
+
+    private static ExerciseLogDTO toDto(ExerciseLog log) {
+        return new ExerciseLogDTO(log.getId(), log.getTimestamp(), log.getWeight(), log.getReps());
+    }
+
+    // Writes the kept exercises' blocks of the current segment, if any, and a block per exercise of the new logs
+    private void replace(Long userId, LogSegment current, Set<Long> kept,
+                         Map<Long, Map<Long, ExerciseLog>> byExercise) {
+        Path path = path(userId);
+        try {
+            Map<Long, List<ExerciseLog>> logs = new HashMap<>();
+            byExercise.forEach((exerciseId, exerciseLogs) -> {
+                if (!exerciseLogs.isEmpty()) {
+                    logs.put(exerciseId, new ArrayList<>(exerciseLogs.values()));
+                }
+            });
+            if (kept.isEmpty() && logs.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Files.delete(temporary);
+            try {
+                LogSegment.write(temporary, current, kept, logs);
+                try {
+                    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the log segment of user " + userId, e);
+        } finally {
+            openSegments.invalidate(userId);
+        }
+    }
+
+    private LogSegment segmentOfExercise(Long exerciseId) {
+        // Also finds deleted exercises, whose logs stay readable until they are purged, like those in the database
+        Long userId = exerciseRepository.findUserIdById(exerciseId);
+        return userId != null ? segment(userId) : null;
+    }
+
+    private LogSegment segment(Long userId) {
+        Path path = path(userId);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            openSegments.invalidate(userId);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LogSegment segment = openSegments.getIfPresent(userId);
+        if (segment != null && segment.isCurrent(attributes)) {
+            return segment;
+        }
+        try {
+            segment = LogSegment.open(path, attributes);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the log segment of user " + userId, e);
+        }
+        openSegments.put(userId, segment);
+        return segment;
+    }
+
+    // Spread over 256 subdirectories, so no directory grows too large
+    private Path path(Long userId) {
+        return directory.resolve(String.format("%02x", userId & 0xff)).resolve("user-" + userId + ".seg");
+    }
+}
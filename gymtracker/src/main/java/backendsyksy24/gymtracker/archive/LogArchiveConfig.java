@@ -0,0 +1,41 @@
+package backendsyksy24.gymtracker.archive;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Cold log archive, enabled by setting gymtracker.archive.directory. With several instances the directory must be
+// shared storage (one volume mounted by all), since any instance may serve or archive any user.
+// Without it, every log stays in the database as before.
+@Configuration
+@ConditionalOnExpression("!'${gymtracker.archive.directory:}'.isBlank()")
+public class LogArchiveConfig {
+
+    @Bean
+    public LogArchive logArchive(@Value("${gymtracker.archive.directory}") Path directory,
+            @Value("${gymtracker.archive.open-segments:1000}") long maxOpenSegments,
+            ExerciseRepository exerciseRepository) {
+        return new LogArchive(directory, exerciseRepository, maxOpenSegments);
+    }
+
+    @Bean
+    public LogArchiver logArchiver(LogArchive logArchive, AppUserRepository appUserRepository,
+            ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository,
+            PlatformTransactionManager transactionManager, Shards shards, MeterRegistry meterRegistry,
+            @Value("${gymtracker.archive.min-age:P365D}") Duration minAge,
+            @Value("${gymtracker.archive.chunk-size:5000}") int chunkSize) {
+        return new LogArchiver(logArchive, appUserRepository, exerciseRepository, exerciseLogRepository,
+                transactionManager, shards, meterRegistry, minAge, chunkSize);
+    }
+}
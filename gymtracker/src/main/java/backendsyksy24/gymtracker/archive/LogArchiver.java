@@ -0,0 +1,166 @@
+package backendsyksy24.gymtracker.archive;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+// Moves exercise logs older than min-age out of the database into the users' archive segments (see LogArchive).
+// The cutoff is the start of a day, so a training day is either wholly archived or wholly in the database, and
+// deleting a recent log never needs the archive to fix its day's rollup.
+// Each chunk of a user's logs is archived in one transaction that holds the user's row lock and the locks of their
+// exercises, so log writes and deletes wait for it: the segment is replaced first, then the rows are deleted.
+// If the transaction fails after the segment was written, the logs are in both places until the next run; reads
+// return them once.
+public class LogArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(LogArchiver.class);
+    private static final int USER_PAGE_SIZE = 100;
+
+    private final LogArchive logArchive;
+    private final AppUserRepository appUserRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final Duration minAge;
+    private final int chunkSize;
+    private final Counter logsArchived;
+
+    private final ExecutorService archiveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LogArchiver(LogArchive logArchive, AppUserRepository appUserRepository,
+                       ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository,
+                       PlatformTransactionManager transactionManager, Shards shards, MeterRegistry meterRegistry,
+                       Duration minAge, int chunkSize) {
+        this.logArchive = logArchive;
+        this.appUserRepository = appUserRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.minAge = minAge;
+        this.chunkSize = chunkSize;
+        this.logsArchived = meterRegistry.counter("gymtracker.archive.logs");
+    }
+
+    @Scheduled(fixedDelayString = "${gymtracker.archive.interval:PT6H}",
+            initialDelayString = "${gymtracker.archive.interval:PT6H}")
+    public void scheduledArchive() {
+        startArchive();
+    }
+
+    /* Starts archiveAll in the background. Returns false if an archive run is already going on. */
+    public boolean startArchive() {
+        if (running.get()) {
+            return false;
+        }
+        archiveExecutor.execute(this::archiveAll);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /* Archives the old logs of every user on every shard. Returns the number of logs archived, or -1 if another
+     * run is going on. */
+    public long archiveAll() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        PrimaryPin.pin();
+        try {
+            LocalDateTime cutoff = LocalDate.now().minusDays(minAge.toDays()).atStartOfDay();
+            long start = System.nanoTime();
+            long[] archived = {0};
+            shards.forEach(() -> archived[0] += archiveShard(cutoff));
+            log.info("Archived {} exercise logs older than {} in {} ms", archived[0], cutoff,
+                    (System.nanoTime() - start) / 1_000_000);
+            return archived[0];
+        } catch (RuntimeException e) {
+            log.error("Log archive run failed, it continues on the next run", e);
+            return 0;
+        } finally {
+            PrimaryPin.clear();
+            running.set(false);
+        }
+    }
+
+    private long archiveShard(LocalDateTime cutoff) {
+        long archived = 0;
+        List<Long> userIds = appUserRepository.findIdsAfter(0L, Limit.of(USER_PAGE_SIZE));
+        while (!userIds.isEmpty()) {
+            for (Long userId : userIds) {
+                archived += archiveUser(userId, cutoff);
+            }
+            userIds = appUserRepository.findIdsAfter(userIds.get(userIds.size() - 1), Limit.of(USER_PAGE_SIZE));
+        }
+        return archived;
+    }
+
+    /* Archives the user's logs from before the cutoff, chunk by chunk. Returns the number of logs archived. */
+    public long archiveUser(Long userId, LocalDateTime cutoff) {
+        long archived = 0;
+        int count;
+        do {
+            Integer chunk = transactionTemplate.execute(status -> archiveChunk(userId, cutoff));
+            count = chunk != null ? chunk : 0;
+            archived += count;
+            logsArchived.increment(count);
+        } while (count == chunkSize);
+        return archived;
+    }
+
+    private int archiveChunk(Long userId, LocalDateTime cutoff) {
+        if (appUserRepository.lockById(userId) == null) {
+            return 0;
+        }
+        Set<Long> exerciseIds = exerciseRepository.lockAllByUserId(userId).stream()
+                .map(Exercise::getId)
+                .collect(Collectors.toSet());
+        if (exerciseIds.isEmpty()) {
+            return 0;
+        }
+        List<ExerciseLog> logs = exerciseLogRepository.findArchivable(exerciseIds, cutoff, Limit.of(chunkSize));
+        if (logs.isEmpty()) {
+            return 0;
+        }
+        logArchive.append(userId, logs, exerciseIds);
+        exerciseLogRepository.deleteAllByIdInBatch(logs.stream().map(ExerciseLog::getId).collect(Collectors.toList()));
+        return logs.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        archiveExecutor.shutdownNow();
+    }
+}
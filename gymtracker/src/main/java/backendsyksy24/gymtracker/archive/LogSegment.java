@@ -0,0 +1,549 @@
+package backendsyksy24.gymtracker.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+
+// One user's archived exercise logs: an immutable, memory-mapped file of compressed column blocks. Each archive run
+// adds a block per exercise, and the blocks already there are copied over as they are, without decoding them.
+//
+// Layout (big-endian):
+//   header     magic "GTLS", version, block count
+//   directory  per block: exercise id, row count, oldest and newest timestamp (µs), lowest and highest log id,
+//              block offset, compressed and raw length
+//   blocks     Deflate-compressed columns of some logs of one exercise, rows oldest first (timestamp, then id):
+//              ids as zigzag varint deltas, timestamps as varint µs deltas, weights and reps as varints
+// Version 1 files have one block per exercise and no id range in the directory; they are still read.
+//
+// The directory is read when the file is opened; a block is only inflated when its exercise is read, and
+// reads whose time or id range misses the block skip it without touching it.
+final class LogSegment {
+
+    static final int MAGIC = 0x47544c53;
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE_V1 = 44;
+    private static final int ENTRY_SIZE = 60;
+
+    // Oldest first, the order of the rows in a block
+    static final Comparator<ExerciseLog> CHRONOLOGICAL =
+            Comparator.comparing(ExerciseLog::getTimestamp).thenComparing(ExerciseLog::getId);
+
+    private final ByteBuffer buffer;
+    private final Map<Long, List<Block>> blocks;
+    private final Object fileKey;
+    private final long lastModified;
+
+    private LogSegment(ByteBuffer buffer, Map<Long, List<Block>> blocks, BasicFileAttributes attributes) {
+        this.buffer = buffer;
+        this.blocks = blocks;
+        this.fileKey = attributes.fileKey();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+    }
+
+    static LogSegment open(Path path, BasicFileAttributes attributes) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int version = buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC ? -1 : buffer.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Not a log segment: " + path);
+        }
+        int blockCount = buffer.getInt(8);
+        Map<Long, List<Block>> blocks = new LinkedHashMap<>();
+        for (int i = 0; i < blockCount; i++) {
+            Block block;
+            long exerciseId;
+            if (version == 1) {
+                int entry = HEADER_SIZE + i * ENTRY_SIZE_V1;
+                exerciseId = buffer.getLong(entry);
+                block = new Block(buffer.getInt(entry + 8), buffer.getLong(entry + 12), buffer.getLong(entry + 20),
+                        Long.MIN_VALUE, Long.MAX_VALUE, buffer.getLong(entry + 28), buffer.getInt(entry + 36),
+                        buffer.getInt(entry + 40));
+            } else {
+                int entry = HEADER_SIZE + i * ENTRY_SIZE;
+                exerciseId = buffer.getLong(entry);
+                block = new Block(buffer.getInt(entry + 8), buffer.getLong(entry + 12), buffer.getLong(entry + 20),
+                        buffer.getLong(entry + 28), buffer.getLong(entry + 36), buffer.getLong(entry + 44),
+                        buffer.getInt(entry + 52), buffer.getInt(entry + 56));
+            }
+            blocks.computeIfAbsent(exerciseId, id -> new ArrayList<>()).add(block);
+        }
+        return new LogSegment(buffer, blocks, attributes);
+    }
+
+    /* Writes the logs, grouped by exercise id, to a new segment file. */
+    static void write(Path path, Map<Long, List<ExerciseLog>> logsByExercise) throws IOException {
+        write(path, null, Set.of(), logsByExercise);
+    }
+
+    /* Writes a new segment file with the blocks of base for the kept exercises, copied without decoding them, and a
+     * new block per exercise of the logs. Base may be null. */
+    static void write(Path path, LogSegment base, Set<Long> keptExerciseIds,
+                      Map<Long, List<ExerciseLog>> logsByExercise) throws IOException {
+        // Existing blocks: their compressed bytes, still in base's mapping
+        List<Long> blockExerciseIds = new ArrayList<>();
+        List<Block> copied = new ArrayList<>();
+        if (base != null) {
+            base.blocks.forEach((exerciseId, exerciseBlocks) -> {
+                if (keptExerciseIds.contains(exerciseId)) {
+                    exerciseBlocks.forEach(block -> {
+                        blockExerciseIds.add(exerciseId);
+                        copied.add(block);
+                    });
+                }
+            });
+        }
+        // New blocks
+        List<Long> exerciseIds = new ArrayList<>(logsByExercise.keySet());
+        exerciseIds.sort(null);
+        List<byte[]> compressed = new ArrayList<>();
+        List<Block> added = new ArrayList<>();
+        for (Long exerciseId : exerciseIds) {
+            List<ExerciseLog> logs = new ArrayList<>(logsByExercise.get(exerciseId));
+            if (logs.isEmpty()) {
+                continue;
+            }
+            logs.sort(CHRONOLOGICAL);
+            byte[] raw = encode(logs);
+            byte[] block = deflate(raw);
+            compressed.add(block);
+            blockExerciseIds.add(exerciseId);
+            added.add(new Block(logs.size(), micros(logs.get(0).getTimestamp()),
+                    micros(logs.get(logs.size() - 1).getTimestamp()),
+                    logs.stream().mapToLong(ExerciseLog::getId).min().getAsLong(),
+                    logs.stream().mapToLong(ExerciseLog::getId).max().getAsLong(), 0, block.length, raw.length));
+        }
+
+        int blockCount = copied.size() + added.size();
+        ByteBuffer directory = ByteBuffer.allocate(HEADER_SIZE + blockCount * ENTRY_SIZE);
+        directory.putInt(MAGIC).putInt(VERSION).putInt(blockCount);
+        long offset = directory.capacity();
+        List<Block> all = new ArrayList<>(copied);
+        all.addAll(added);
+        for (int i = 0; i < blockCount; i++) {
+            Block block = all.get(i);
+            directory.putLong(blockExerciseIds.get(i)).putInt(block.count).putLong(block.oldest).putLong(block.newest)
+                    .putLong(block.minId).putLong(block.maxId)
+                    .putLong(offset).putInt(block.compressedLength).putInt(block.rawLength);
+            offset += block.compressedLength;
+        }
+        directory.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, directory);
+            for (Block block : copied) {
+                writeFully(channel, base.buffer.slice((int) block.offset, block.compressedLength));
+            }
+            for (byte[] block : compressed) {
+                writeFully(channel, ByteBuffer.wrap(block));
+            }
+            channel.force(true);
+        }
+    }
+
+    boolean isCurrent(BasicFileAttributes attributes) {
+        return Objects.equals(fileKey, attributes.fileKey())
+                && lastModified == attributes.lastModifiedTime().toMillis();
+    }
+
+    Set<Long> getExerciseIds() {
+        return blocks.keySet();
+    }
+
+    int getLogCount(Long exerciseId) {
+        return blocks(exerciseId).stream().mapToInt(block -> block.count).sum();
+    }
+
+    /* The logs of the exercise in [from, to], oldest first. */
+    List<ExerciseLog> read(Long exerciseId, LocalDateTime from, LocalDateTime to) {
+        long fromMicros = micros(from);
+        long toMicros = micros(to);
+        List<ExerciseLog> logs = new ArrayList<>();
+        for (Block block : blocks(exerciseId)) {
+            if (block.newest >= fromMicros && block.oldest <= toMicros) {
+                logs.addAll(decode(exerciseId, inflate(block), block.count));
+            }
+        }
+        logs.removeIf(log -> log.getTimestamp().isBefore(from) || log.getTimestamp().isAfter(to));
+        logs.sort(CHRONOLOGICAL);
+        return logs;
+    }
+
+    /* A keyset page of the exercise's logs, newest first: up to limit logs in [from, before) plus those at exactly
+     * "before" with a smaller id. Blocks are read newest first, and reading stops at the first block that is older
+     * than every log on a full page, so a page costs a block or two however long the history is. */
+    List<ExerciseLog> readPage(Long exerciseId, LocalDateTime from, LocalDateTime beforeTimestamp, long beforeId,
+                               int limit) {
+        long fromMicros = micros(from);
+        long beforeMicros = micros(beforeTimestamp);
+        List<Block> candidates = new ArrayList<>();
+        for (Block block : blocks(exerciseId)) {
+            if (block.newest >= fromMicros && block.oldest <= beforeMicros) {
+                candidates.add(block);
+            }
+        }
+        candidates.sort(Comparator.comparingLong((Block block) -> block.newest).reversed());
+        List<ExerciseLog> page = new ArrayList<>();
+        for (Block block : candidates) {
+            if (page.size() == limit && block.newest < micros(page.get(limit - 1).getTimestamp())) {
+                break;
+            }
+            for (ExerciseLog log : decode(exerciseId, inflate(block), block.count)) {
+                long time = micros(log.getTimestamp());
+                if (time >= fromMicros && (time < beforeMicros || time == beforeMicros && log.getId() < beforeId)) {
+                    page.add(log);
+                }
+            }
+            page.sort(CHRONOLOGICAL.reversed());
+            if (page.size() > limit) {
+                page.subList(limit, page.size()).clear();
+            }
+        }
+        return page;
+    }
+
+    /* All archived logs of the exercise, oldest first. */
+    List<ExerciseLog> read(Long exerciseId) {
+        List<ExerciseLog> logs = new ArrayList<>();
+        for (Block block : blocks(exerciseId)) {
+            logs.addAll(decode(exerciseId, inflate(block), block.count));
+        }
+        logs.sort(CHRONOLOGICAL);
+        return logs;
+    }
+
+    /* Up to limit logs of the exercises with an id above afterId, in id order. Blocks are read in order of their
+     * lowest id, and reading stops at the first block whose ids are all above those of a full page, so a page costs
+     * a block or two however many logs come after it. Version 1 blocks have no id range and are always read. */
+    List<ExerciseLog> readAfter(Collection<Long> exerciseIds, long afterId, int limit) {
+        List<Map.Entry<Long, Block>> candidates = new ArrayList<>();
+        for (Long exerciseId : exerciseIds) {
+            for (Block block : blocks(exerciseId)) {
+                if (block.maxId > afterId) {
+                    candidates.add(Map.entry(exerciseId, block));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().minId));
+        List<ExerciseLog> page = new ArrayList<>();
+        for (Map.Entry<Long, Block> candidate : candidates) {
+            Block block = candidate.getValue();
+            if (page.size() == limit && block.minId > page.get(limit - 1).getId()) {
+                break;
+            }
+            for (ExerciseLog log : decode(candidate.getKey(), inflate(block), block.count)) {
+                if (log.getId() > afterId) {
+                    page.add(log);
+                }
+            }
+            page.sort(Comparator.comparing(ExerciseLog::getId));
+            if (page.size() > limit) {
+                page.subList(limit, page.size()).clear();
+            }
+        }
+        return page;
+    }
+
+    /* Passes the archived logs of the exercise to the consumer one by one, oldest first. Only the blocks'
+     * uncompressed bytes are held, not a list of the logs; the rows of several blocks are merged as they are read. */
+    void forEach(Long exerciseId, Consumer<ExerciseLogDTO> consumer) {
+        PriorityQueue<BlockReader> readers = new PriorityQueue<>(
+                Comparator.comparing((BlockReader reader) -> reader.current.getTimestamp())
+                        .thenComparing(reader -> reader.current.getId()));
+        for (Block block : blocks(exerciseId)) {
+            BlockReader reader = new BlockReader(inflate(block), block.count);
+            if (reader.next()) {
+                readers.add(reader);
+            }
+        }
+        while (!readers.isEmpty()) {
+            BlockReader reader = readers.poll();
+            consumer.accept(reader.current);
+            if (reader.next()) {
+                readers.add(reader);
+            }
+        }
+    }
+
+    /* The ids of the exercise's archived logs, sorted. */
+    long[] readIds(Long exerciseId) {
+        return readIds(exerciseId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /* The ids of the exercise's archived logs in the blocks whose id range meets [minId, maxId], sorted. Only the
+     * id column is decoded. */
+    long[] readIds(Long exerciseId, long minId, long maxId) {
+        List<long[]> columns = new ArrayList<>();
+        int total = 0;
+        for (Block block : blocks(exerciseId)) {
+            if (block.maxId >= minId && block.minId <= maxId) {
+                long[] column = decodeIds(inflate(block), block.count);
+                columns.add(column);
+                total += column.length;
+            }
+        }
+        long[] ids = new long[total];
+        int length = 0;
+        for (long[] column : columns) {
+            System.arraycopy(column, 0, ids, length, column.length);
+            length += column.length;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /* Whether the log is archived under the exercise. Only the id columns of the blocks whose id range holds it are
+     * decoded. */
+    boolean contains(Long exerciseId, long logId) {
+        return Arrays.binarySearch(readIds(exerciseId, logId, logId), logId) >= 0;
+    }
+
+    private List<Block> blocks(Long exerciseId) {
+        return blocks.getOrDefault(exerciseId, List.of());
+    }
+
+    private byte[] inflate(Block block) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice((int) block.offset, block.compressedLength));
+            byte[] raw = new byte[block.rawLength];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+            if (length != raw.length) {
+                throw new IllegalStateException("Truncated log segment block");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt log segment block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] encode(List<ExerciseLog> logs) {
+        VarintWriter out = new VarintWriter(logs.size() * 8);
+        long previousId = 0;
+        for (ExerciseLog log : logs) {
+            long delta = log.getId() - previousId;
+            out.write((delta << 1) ^ (delta >> 63));
+            previousId = log.getId();
+        }
+        long previousTime = 0;
+        for (ExerciseLog log : logs) {
+            long time = micros(log.getTimestamp());
+            out.write(time - previousTime);
+            previousTime = time;
+        }
+        for (ExerciseLog log : logs) {
+            out.write(log.getWeight());
+        }
+        for (ExerciseLog log : logs) {
+            out.write(log.getReps());
+        }
+        return out.toByteArray();
+    }
+
+    private static long[] decodeIds(byte[] raw, int count) {
+        int[] position = {0};
+        long[] ids = new long[count];
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = readVarint(raw, position);
+            id += (zigzag >>> 1) ^ -(zigzag & 1);
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static List<ExerciseLog> decode(Long exerciseId, byte[] raw, int count) {
+        Exercise exercise = new Exercise();
+        exercise.setId(exerciseId);
+        List<ExerciseLog> logs = new ArrayList<>(count);
+        int[] position = {0};
+        long id = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = readVarint(raw, position);
+            id += (zigzag >>> 1) ^ -(zigzag & 1);
+            ExerciseLog log = new ExerciseLog();
+            log.setId(id);
+            log.setExercise(exercise);
+            logs.add(log);
+        }
+        long time = 0;
+        for (ExerciseLog log : logs) {
+            time += readVarint(raw, position);
+            log.setTimestamp(timestamp(time));
+        }
+        for (ExerciseLog log : logs) {
+            log.setWeight((int) readVarint(raw, position));
+        }
+        for (ExerciseLog log : logs) {
+            log.setReps((int) readVarint(raw, position));
+        }
+        return logs;
+    }
+
+    private static long readVarint(byte[] raw, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = raw[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int skipVarints(byte[] raw, int position, int count) {
+        for (int i = 0; i < count; i++) {
+            while (raw[position] < 0) {
+                position++;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    static long micros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime timestamp(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Block {
+        private final int count;
+        private final long oldest;
+        private final long newest;
+        private final long minId;
+        private final long maxId;
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+
+        private Block(int count, long oldest, long newest, long minId, long maxId, long offset, int compressedLength,
+                      int rawLength) {
+            this.count = count;
+            this.oldest = oldest;
+            this.newest = newest;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+        }
+    }
+
+    // Reads the rows of one inflated block in order, with one read position per column
+    private static final class BlockReader {
+        private final byte[] raw;
+        private final int count;
+        private final int[] ids = {0};
+        private final int[] times;
+        private final int[] weights;
+        private final int[] reps;
+        private int row;
+        private long id;
+        private long time;
+        private ExerciseLogDTO current;
+
+        private BlockReader(byte[] raw, int count) {
+            this.raw = raw;
+            this.count = count;
+            this.times = new int[] {skipVarints(raw, 0, count)};
+            this.weights = new int[] {skipVarints(raw, times[0], count)};
+            this.reps = new int[] {skipVarints(raw, weights[0], count)};
+        }
+
+        private boolean next() {
+            if (row == count) {
+                return false;
+            }
+            row++;
+            long zigzag = readVarint(raw, ids);
+            id += (zigzag >>> 1) ^ -(zigzag & 1);
+            time += readVarint(raw, times);
+            current = new ExerciseLogDTO(id, timestamp(time), (int) readVarint(raw, weights),
+                    (int) readVarint(raw, reps));
+            return true;
+        }
+    }
+
+    // Unsigned LEB128 varints into a growing array
+    private static final class VarintWriter {
+        private byte[] bytes;
+        private int length;
+
+        private VarintWriter(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        private void write(long value) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7fL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package backendsyksy24.gymtracker.cache;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+
+// Hibernate second-level cache on a local Caffeine JCache: AppUser and Exercise by id, and the results of the
+// queries marked cacheable in their repositories. Hibernate evicts entries when it writes the rows, including bulk
+// and native updates that declare their table. The cache is per application instance, so writes made by another
+// instance show up after the TTL at the latest; the TTLs are kept to seconds for that reason, as a cache hit also
+// skips the @SQLRestriction that hides soft-deleted rows.
+// Hit and miss counts are published as cache.gets{cache=<region>,result=hit|miss}.
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String USER_REGION = "user";
+    public static final String EXERCISE_REGION = "exercise";
+    private static final String QUERY_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "gymtracker.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager hibernateCacheManager(
+            @Value("${gymtracker.cache.user.max-size:10000}") long userMaxSize,
+            @Value("${gymtracker.cache.user.ttl:PT5S}") Duration userTtl,
+            @Value("${gymtracker.cache.exercise.max-size:50000}") long exerciseMaxSize,
+            @Value("${gymtracker.cache.exercise.ttl:PT5S}") Duration exerciseTtl,
+            @Value("${gymtracker.cache.query.max-size:20000}") long queryMaxSize,
+            @Value("${gymtracker.cache.query.ttl:PT5S}") Duration queryTtl) {
+        // A manager of its own, so application contexts in the same JVM (tests) never share entries
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("gymtracker:" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(USER_REGION, configuration(userMaxSize, userTtl));
+        cacheManager.createCache(EXERCISE_REGION, configuration(exerciseMaxSize, exerciseTtl));
+        cacheManager.createCache(QUERY_REGION, configuration(queryMaxSize, queryTtl));
+        // One entry per table, holding its last write time: never evicted, or cached queries could outlive a write
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<Object, Object>());
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> configuration(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(ObjectProvider<CacheManager> hibernateCacheManager) {
+        return properties -> {
+            CacheManager cacheManager = hibernateCacheManager.getIfAvailable();
+            if (cacheManager == null) {
+                // Hibernate would otherwise pick up the JCache region factory from the classpath by itself
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            // Every region is created above with its limits; a region missing there is a mistake
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gymtracker.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public MeterBinder hibernateCacheMetrics(CacheManager hibernateCacheManager) {
+        return registry -> {
+            for (String region : List.of(USER_REGION, EXERCISE_REGION, QUERY_REGION)) {
+                JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(region));
+            }
+        };
+    }
+}
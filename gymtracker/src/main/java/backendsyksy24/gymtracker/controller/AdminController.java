@@ -0,0 +1,135 @@
+package backendsyksy24.gymtracker.controller;
+
+import backendsyksy24.gymtracker.archive.LogArchiver;
+import backendsyksy24.gymtracker.dto.PurgeStatusDTO;
+import backendsyksy24.gymtracker.service.DailyVolumeService;
+import backendsyksy24.gymtracker.service.PurgeService;
+import backendsyksy24.gymtracker.sharding.ShardDirectory;
+import backendsyksy24.gymtracker.sharding.ShardRebalancer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/* Controller for maintenance jobs, available to admins only. */
+@RestController
+@RequestMapping("/api/admin")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    @Autowired
+    private DailyVolumeService dailyVolumeService;
+
+    @Autowired
+    private PurgeService purgeService;
+
+    // Only present when sharding is enabled
+    @Autowired(required = false)
+    private ShardDirectory shardDirectory;
+
+    @Autowired(required = false)
+    private ShardRebalancer shardRebalancer;
+
+    // Only present when the cold log archive is enabled
+    @Autowired(required = false)
+    private LogArchiver logArchiver;
+
+    /* Starts recomputing the daily volume rollup and the personal records from the exercise logs in the background. */
+    @PostMapping("/rollups/daily-volume/rebuild")
+    public ResponseEntity<?> rebuildDailyVolume() {
+        if (!dailyVolumeService.startRebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Rebuild is already running");
+        }
+        return ResponseEntity.accepted().body("Rebuild started");
+    }
+
+    /* Tells whether a rollup rebuild is running. */
+    @GetMapping("/rollups/daily-volume/rebuild")
+    public ResponseEntity<?> getDailyVolumeRebuildStatus() {
+        return ResponseEntity.ok(dailyVolumeService.isRebuilding() ? "Running" : "Idle");
+    }
+
+    /* Returns the progress of the background purge of deleted users and exercises. */
+    @GetMapping("/purges")
+    public ResponseEntity<PurgeStatusDTO> getPurgeStatus() {
+        return ResponseEntity.ok(purgeService.getStatus());
+    }
+
+    /* Returns the number of users on each shard. */
+    @GetMapping("/shards")
+    public ResponseEntity<?> getShards() {
+        if (shardDirectory == null) {
+            return shardingDisabled();
+        }
+        return ResponseEntity.ok(shardDirectory.countByShard());
+    }
+
+    /* Starts moving the user's data to the given shard in the background. */
+    @PostMapping("/shards/users/{userId}/move")
+    public ResponseEntity<?> moveUser(@PathVariable Long userId, @RequestParam int to) {
+        if (shardRebalancer == null) {
+            return shardingDisabled();
+        }
+        if (to < 0 || to >= shardDirectory.getRing().getShardCount()) {
+            return ResponseEntity.badRequest().body("No such shard");
+        }
+        if (shardDirectory.findByUserId(userId).isEmpty()) {
+            return ResponseEntity.status(404).body("User not found");
+        }
+        if (!shardRebalancer.startMove(userId, to)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A move is already running");
+        }
+        return ResponseEntity.accepted().body("Move started");
+    }
+
+    /* Starts moving every user the hash ring places on another shard, e.g. after adding a shard. */
+    @PostMapping("/shards/rebalance")
+    public ResponseEntity<?> rebalance() {
+        if (shardRebalancer == null) {
+            return shardingDisabled();
+        }
+        if (!shardRebalancer.startRebalance()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A move is already running");
+        }
+        return ResponseEntity.accepted().body("Rebalance started");
+    }
+
+    /* Tells whether a move or rebalance is running. */
+    @GetMapping("/shards/rebalance")
+    public ResponseEntity<?> getRebalanceStatus() {
+        if (shardRebalancer == null) {
+            return shardingDisabled();
+        }
+        return ResponseEntity.ok(shardRebalancer.isRunning() ? "Running" : "Idle");
+    }
+
+    /* Starts moving old exercise logs to the cold archive in the background. */
+    @PostMapping("/archive")
+    public ResponseEntity<?> archiveLogs() {
+        if (logArchiver == null) {
+            return archiveDisabled();
+        }
+        if (!logArchiver.startArchive()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Archiving is already running");
+        }
+        return ResponseEntity.accepted().body("Archiving started");
+    }
+
+    /* Tells whether logs are being archived. */
+    @GetMapping("/archive")
+    public ResponseEntity<?> getArchiveStatus() {
+        if (logArchiver == null) {
+            return archiveDisabled();
+        }
+        return ResponseEntity.ok(logArchiver.isRunning() ? "Running" : "Idle");
+    }
+
+    private ResponseEntity<?> archiveDisabled() {
+        return ResponseEntity.status(404).body("The log archive is not enabled");
+    }
+
+    private ResponseEntity<?> shardingDisabled() {
+        return ResponseEntity.status(404).body("Sharding is not enabled");
+    }
+}
@@ -1,101 +1,362 @@
 package backendsyksy24.gymtracker.controller;
 
-import backendsyksy24.gymtracker.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.dto.ChangesDTO;
+import backendsyksy24.gymtracker.dto.ColumnarDailyTotalsDTO;
+import backendsyksy24.gymtracker.dto.ColumnarDashboardExerciseDTO;
+import backendsyksy24.gymtracker.dto.ColumnarLogsDTO;
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.dto.DashboardExerciseDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.dto.WorkoutDTO;
+import backendsyksy24.gymtracker.events.ChangeEventHub;
 import backendsyksy24.gymtracker.model.Exercise;
 import backendsyksy24.gymtracker.model.ExerciseLog;
-import backendsyksy24.gymtracker.repository.ExerciseRepository;
-import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
-import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.model.ResourceVersion;
+import backendsyksy24.gymtracker.querycount.QueryCountFilter;
+import backendsyksy24.gymtracker.service.ExerciseQueryService;
+import backendsyksy24.gymtracker.service.ExerciseService;
+import backendsyksy24.gymtracker.service.ExportService;
+import backendsyksy24.gymtracker.service.ImportService;
+import backendsyksy24.gymtracker.service.PersonalRecordService;
+import backendsyksy24.gymtracker.util.LogCursor;
+import backendsyksy24.gymtracker.web.ResponseCache;
+import backendsyksy24.gymtracker.web.WireFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
-/* Controller for managing exercises and their logs. */
+/* Controller for managing exercises and their logs. Reads go through ExerciseQueryService and writes through
+ * ExerciseService, so each request runs in one transaction and holds a connection only while it does. */
 @RestController
 @RequestMapping("/api")
 public class ExerciseController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_DASHBOARD_DAYS = 30;
+    private static final int DEFAULT_VOLUME_DAYS = 90;
+    // Open ends of the time range, kept inside the range of a MySQL DATETIME
+    private static final LocalDateTime MIN_TIMESTAMP = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Autowired
+    private ExerciseService exerciseService;
+
+    @Autowired
+    private ExerciseQueryService exerciseQueryService;
+
     @Autowired
-    private ExerciseRepository exerciseRepository;
+    private PersonalRecordService personalRecordService;
 
     @Autowired
-    private ExerciseLogRepository exerciseLogRepository;
+    private ResponseCache responseCache;
 
     @Autowired
-    private AppUserRepository appUserRepository;
+    private ExportService exportService;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ChangeEventHub changeEventHub;
 
 
     /* Adds a new exercise for the specified user. */
     @PostMapping("/users/{userId}/exercises")
     public ResponseEntity<?> addExercise(@PathVariable Long userId, @RequestBody Exercise exercise) {
-        return appUserRepository.findById(userId).map(user -> {
-            exercise.setUser(user);
-            exerciseRepository.save(exercise);
-            return ResponseEntity.ok("Exercise added successfully");
-        }).orElse(ResponseEntity.status(404).body("User not found"));
+        return exerciseService.addExercise(userId, exercise)
+            .<ResponseEntity<?>>map(saved -> ResponseEntity.ok("Exercise added successfully"))
+            .orElse(ResponseEntity.status(404).body("User not found"));
     }
 
-    /* Returns all exercises for the specified user. */
+    /* Returns all exercises for the specified user. Like every GET here, it reads DTO projections, not entities.
+     * Answered from the response cache, with 304 Not Modified when If-None-Match holds the current ETag. */
     @GetMapping("/users/{userId}/exercises")
-    public ResponseEntity<List<ExerciseDTO>> getUserExercises(@PathVariable Long userId) {
-        List<Exercise> exercises = exerciseRepository.findByUserId(userId);
-        List<ExerciseDTO> dtoList = exercises.stream()
-            .map(exercise -> new ExerciseDTO(exercise.getId(), exercise.getName(), exercise.getDescription()))
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(dtoList);
+    public ResponseEntity<byte[]> getUserExercises(@PathVariable Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return responseCache.get(ResourceVersion.EXERCISES, userId, ifNoneMatch,
+                () -> exerciseQueryService.findExercises(userId));
+    }
+
+    /* Returns what changed in the user's exercises and sets since the cursor from the previous sync: saved ones with
+     * their fields and deleted ones as tombstones, at most limit (default and at most 500) per response. Without a
+     * cursor, returns the first page of a snapshot of everything to start from; its later pages are asked for with
+     * "since" and "after" from the previous page. 410 Gone means the cursor is too old, and the client has to start
+     * over with a snapshot. 400 for "after" without "since". */
+    @GetMapping("/users/{userId}/changes")
+    public ResponseEntity<ChangesDTO> getChanges(@PathVariable Long userId,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : MAX_PAGE_SIZE, MAX_PAGE_SIZE));
+        if (since == null && after != null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (since == null || after != null) {
+            return ResponseEntity.ok(exerciseQueryService.getSnapshot(userId, since, after, pageSize));
+        }
+        return exerciseQueryService.getChanges(userId, since, pageSize)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.status(410).build());
+    }
+
+    /* Streams the user's whole training history, one row per set, as CSV (default) or NDJSON ("format=ndjson").
+     * Written while it is read, so it is not held in memory on the way out. 400 for an unknown format. */
+    @GetMapping("/users/{userId}/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(@PathVariable Long userId,
+            @RequestParam(defaultValue = ExportService.CSV) String format, HttpServletRequest request) {
+        MediaType mediaType;
+        if (ExportService.CSV.equals(format)) {
+            mediaType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else if (ExportService.NDJSON.equals(format)) {
+            mediaType = MediaType.APPLICATION_NDJSON;
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        QueryCountFilter.disableBuffering(request);
+        return ResponseEntity.ok()
+            .contentType(mediaType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("gymtracker-" + userId + "." + format).build().toString())
+            .body(exportService.export(userId, format));
+    }
+
+    /* Imports sets from a CSV file ("file") exported by another tracker, creating the exercises it names. The file is
+     * imported in the background: answers 202 with the job's status, which is then polled at the Location.
+     * 503 if too many imports are waiting. */
+    @PostMapping(value = "/users/{userId}/imports", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importHistory(@PathVariable Long userId, @RequestParam("file") MultipartFile file)
+            throws IOException {
+        try {
+            return importService.start(userId, file)
+                .<ResponseEntity<?>>map(status -> ResponseEntity
+                    .accepted()
+                    .location(URI.create("/api/users/" + userId + "/imports/" + status.getId()))
+                    .body(status))
+                .orElse(ResponseEntity.status(404).body("User not found"));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body("Too many imports are waiting, please try again later");
+        }
+    }
+
+    /* Returns the progress of an import job: rows read, imported and skipped, with the reasons for the first
+     * skipped rows. The status is kept for an hour after the job finishes. */
+    @GetMapping("/users/{userId}/imports/{jobId}")
+    public ResponseEntity<?> getImportStatus(@PathVariable Long userId, @PathVariable String jobId) {
+        return importService.getStatus(userId, jobId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElse(ResponseEntity.status(404).body("Import not found"));
+    }
+
+    /* Streams the user's changes as Server-Sent Events as they are committed: "change" events with the change log
+     * position as id and a change like those of /changes as data, and a heartbeat comment every 15 seconds.
+     * A reconnect with Last-Event-ID resumes after that change. A "reset" event means the changes since then are
+     * gone, and the client starts over from a snapshot. */
+    @GetMapping(value = "/users/{userId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@PathVariable Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId, HttpServletRequest request) {
+        QueryCountFilter.disableBuffering(request);
+        return changeEventHub.subscribe(userId, lastEventId);
+    }
+
+    /* Returns the user's exercises with the totals of their latest training days (default 2, at most 30).
+     * Reads the daily volume rollup, so it uses two small queries however many sets the user has logged.
+     * The Accept header can ask for one of the WireFormats. */
+    @GetMapping("/users/{userId}/dashboard")
+    public ResponseEntity<?> getDashboard(@PathVariable Long userId,
+            @RequestParam(defaultValue = "2") int days,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        int dayCount = Math.max(1, Math.min(days, MAX_DASHBOARD_DAYS));
+        WireFormat format = WireFormat.negotiate(accept);
+        List<DashboardExerciseDTO> dashboard = exerciseQueryService.getDashboard(userId, dayCount);
+        return negotiated(format).body(format.isColumnar()
+                ? dashboard.stream().map(ColumnarDashboardExerciseDTO::of).toList() : dashboard);
+    }
+
+    /* Returns the daily totals of the specified exercise in [from, to], oldest first.
+     * Defaults to the last 90 days. Reads one rollup row per training day instead of every set.
+     * The Accept header can ask for one of the WireFormats. */
+    @GetMapping("/exercises/{exerciseId}/volume")
+    public ResponseEntity<?> getExerciseVolume(@PathVariable Long exerciseId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_VOLUME_DAYS - 1);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        WireFormat format = WireFormat.negotiate(accept);
+        List<DailyTotalDTO> totals = exerciseQueryService.getVolume(exerciseId, start, end);
+        return negotiated(format).body(format.isColumnar() ? ColumnarDailyTotalsDTO.of(totals) : totals);
+    }
+
+    /* Returns the personal records of the specified exercise: heaviest set per rep count, best estimated 1RM and
+     * best day by volume. Read from the record tables, which are kept up to date on every write. */
+    @GetMapping("/exercises/{exerciseId}/records")
+    public ResponseEntity<?> getExerciseRecords(@PathVariable Long exerciseId) {
+        return personalRecordService.getRecords(exerciseId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElse(ResponseEntity.status(404).body("Exercise not found"));
     }
 
     /* Adds a new log to the specified exercise. */
     @PostMapping("/exercises/{exerciseId}/logs")
     public ResponseEntity<?> addExerciseLog(@PathVariable Long exerciseId, @RequestBody ExerciseLog exerciseLog) {
-        return exerciseRepository.findById(exerciseId).map(exercise -> {
-            exerciseLog.setExercise(exercise);
-            exerciseLog.setTimestamp(LocalDateTime.now()); // Set the timestamp
-            exerciseLogRepository.save(exerciseLog);
-            return ResponseEntity.ok("Exercise log added successfully");
-        }).orElse(ResponseEntity.status(404).body("Exercise not found"));
+        if (!exerciseService.addLog(exerciseId, exerciseLog)) {
+            return ResponseEntity.status(404).body("Exercise not found");
+        }
+        return ResponseEntity.ok("Exercise log added successfully");
+    }
+
+    /* Adds many logs to the specified exercise in one transaction, e.g. all sets of a workout.
+     * Sets without a timestamp get the current time. */
+    @PostMapping("/exercises/{exerciseId}/logs/batch")
+    public ResponseEntity<?> addExerciseLogs(@PathVariable Long exerciseId, @RequestBody List<ExerciseLog> exerciseLogs) {
+        String error = validateSets(exerciseLogs);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+        return exerciseService.addLogs(exerciseId, exerciseLogs)
+            .<ResponseEntity<?>>map(saved -> ResponseEntity.ok(saved + " exercise logs added successfully"))
+            .orElse(ResponseEntity.status(404).body("Exercise not found"));
+    }
+
+    /* Adds the sets of a whole workout, covering several exercises of the user, in one transaction. */
+    @PostMapping("/users/{userId}/workouts")
+    public ResponseEntity<?> addWorkout(@PathVariable Long userId, @RequestBody List<WorkoutDTO> workout) {
+        if (workout.stream().anyMatch(entry -> entry == null || entry.getExerciseId() == null
+                || entry.getSets() == null)) {
+            return ResponseEntity.badRequest().body("Every exercise of the workout needs an exerciseId and sets");
+        }
+        List<ExerciseLog> allSets = new ArrayList<>();
+        workout.forEach(entry -> allSets.addAll(entry.getSets()));
+        String error = validateSets(allSets);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+        return exerciseService.addWorkout(userId, workout)
+            .<ResponseEntity<?>>map(saved -> ResponseEntity.ok(saved + " exercise logs added successfully"))
+            .orElse(ResponseEntity.status(404).body("Exercise not found"));
     }
 
-    /* Returns all logs for the specified exercise. */
+    /* Returns an error message for an unacceptable batch of sets, or null if it is fine. */
+    private String validateSets(List<ExerciseLog> sets) {
+        if (sets.isEmpty()) {
+            return "No sets given";
+        }
+        if (sets.size() > MAX_BATCH_SIZE) {
+            return "At most " + MAX_BATCH_SIZE + " sets can be added at once";
+        }
+        for (ExerciseLog set : sets) {
+            if (set == null || set.getWeight() <= 0 || set.getReps() <= 0) {
+                return "Weight and reps must be positive";
+            }
+        }
+        return null;
+    }
+
+    /* Returns the logs for the specified exercise.
+     * Without parameters all logs are returned. With limit, cursor, from or to, one page is returned newest first,
+     * optionally limited to the time range [from, to). The cursor for the next page is in the X-Next-Cursor header.
+     * Logs moved to the cold archive are included. All logs are answered from the response cache, with
+     * 304 Not Modified when If-None-Match holds the current ETag. The Accept header can ask for one of the
+     * WireFormats: CBOR, or columns instead of one object per set. */
     @GetMapping("/exercises/{exerciseId}/logs")
-    public ResponseEntity<List<ExerciseLog>> getExerciseLogs(@PathVariable Long exerciseId) {
-        List<ExerciseLog> exerciseLogs = exerciseLogRepository.findByExerciseId(exerciseId);
-        return ResponseEntity.ok(exerciseLogs);
+    public ResponseEntity<?> getExerciseLogs(@PathVariable Long exerciseId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        WireFormat format = WireFormat.negotiate(accept);
+        if (limit == null && cursor == null && from == null && to == null) {
+            return responseCache.get(ResourceVersion.LOGS, exerciseId, ifNoneMatch, format, () -> {
+                List<ExerciseLogDTO> logs = exerciseQueryService.getLogs(exerciseId);
+                return format.isColumnar() ? ColumnarLogsDTO.of(logs) : logs;
+            });
+        }
+
+        LogCursor after;
+        try {
+            after = cursor != null ? LogCursor.decode(cursor)
+                    : new LogCursor(to != null ? to : MAX_TIMESTAMP, Long.MIN_VALUE);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+
+        // Fetch one extra row to find out whether there is a next page
+        List<ExerciseLogDTO> logs = exerciseQueryService.getLogPage(exerciseId, from != null ? from : MIN_TIMESTAMP,
+                after, pageSize + 1);
+        if (logs.size() <= pageSize) {
+            return negotiated(format).body(format.isColumnar() ? ColumnarLogsDTO.of(logs) : logs);
+        }
+        List<ExerciseLogDTO> page = logs.subList(0, pageSize);
+        ExerciseLogDTO last = page.get(pageSize - 1);
+        return negotiated(format)
+                .header(NEXT_CURSOR_HEADER, new LogCursor(last.getTimestamp(), last.getId()).encode())
+                .body(format.isColumnar() ? ColumnarLogsDTO.of(page) : page);
+    }
+
+    // A response in the format, which depends on the Accept header
+    private static ResponseEntity.BodyBuilder negotiated(WireFormat format) {
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType());
     }
 
     /* Updates an existing exercise for the specified user. */
     @PutMapping("/users/{userId}/exercises/{exerciseId}")
     public ResponseEntity<?> updateExercise(@PathVariable Long userId, @PathVariable Long exerciseId, @RequestBody Exercise exerciseDetails) {
-        return exerciseRepository.findById(exerciseId).map(exercise -> {
-            exercise.setName(exerciseDetails.getName());
-            exercise.setDescription(exerciseDetails.getDescription());
-            exerciseRepository.save(exercise);
-            return ResponseEntity.ok("Exercise updated successfully");
-        }).orElse(ResponseEntity.status(404).body("Exercise not found"));
+        if (!exerciseService.updateExercise(exerciseId, exerciseDetails)) {
+            return ResponseEntity.status(404).body("Exercise not found");
+        }
+        return ResponseEntity.ok("Exercise updated successfully");
     }
 
-    /* Deletes an existing exercise for the specified user. */
+    /* Deletes an existing exercise for the specified user. Returns at once; the logs are purged in the background. */
     @DeleteMapping("/users/{userId}/exercises/{exerciseId}")
     public ResponseEntity<?> deleteExercise(@PathVariable Long userId, @PathVariable Long exerciseId) {
-        return exerciseRepository.findById(exerciseId).map(exercise -> {
-            exerciseRepository.delete(exercise);
-            return ResponseEntity.ok("Exercise deleted successfully");
-        }).orElse(ResponseEntity.status(404).body("Exercise not found"));
+        if (!exerciseService.deleteExercise(exerciseId)) {
+            return ResponseEntity.status(404).body("Exercise not found");
+        }
+        return ResponseEntity.ok("Exercise deleted successfully");
     }
 
-    /* Deletes an existing exercise log. */
+    /* Deletes an existing exercise log. Logs moved to the cold archive are read-only. */
     @DeleteMapping("/exercises/{exerciseId}/logs/{logId}")
     public ResponseEntity<?> deleteExerciseLog(@PathVariable Long exerciseId, @PathVariable Long logId) {
-        return exerciseLogRepository.findById(logId).map(exerciseLog -> {
-            if (!exerciseLog.getExercise().getId().equals(exerciseId)) {
+        switch (exerciseService.deleteLog(exerciseId, logId)) {
+            case OTHER_EXERCISE:
                 return ResponseEntity.status(400).body("ExerciseLog does not belong to the specified Exercise");
-            }
-            exerciseLogRepository.delete(exerciseLog);
-            return ResponseEntity.ok("Exercise log deleted successfully");
-        }).orElse(ResponseEntity.status(404).body("ExerciseLog not found"));
+            case ARCHIVED:
+                return ResponseEntity.status(409).body("Archived exercise logs cannot be deleted");
+            case NOT_FOUND:
+                return ResponseEntity.status(404).body("ExerciseLog not found");
+            default:
+                return ResponseEntity.ok("Exercise log deleted successfully");
+        }
     }
 }
\ No newline at end of file
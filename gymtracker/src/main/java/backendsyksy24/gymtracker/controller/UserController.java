@@ -3,16 +3,22 @@ package backendsyksy24.gymtracker.controller;
 import backendsyksy24.gymtracker.model.AppUser;
 import backendsyksy24.gymtracker.dto.RegisterRequest;
 import backendsyksy24.gymtracker.dto.UserDTO;
-import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.service.PasswordHashingService;
+import backendsyksy24.gymtracker.service.UserService;
 import backendsyksy24.gymtracker.util.JwtUtil;
+import backendsyksy24.gymtracker.web.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.Optional;
 
 @RestController
@@ -20,69 +26,99 @@ import java.util.Optional;
 public class UserController {
 
     @Autowired
-    private AppUserRepository appUserRepository;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private UserService userService;
 
     @Autowired
     private JwtUtil jwtUtil;
 
-    /* Registers a new user with the provided registration details. */
+    @Autowired
+    private PrincipalCache principalCache;
+
+    // Spring MVC's async executor; the user is saved there so the insert never holds a hashing thread
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+
+    /* Registers a new user with the provided registration details.
+     * The password is hashed on the hashing pool, so the request thread is released while BCrypt runs, and the user
+     * is then saved on the MVC async executor, so the hashing threads only ever hash. */
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegisterRequest registerRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody RegisterRequest registerRequest) {
         String lowerUsername = registerRequest.getUsername().toLowerCase();
         // Check if username already exists
-        if (appUserRepository.existsByUsername(lowerUsername)) {
-            return ResponseEntity.badRequest().body("Username is already taken");
+        if (userService.usernameExists(lowerUsername)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username is already taken"));
         }
         // Check if password is strong enough
         if (!isStrongPassword(registerRequest.getPasswordHash())) {
-            return ResponseEntity.badRequest().body("Password is not strong enough");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Password is not strong enough"));
         }
         // Encode the password and set the role
-        String encodedPassword = bCryptPasswordEncoder.encode(registerRequest.getPasswordHash());
-
-        AppUser user = new AppUser();
-        user.setUsername(lowerUsername);
-        user.setPasswordHash(encodedPassword);
-        user.setRole("ROLE_USER"); // Automatically set role to USER
-        appUserRepository.save(user);
-        return ResponseEntity.ok("User registered successfully");
+        try {
+            return passwordHashingService.encode(registerRequest.getPasswordHash()).<ResponseEntity<?>>thenApplyAsync(encodedPassword -> {
+                AppUser user = new AppUser();
+                user.setUsername(lowerUsername);
+                user.setPasswordHash(encodedPassword);
+                user.setRole("ROLE_USER"); // Automatically set role to USER
+                if (userService.register(user) == null) {
+                    return ResponseEntity.badRequest().body("Username is already taken");
+                }
+                return ResponseEntity.ok("User registered successfully");
+            }, taskExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(serverBusy());
+        }
     }
 
-    /* Logs in the user with the provided login details. */
+    /* Logs in the user with the provided login details.
+     * The password check runs on the hashing pool, so the request thread is released while BCrypt runs. */
     @PostMapping("/login")
-    public ResponseEntity<?> loginUser(@RequestBody AppUser user) {
-        AppUser existingUser = appUserRepository.findByUsername(user.getUsername().toLowerCase());
-        if (existingUser != null && bCryptPasswordEncoder.matches(user.getPasswordHash(), existingUser.getPasswordHash())) {
-            String token = jwtUtil.generateToken(existingUser.getUsername());
-            String role = existingUser.getRole();
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestBody AppUser user) {
+        AppUser existingUser = userService.findByUsername(user.getUsername().toLowerCase());
+        if (existingUser == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body("Invalid credentials"));
+        }
+        try {
+            return passwordHashingService.matches(user.getPasswordHash(), existingUser.getPasswordHash()).<ResponseEntity<?>>thenApply(matches -> {
+                if (!matches) {
+                    return ResponseEntity.status(401).body("Invalid credentials");
+                }
+                String role = existingUser.getRole();
+                String token = jwtUtil.generateToken(existingUser.getUsername(), existingUser.getId(), role);
 
-            // Populate UserDTO with token and role
-            UserDTO userDTO = new UserDTO(existingUser.getId(), existingUser.getUsername(), role, token);
-            return ResponseEntity.ok(userDTO);
+                // Populate UserDTO with token and role
+                UserDTO userDTO = new UserDTO(existingUser.getId(), existingUser.getUsername(), role, token);
+                return ResponseEntity.ok(userDTO);
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(serverBusy());
         }
-        return ResponseEntity.status(401).body("Invalid credentials");
     }
 
-    /* Returns a list of all registered users.*/
+    /* Answer for a full hashing queue: fail fast and let the client retry, instead of queueing without limit. */
+    private ResponseEntity<?> serverBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Server is busy, please try again");
+    }
+
+    /* Returns a list of all registered users, from every shard.*/
     @GetMapping("/users")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<UserDTO>> getAllUsernames() {
-        List<UserDTO> users = appUserRepository.findAll().stream()
-                .map(user -> new UserDTO(user.getId(), user.getUsername(), user.getRole()))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(users);
+        return ResponseEntity.ok(userService.findAll());
     }
 
-    /* Deletes a specific user by ID. */
+    /* Deletes a specific user by ID. Returns at once; the user's data is purged in the background. */
     @DeleteMapping("/users/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
-        Optional<AppUser> userOptional = appUserRepository.findById(id);
-        if (userOptional.isPresent()) {
-            appUserRepository.deleteById(id);
+        Optional<AppUser> deleted = userService.deleteUser(id);
+        if (deleted.isPresent()) {
+            principalCache.evict(deleted.get().getUsername());
             return ResponseEntity.ok("User deleted successfully");
         } else {
             return ResponseEntity.status(404).body("User not found");
@@ -0,0 +1,22 @@
+package backendsyksy24.gymtracker.datasource;
+
+// Marks the current thread's reads as pinned to the primary database, see ReadYourWritesFilter
+public final class PrimaryPin {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private PrimaryPin() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+}
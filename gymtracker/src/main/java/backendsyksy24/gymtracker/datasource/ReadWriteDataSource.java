@@ -0,0 +1,31 @@
+package backendsyksy24.gymtracker.datasource;
+
+import java.io.Closeable;
+import java.util.List;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// The application's DataSource when replicas are configured. Connections are opened lazily, at the first statement,
+// so the transaction's read-only flag is known by then: read-only transactions go to the replica routing, everything
+// else to the primary.
+public class ReadWriteDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+
+    public ReadWriteDataSource(HikariDataSource primary, List<HikariDataSource> replicas,
+                               ReplicaRoutingDataSource replicaRouting) {
+        super(primary);
+        setReadOnlyDataSource(replicaRouting);
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,70 @@
+package backendsyksy24.gymtracker.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Read/write split, enabled by listing replica JDBC URLs in gymtracker.datasource.replica-urls.
+// The primary keeps the spring.datasource settings; replicas use the same driver and, unless set, the same account.
+// Without replicas, Spring Boot's single DataSource is used as before.
+@Configuration
+@ConditionalOnExpression("!'${gymtracker.datasource.replica-urls:}'.isBlank()")
+public class ReadWriteDataSourceConfig {
+
+    @Bean
+    public RecentWriters recentWriters(
+            @Value("${gymtracker.datasource.read-your-writes-window:PT5S}") Duration window,
+            @Value("${gymtracker.datasource.read-your-writes-max-users:100000}") long maxUsers) {
+        return new RecentWriters(window, maxUsers);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(RecentWriters recentWriters) {
+        return new ReadYourWritesFilter(recentWriters);
+    }
+
+    @Bean
+    @Primary
+    public ReadWriteDataSource dataSource(DataSourceProperties properties,
+            @Value("${gymtracker.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${gymtracker.datasource.replica-username:${spring.datasource.username:}}") String replicaUsername,
+            @Value("${gymtracker.datasource.replica-password:${spring.datasource.password:}}") String replicaPassword,
+            MeterRegistry meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(replicaUsername)
+                    .password(replicaPassword)
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            // Spring Boot only binds the pool metrics of the primary
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+
+        List<DataSource> replicaTargets = new ArrayList<>(replicas);
+        return new ReadWriteDataSource(primary, replicas,
+                new ReplicaRoutingDataSource(primary, replicaTargets, meterRegistry));
+    }
+}
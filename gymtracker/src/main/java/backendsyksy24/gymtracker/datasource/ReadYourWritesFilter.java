@@ -0,0 +1,63 @@
+package backendsyksy24.gymtracker.datasource;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Pins a request's reads to the primary when the replicas may not have its data yet:
+// - writes themselves, so read-modify-write never starts from a stale row
+// - login and registration, which read credentials that may have just been written
+// - any request of a user who wrote within the read-your-writes window
+// Runs after the security filters, so the user is known.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final Set<String> AUTH_PATHS = Set.of("/api/login", "/api/register");
+
+    private final RecentWriters recentWriters;
+
+    public ReadYourWritesFilter(RecentWriters recentWriters) {
+        this.recentWriters = recentWriters;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String username = currentUsername();
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        if (write && username != null) {
+            // Recorded before the write, so the window also covers a read that races the response
+            recentWriters.recordWrite(username);
+        }
+        boolean pin = write || AUTH_PATHS.contains(request.getRequestURI())
+                || (username != null && recentWriters.wroteRecently(username));
+        if (!pin) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        PrimaryPin.pin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            PrimaryPin.clear();
+        }
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
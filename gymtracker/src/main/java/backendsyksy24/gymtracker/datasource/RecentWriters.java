@@ -0,0 +1,28 @@
+package backendsyksy24.gymtracker.datasource;
+
+import java.time.Duration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Users who wrote within the read-your-writes window. Their reads go to the primary until the replicas have caught up.
+// Kept per application instance.
+public class RecentWriters {
+
+    private final Cache<String, Boolean> writers;
+
+    public RecentWriters(Duration window, long maxSize) {
+        this.writers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public void recordWrite(String username) {
+        writers.put(username, Boolean.TRUE);
+    }
+
+    public boolean wroteRecently(String username) {
+        return writers.getIfPresent(username) != null;
+    }
+}
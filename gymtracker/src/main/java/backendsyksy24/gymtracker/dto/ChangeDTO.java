@@ -0,0 +1,127 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Data Transfer Object for one change in a sync: an exercise or a set ("type") that was saved, with its fields, or
+// deleted. Fields that do not apply to the type are left out of the JSON, as is the sequence number in a snapshot.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeDTO {
+    private Long seq;
+    private String type;
+    private Long id;
+    private boolean deleted;
+    private String name;
+    private String description;
+    private Long exerciseId;
+    private LocalDateTime timestamp;
+    private Integer weight;
+    private Integer reps;
+
+    // Selected from the change log
+    public ChangeDTO(Long seq, String type, Long id, boolean deleted, String name, String description,
+                     Long exerciseId, LocalDateTime timestamp, Integer weight, Integer reps) {
+        this.seq = seq;
+        this.type = type;
+        this.id = id;
+        this.deleted = deleted;
+        this.name = name;
+        this.description = description;
+        this.exerciseId = exerciseId;
+        this.timestamp = timestamp;
+        this.weight = weight;
+        this.reps = reps;
+    }
+
+    // An exercise as it is now, selected from the exercise table for a snapshot
+    public ChangeDTO(String type, Long id, String name, String description) {
+        this(null, type, id, false, name, description, null, null, null, null);
+    }
+
+    // A set as it is now, selected from the log table or read from the archive for a snapshot
+    public ChangeDTO(String type, Long id, Long exerciseId, LocalDateTime timestamp, int weight, int reps) {
+        this(null, type, id, false, null, null, exerciseId, timestamp, weight, reps);
+    }
+
+    // Getters and setters
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
+    public Integer getReps() {
+        return reps;
+    }
+
+    public void setReps(Integer reps) {
+        this.reps = reps;
+    }
+}
@@ -0,0 +1,66 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Data Transfer Object for one sync response. A snapshot holds every exercise and set of the user and replaces what
+// the client has; otherwise the changes are applied in order. The cursor is passed as "since" to the next sync, at
+// once if there are more changes. A snapshot comes in pages too: while there are more, the next page is asked for
+// with the same cursor as "since" and "after" as "after", and the sync carries on from the cursor after the last one.
+public class ChangesDTO {
+    private long cursor;
+    private boolean snapshot;
+    private boolean more;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long after;
+    private List<ChangeDTO> changes;
+
+    public ChangesDTO(long cursor, boolean snapshot, boolean more, List<ChangeDTO> changes) {
+        this.cursor = cursor;
+        this.snapshot = snapshot;
+        this.more = more;
+        this.changes = changes;
+    }
+
+    // Getters and setters
+    public long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public void setAfter(Long after) {
+        this.after = after;
+    }
+
+    public List<ChangeDTO> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<ChangeDTO> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,95 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.util.List;
+
+// Data Transfer Object for daily totals in columns rather than one object per day, see WireFormat.
+// Day i is (dates[i], sets[i], reps[i], volumes[i], maxWeights[i]). Dates are epoch days, delta-encoded like the
+// timestamps of ColumnarLogsDTO: the first is absolute and each next one is the difference to the one before.
+public class ColumnarDailyTotalsDTO {
+    private int count;
+    private long[] dates;
+    private long[] sets;
+    private long[] reps;
+    private long[] volumes;
+    private int[] maxWeights;
+
+    public ColumnarDailyTotalsDTO(int count, long[] dates, long[] sets, long[] reps, long[] volumes,
+                                  int[] maxWeights) {
+        this.count = count;
+        this.dates = dates;
+        this.sets = sets;
+        this.reps = reps;
+        this.volumes = volumes;
+        this.maxWeights = maxWeights;
+    }
+
+    public static ColumnarDailyTotalsDTO of(List<DailyTotalDTO> totals) {
+        int count = totals.size();
+        long[] dates = new long[count];
+        long[] sets = new long[count];
+        long[] reps = new long[count];
+        long[] volumes = new long[count];
+        int[] maxWeights = new int[count];
+        long previousDate = 0;
+        for (int i = 0; i < count; i++) {
+            DailyTotalDTO total = totals.get(i);
+            long date = total.getDate().toEpochDay();
+            dates[i] = date - previousDate;
+            sets[i] = total.getSets();
+            reps[i] = total.getReps();
+            volumes[i] = total.getVolume();
+            maxWeights[i] = total.getMaxWeight();
+            previousDate = date;
+        }
+        return new ColumnarDailyTotalsDTO(count, dates, sets, reps, volumes, maxWeights);
+    }
+
+    // Getters and setters
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public long[] getDates() {
+        return dates;
+    }
+
+    public void setDates(long[] dates) {
+        this.dates = dates;
+    }
+
+    public long[] getSets() {
+        return sets;
+    }
+
+    public void setSets(long[] sets) {
+        this.sets = sets;
+    }
+
+    public long[] getReps() {
+        return reps;
+    }
+
+    public void setReps(long[] reps) {
+        this.reps = reps;
+    }
+
+    public long[] getVolumes() {
+        return volumes;
+    }
+
+    public void setVolumes(long[] volumes) {
+        this.volumes = volumes;
+    }
+
+    public int[] getMaxWeights() {
+        return maxWeights;
+    }
+
+    public void setMaxWeights(int[] maxWeights) {
+        this.maxWeights = maxWeights;
+    }
+}
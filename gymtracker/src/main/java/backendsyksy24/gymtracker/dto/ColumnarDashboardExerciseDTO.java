@@ -0,0 +1,54 @@
+package backendsyksy24.gymtracker.dto;
+
+// Data Transfer Object for one exercise on the dashboard with its daily totals in columns, see WireFormat.
+public class ColumnarDashboardExerciseDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private ColumnarDailyTotalsDTO days;
+
+    public ColumnarDashboardExerciseDTO(Long id, String name, String description, ColumnarDailyTotalsDTO days) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.days = days;
+    }
+
+    public static ColumnarDashboardExerciseDTO of(DashboardExerciseDTO exercise) {
+        return new ColumnarDashboardExerciseDTO(exercise.getId(), exercise.getName(), exercise.getDescription(),
+                ColumnarDailyTotalsDTO.of(exercise.getDays()));
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public ColumnarDailyTotalsDTO getDays() {
+        return days;
+    }
+
+    public void setDays(ColumnarDailyTotalsDTO days) {
+        this.days = days;
+    }
+}
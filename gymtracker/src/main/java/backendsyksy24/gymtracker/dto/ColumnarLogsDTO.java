@@ -0,0 +1,86 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.ZoneOffset;
+import java.util.List;
+
+// Data Transfer Object for a list of logged sets in columns rather than one object per set, see WireFormat.
+// Set i is (ids[i], timestamps[i], weights[i], reps[i]). Ids and timestamps are delta-encoded: the first value is
+// absolute and each next one is the difference to the one before, so a history of daily sets has small numbers.
+// Timestamps are in epoch milliseconds of the stored local time (read as UTC), to the millisecond.
+public class ColumnarLogsDTO {
+    private int count;
+    private long[] ids;
+    private long[] timestamps;
+    private int[] weights;
+    private int[] reps;
+
+    public ColumnarLogsDTO(int count, long[] ids, long[] timestamps, int[] weights, int[] reps) {
+        this.count = count;
+        this.ids = ids;
+        this.timestamps = timestamps;
+        this.weights = weights;
+        this.reps = reps;
+    }
+
+    public static ColumnarLogsDTO of(List<ExerciseLogDTO> logs) {
+        int count = logs.size();
+        long[] ids = new long[count];
+        long[] timestamps = new long[count];
+        int[] weights = new int[count];
+        int[] reps = new int[count];
+        long previousId = 0;
+        long previousTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            ExerciseLogDTO log = logs.get(i);
+            long timestamp = log.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            ids[i] = log.getId() - previousId;
+            timestamps[i] = timestamp - previousTimestamp;
+            weights[i] = log.getWeight();
+            reps[i] = log.getReps();
+            previousId = log.getId();
+            previousTimestamp = timestamp;
+        }
+        return new ColumnarLogsDTO(count, ids, timestamps, weights, reps);
+    }
+
+    // Getters and setters
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public long[] getIds() {
+        return ids;
+    }
+
+    public void setIds(long[] ids) {
+        this.ids = ids;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(long[] timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    public int[] getWeights() {
+        return weights;
+    }
+
+    public void setWeights(int[] weights) {
+        this.weights = weights;
+    }
+
+    public int[] getReps() {
+        return reps;
+    }
+
+    public void setReps(int[] reps) {
+        this.reps = reps;
+    }
+}
@@ -0,0 +1,74 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Data Transfer Object for the totals of one exercise on one training day.
+public class DailyTotalDTO {
+    @JsonIgnore
+    private Long exerciseId;
+    private LocalDate date;
+    private long sets;
+    private long reps;
+    private long volume; // Sum of weight x reps, the "total kg" of the day
+    private int maxWeight;
+
+    public DailyTotalDTO(Long exerciseId, LocalDate date, long sets, long reps, long volume, int maxWeight) {
+        this.exerciseId = exerciseId;
+        this.date = date;
+        this.sets = sets;
+        this.reps = reps;
+        this.volume = volume;
+        this.maxWeight = maxWeight;
+    }
+
+    // Getters and setters
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public long getSets() {
+        return sets;
+    }
+
+    public void setSets(long sets) {
+        this.sets = sets;
+    }
+
+    public long getReps() {
+        return reps;
+    }
+
+    public void setReps(long reps) {
+        this.reps = reps;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public void setVolume(long volume) {
+        this.volume = volume;
+    }
+
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(int maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+}
@@ -0,0 +1,51 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.util.List;
+
+// Data Transfer Object for one exercise on the dashboard, with the totals of its latest training days (newest first).
+public class DashboardExerciseDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private List<DailyTotalDTO> days;
+
+    public DashboardExerciseDTO(Long id, String name, String description, List<DailyTotalDTO> days) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.days = days;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public List<DailyTotalDTO> getDays() {
+        return days;
+    }
+
+    public void setDays(List<DailyTotalDTO> days) {
+        this.days = days;
+    }
+}
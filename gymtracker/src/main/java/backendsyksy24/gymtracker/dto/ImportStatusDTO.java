@@ -0,0 +1,115 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Data Transfer Object for the progress of a CSV import job. Rows that could not be imported are skipped and
+// reported in errors (the first ones only); a failed job stops, keeping the rows imported before the failure.
+public class ImportStatusDTO {
+    private String id;
+    private String state; // QUEUED, RUNNING, DONE or FAILED
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsSkipped;
+    private long exercisesCreated;
+    private List<String> errors;
+    private String message; // Why the job failed
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public ImportStatusDTO(String id, String state, long rowsRead, long rowsImported, long rowsSkipped,
+                           long exercisesCreated, List<String> errors, String message, LocalDateTime startedAt,
+                           LocalDateTime finishedAt) {
+        this.id = id;
+        this.state = state;
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsSkipped = rowsSkipped;
+        this.exercisesCreated = exercisesCreated;
+        this.errors = errors;
+        this.message = message;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    // Getters and setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public void setRowsImported(long rowsImported) {
+        this.rowsImported = rowsImported;
+    }
+
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    public void setRowsSkipped(long rowsSkipped) {
+        this.rowsSkipped = rowsSkipped;
+    }
+
+    public long getExercisesCreated() {
+        return exercisesCreated;
+    }
+
+    public void setExercisesCreated(long exercisesCreated) {
+        this.exercisesCreated = exercisesCreated;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
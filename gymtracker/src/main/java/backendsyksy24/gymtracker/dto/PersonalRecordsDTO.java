@@ -0,0 +1,63 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Data Transfer Object for the personal records of one exercise. The fields are null while nothing is logged.
+public class PersonalRecordsDTO {
+    private Long exerciseId;
+    private RecordSetDTO bestE1rm; // The set with the highest Epley estimate
+    private Long bestVolume; // Highest daily sum of weight x reps
+    private LocalDate bestVolumeDate;
+    private List<RecordSetDTO> repMaxes; // Heaviest set per rep count, by rep count
+
+    public PersonalRecordsDTO(Long exerciseId, RecordSetDTO bestE1rm, Long bestVolume, LocalDate bestVolumeDate,
+                              List<RecordSetDTO> repMaxes) {
+        this.exerciseId = exerciseId;
+        this.bestE1rm = bestE1rm;
+        this.bestVolume = bestVolume;
+        this.bestVolumeDate = bestVolumeDate;
+        this.repMaxes = repMaxes;
+    }
+
+    // Getters and setters
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public RecordSetDTO getBestE1rm() {
+        return bestE1rm;
+    }
+
+    public void setBestE1rm(RecordSetDTO bestE1rm) {
+        this.bestE1rm = bestE1rm;
+    }
+
+    public Long getBestVolume() {
+        return bestVolume;
+    }
+
+    public void setBestVolume(Long bestVolume) {
+        this.bestVolume = bestVolume;
+    }
+
+    public LocalDate getBestVolumeDate() {
+        return bestVolumeDate;
+    }
+
+    public void setBestVolumeDate(LocalDate bestVolumeDate) {
+        this.bestVolumeDate = bestVolumeDate;
+    }
+
+    public List<RecordSetDTO> getRepMaxes() {
+        return repMaxes;
+    }
+
+    public void setRepMaxes(List<RecordSetDTO> repMaxes) {
+        this.repMaxes = repMaxes;
+    }
+}
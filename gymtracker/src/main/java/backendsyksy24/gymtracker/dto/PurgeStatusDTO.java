@@ -0,0 +1,62 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.util.Map;
+
+// Data Transfer Object for the progress of the background purge of deleted users and exercises.
+public class PurgeStatusDTO {
+    private boolean running;
+    private long pendingUsers; // Left in the current run
+    private long pendingExercises;
+    private long logsPurged; // Since the application started
+    private Map<Long, Long> inProgress; // Logs deleted so far per exercise id
+
+    public PurgeStatusDTO(boolean running, long pendingUsers, long pendingExercises, long logsPurged,
+                          Map<Long, Long> inProgress) {
+        this.running = running;
+        this.pendingUsers = pendingUsers;
+        this.pendingExercises = pendingExercises;
+        this.logsPurged = logsPurged;
+        this.inProgress = inProgress;
+    }
+
+    // Getters and setters
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public long getPendingUsers() {
+        return pendingUsers;
+    }
+
+    public void setPendingUsers(long pendingUsers) {
+        this.pendingUsers = pendingUsers;
+    }
+
+    public long getPendingExercises() {
+        return pendingExercises;
+    }
+
+    public void setPendingExercises(long pendingExercises) {
+        this.pendingExercises = pendingExercises;
+    }
+
+    public long getLogsPurged() {
+        return logsPurged;
+    }
+
+    public void setLogsPurged(long logsPurged) {
+        this.logsPurged = logsPurged;
+    }
+
+    public Map<Long, Long> getInProgress() {
+        return inProgress;
+    }
+
+    public void setInProgress(Map<Long, Long> inProgress) {
+        this.inProgress = inProgress;
+    }
+}
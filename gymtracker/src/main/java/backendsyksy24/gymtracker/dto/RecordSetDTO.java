@@ -0,0 +1,68 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.time.LocalDateTime;
+
+import backendsyksy24.gymtracker.util.OneRepMax;
+
+// Data Transfer Object for a record set, with its estimated 1RM by both formulas.
+public class RecordSetDTO {
+    private int weight;
+    private int reps;
+    private LocalDateTime timestamp;
+    private double epley;
+    private Double brzycki; // Null from 37 reps up
+
+    public RecordSetDTO(int weight, int reps, LocalDateTime timestamp) {
+        this.weight = weight;
+        this.reps = reps;
+        this.timestamp = timestamp;
+        this.epley = round(OneRepMax.epley(weight, reps));
+        Double brzycki = OneRepMax.brzycki(weight, reps);
+        this.brzycki = brzycki != null ? round(brzycki) : null;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    // Getters and setters
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getReps() {
+        return reps;
+    }
+
+    public void setReps(int reps) {
+        this.reps = reps;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getEpley() {
+        return epley;
+    }
+
+    public void setEpley(double epley) {
+        this.epley = epley;
+    }
+
+    public Double getBrzycki() {
+        return brzycki;
+    }
+
+    public void setBrzycki(Double brzycki) {
+        this.brzycki = brzycki;
+    }
+}
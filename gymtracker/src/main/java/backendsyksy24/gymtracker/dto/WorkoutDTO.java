@@ -0,0 +1,37 @@
+package backendsyksy24.gymtracker.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import backendsyksy24.gymtracker.model.ExerciseLog;
+
+// Data Transfer Object for a workout upload: the sets done for one exercise.
+public class WorkoutDTO {
+    private Long exerciseId;
+    private List<ExerciseLog> sets = new ArrayList<>();
+
+    public WorkoutDTO() {
+    }
+
+    public WorkoutDTO(Long exerciseId, List<ExerciseLog> sets) {
+        this.exerciseId = exerciseId;
+        this.sets = sets;
+    }
+
+    // Getters and setters
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public List<ExerciseLog> getSets() {
+        return sets;
+    }
+
+    public void setSets(List<ExerciseLog> sets) {
+        this.sets = sets;
+    }
+}
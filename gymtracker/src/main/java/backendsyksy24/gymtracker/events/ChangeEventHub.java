@@ -0,0 +1,389 @@
+package backendsyksy24.gymtracker.events;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.dto.ChangesDTO;
+import backendsyksy24.gymtracker.model.ChangeSequence;
+import backendsyksy24.gymtracker.repository.ChangeSequenceRepository;
+import backendsyksy24.gymtracker.service.ExerciseQueryService;
+import backendsyksy24.gymtracker.sharding.ShardContext;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+// Pushes each user's changes (see ChangeLogService) to their Server-Sent Events subscribers. An open stream is an
+// SseEmitter, which holds no thread. Events go through a bounded queue per subscriber and are written by a small
+// dispatcher pool, so a slow client never blocks a writer. A subscriber whose queue overflows is dropped; it
+// reconnects with Last-Event-ID and resumes from the change log without missing a change.
+// A write to a client that stopped reading blocks its dispatcher thread until the socket write times out. A
+// subscriber whose write has been in flight for longer than send-timeout is dropped as well, and the pool gets a
+// thread in place of the blocked one until the write returns, so the other subscribers are not held up.
+// Event ids are change log sequence numbers. Changes committed on this instance are pushed right after the commit.
+// Those committed on other instances are found by polling the sequence numbers of all subscribed users, one query
+// per poll interval. A gap in the sequence is filled from the change log, and so is the backlog after a
+// Last-Event-ID. A cursor the change log can no longer serve gets a "reset" event, and the client starts over from a
+// snapshot (GET /api/users/{id}/changes).
+@Component
+public class ChangeEventHub {
+
+    static final String CHANGE_EVENT = "change";
+    static final String RESET_EVENT = "reset";
+
+    private static final int PAGE_SIZE = 500;
+    private static final int POLL_BATCH_SIZE = 1000;
+    // Queued when a heartbeat is due
+    private static final Event HEARTBEAT = new Event(-1, null);
+
+    // Something to send: the changes up to seq, or only their position if they are to be read from the change log
+    private record Event(long seq, List<ChangeDTO> changes) {
+    }
+
+    private final class Subscriber {
+        private final Long userId;
+        private final Integer shard;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Highest position queued, so each position is queued once
+        private final AtomicLong queuedSeq;
+        // Highest position sent; only changed by the dispatcher task
+        private volatile long sentSeq;
+        private volatile boolean closed;
+        // The write in flight, if any, and whether the watchdog dropped the subscriber during it and has not yet
+        // given its stand-in thread back; guarded by this, like the changes of closed in close() and evictStalled()
+        private boolean sending;
+        private long sendStartedAt;
+        private boolean stalled;
+
+        Subscriber(Long userId, Integer shard, SseEmitter emitter, long seq) {
+            this.userId = userId;
+            this.shard = shard;
+            this.emitter = emitter;
+            this.queuedSeq = new AtomicLong(seq);
+            this.sentSeq = seq;
+        }
+    }
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExerciseQueryService exerciseQueryService;
+    private final ChangeSequenceRepository changeSequenceRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Shards shards;
+    private final ThreadPoolExecutor dispatcher;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final long sendTimeoutNanos;
+    private final Counter evicted;
+
+    public ChangeEventHub(ExerciseQueryService exerciseQueryService,
+                          ChangeSequenceRepository changeSequenceRepository,
+                          PlatformTransactionManager transactionManager, Shards shards, MeterRegistry meterRegistry,
+                          @Value("${gymtracker.events.threads:4}") int threads,
+                          @Value("${gymtracker.events.buffer-size:64}") int bufferSize,
+                          @Value("${gymtracker.events.timeout:PT30M}") Duration timeout,
+                          @Value("${gymtracker.events.send-timeout:PT10S}") Duration sendTimeout) {
+        this.exerciseQueryService = exerciseQueryService;
+        this.changeSequenceRepository = changeSequenceRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.evicted = meterRegistry.counter("gymtracker.events.evicted");
+        Gauge.builder("gymtracker.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open event streams")
+                .register(meterRegistry);
+        Gauge.builder("gymtracker.events.threads", dispatcher, ThreadPoolExecutor::getCorePoolSize)
+                .description("Dispatcher threads, including those standing in for blocked writes")
+                .register(meterRegistry);
+    }
+
+    /* Opens an event stream of the user's changes after lastEventId, or after the current position if null. */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        Long seq = readOnlyTransaction.execute(status -> changeSequenceRepository.findSeq(userId));
+        long current = seq != null ? seq : 0;
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(userId, ShardContext.current(), emitter,
+                lastEventId != null ? lastEventId : current);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        if (lastEventId != null && lastEventId != current) {
+            // The backlog, or a reset for a cursor ahead of the change log
+            announce(subscriber, new Event(Math.max(current, lastEventId + 1), null));
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void changesCommitted(ChangesAppended appended) {
+        Set<Subscriber> userSubscribers = subscribers.get(appended.userId());
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> announce(subscriber, new Event(appended.lastSeq(),
+                    appended.changes())));
+        }
+    }
+
+    // Finds the changes committed on other instances
+    @Scheduled(fixedDelayString = "${gymtracker.events.poll-interval:PT1S}")
+    public void pollSequences() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>(subscribers.keySet());
+        shards.forEach(() -> {
+            for (int from = 0; from < userIds.size(); from += POLL_BATCH_SIZE) {
+                List<Long> batch = userIds.subList(from, Math.min(from + POLL_BATCH_SIZE, userIds.size()));
+                List<ChangeSequence> sequences = readOnlyTransaction.execute(status ->
+                        changeSequenceRepository.findAllById(batch));
+                for (ChangeSequence sequence : sequences) {
+                    Set<Subscriber> userSubscribers = subscribers.get(sequence.getUserId());
+                    if (userSubscribers != null) {
+                        userSubscribers.forEach(subscriber -> announce(subscriber, new Event(sequence.getSeq(), null)));
+                    }
+                }
+            }
+        });
+    }
+
+    // Keeps idle streams open through proxies, and finds the clients that are gone
+    @Scheduled(fixedDelayString = "${gymtracker.events.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber ->
+                offer(subscriber, HEARTBEAT)));
+    }
+
+    // Drops the subscribers whose write is blocked (see the class comment). Their stream is completed once the write
+    // returns, as completing the emitter waits for the write.
+    @Scheduled(fixedDelayString = "${gymtracker.events.poll-interval:PT1S}")
+    public void evictStalled() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            synchronized (subscriber) {
+                if (!subscriber.sending || subscriber.stalled || now - subscriber.sendStartedAt < sendTimeoutNanos) {
+                    return;
+                }
+                // Closed together with the stand-in thread, so no further write starts before close() runs
+                subscriber.closed = true;
+                subscriber.stalled = true;
+                resizeDispatcher(1);
+            }
+            evicted.increment();
+            close(subscriber);
+        }));
+    }
+
+    private void announce(Subscriber subscriber, Event event) {
+        if (subscriber.queuedSeq.getAndAccumulate(event.seq(), Math::max) < event.seq()) {
+            offer(subscriber, event);
+        }
+    }
+
+    private void offer(Subscriber subscriber, Event event) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.queue.offer(event)) {
+            // Too slow: the client resumes from the change log when it reconnects
+            evicted.increment();
+            close(subscriber);
+            return;
+        }
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Sends the queued events. One task per subscriber at a time, so its events go out in order.
+    private void drain(Subscriber subscriber) {
+        if (subscriber.shard != null) {
+            ShardContext.set(subscriber.shard);
+        }
+        // A replica may not have the changes yet
+        PrimaryPin.pin();
+        try {
+            Event event;
+            while (!subscriber.closed && (event = subscriber.queue.poll()) != null) {
+                if (event == HEARTBEAT) {
+                    write(subscriber, SseEmitter.event().comment("heartbeat"));
+                } else {
+                    deliver(subscriber, event);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The client is gone, or the change log could not be read; the client reconnects and resumes
+            close(subscriber);
+        } finally {
+            PrimaryPin.clear();
+            ShardContext.clear();
+            subscriber.scheduled.set(false);
+            if (!subscriber.closed && !subscriber.queue.isEmpty()
+                    && subscriber.scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(() -> drain(subscriber));
+            }
+        }
+    }
+
+    private void deliver(Subscriber subscriber, Event event) throws IOException {
+        if (event.seq() <= subscriber.sentSeq) {
+            return;
+        }
+        List<ChangeDTO> changes = event.changes();
+        if (changes == null || changes.isEmpty() || changes.get(0).getSeq() > subscriber.sentSeq + 1) {
+            catchUp(subscriber, event.seq());
+            return;
+        }
+        for (ChangeDTO change : changes) {
+            if (change.getSeq() > subscriber.sentSeq) {
+                send(subscriber, change);
+            }
+        }
+    }
+
+    // Sends the changes from the change log up to seq
+    private void catchUp(Subscriber subscriber, long seq) throws IOException {
+        while (subscriber.sentSeq < seq) {
+            Optional<ChangesDTO> page = exerciseQueryService.getChanges(subscriber.userId, subscriber.sentSeq,
+                    PAGE_SIZE);
+            if (page.isEmpty()) {
+                write(subscriber, SseEmitter.event().name(RESET_EVENT).data("{}", MediaType.APPLICATION_JSON));
+                close(subscriber);
+                return;
+            }
+            for (ChangeDTO change : page.get().getChanges()) {
+                send(subscriber, change);
+            }
+            if (!page.get().isMore()) {
+                return;
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, ChangeDTO change) throws IOException {
+        write(subscriber, SseEmitter.event().id(change.getSeq().toString()).name(CHANGE_EVENT)
+                .data(change, MediaType.APPLICATION_JSON));
+        subscriber.sentSeq = change.getSeq();
+    }
+
+    // Every write goes through here, so the watchdog sees how long it has been in flight. A dropped subscriber gets
+    // no more writes; the exception ends its dispatcher task, which completes the stream.
+    private void write(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                throw new IOException("Event stream closed");
+            }
+            subscriber.sending = true;
+            subscriber.sendStartedAt = System.nanoTime();
+        }
+        try {
+            subscriber.emitter.send(event);
+        } finally {
+            boolean closed;
+            synchronized (subscriber) {
+                subscriber.sending = false;
+                if (subscriber.stalled) {
+                    // The blocked thread is back, so the one that stood in for it goes, once
+                    subscriber.stalled = false;
+                    resizeDispatcher(-1);
+                }
+                closed = subscriber.closed;
+            }
+            if (closed) {
+                // Closed during the write, which left the completion to this thread
+                complete(subscriber);
+            }
+        }
+    }
+
+    // Grows the pool before starting a thread, and shrinks it the other way round
+    private void resizeDispatcher(int delta) {
+        synchronized (dispatcher) {
+            int size = dispatcher.getCorePoolSize() + delta;
+            if (delta > 0) {
+                dispatcher.setMaximumPoolSize(size);
+                dispatcher.setCorePoolSize(size);
+            } else {
+                dispatcher.setCorePoolSize(size);
+                dispatcher.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    // Completing the emitter waits for a write in flight, so with one the dispatcher task completes it afterwards
+    private void close(Subscriber subscriber) {
+        boolean sending;
+        synchronized (subscriber) {
+            subscriber.closed = true;
+            sending = subscriber.sending;
+        }
+        remove(subscriber);
+        if (!sending) {
+            complete(subscriber);
+        }
+    }
+
+    private static void complete(Subscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            // Already completed
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(subscriber.userId, (userId, userSubscribers) -> {
+            removed[0] = userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(this::close));
+        dispatcher.shutdown();
+    }
+}
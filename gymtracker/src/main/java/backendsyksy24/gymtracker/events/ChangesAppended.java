@@ -0,0 +1,10 @@
+package backendsyksy24.gymtracker.events;
+
+import java.util.List;
+
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+
+// Published by ChangeLogService for the changes it appended to a user's change log, up to lastSeq. Large batches
+// come without the changes, which are then read from the change log.
+public record ChangesAppended(Long userId, long lastSeq, List<ChangeDTO> changes) {
+}
@@ -5,10 +5,20 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLRestriction;
 
-// Entity class for the user table
+import backendsyksy24.gymtracker.cache.SecondLevelCacheConfig;
+
+import java.time.LocalDateTime;
+
+// Entity class for the user table. Deleted users stay hidden from every query until the purger removes them.
+// Users are kept in the second-level cache, see SecondLevelCacheConfig.
 @Entity
 @Table(name="UserTable")
+@SQLRestriction("deleted_at is null")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USER_REGION)
 public class AppUser {
 
     @Id
@@ -25,8 +35,11 @@ public class AppUser {
     @Column(nullable = false)
     private String role;
 
-    // Each user can have multiple exercises
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    // Set when the user is deleted. The rows are removed later in chunks by PurgeService.
+    private LocalDateTime deletedAt;
+
+    // Each user can have multiple exercises. Removal is not cascaded: see PurgeService.
+    @OneToMany(mappedBy = "user", cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JsonManagedReference // Manages serialization of exercises
     private List<Exercise> exercises;
 
@@ -71,4 +84,12 @@ public class AppUser {
     public void setRole(String role) {
         this.role = "ROLE_" + role.toUpperCase();
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,179 @@
+package backendsyksy24.gymtracker.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.*;
+
+// Entity class for the change log: one row per saved or deleted exercise or set, numbered per user by
+// ChangeSequence. A saved row holds the fields as they were written, so a sync reads nothing else. A deleted row is
+// a tombstone; the sets of a deleted exercise get no tombstones of their own. Rows older than the retention are
+// compacted away, see ChangeLogService.
+@Entity
+@Table(name="ChangeLogTable")
+@IdClass(ChangeRecord.Key.class)
+public class ChangeRecord {
+
+    public static final String EXERCISE = "exercise";
+    public static final String LOG = "log";
+
+    @Id
+    private Long userId;
+
+    @Id
+    private Long seq;
+
+    @Column(nullable = false)
+    private String type;
+
+    // The id of the exercise or set
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+
+    // Exercise fields
+    private String name;
+    private String description;
+
+    // Set fields
+    private Long exerciseId;
+    private LocalDateTime timestamp;
+    private Integer weight;
+    private Integer reps;
+
+    public ChangeRecord() {
+    }
+
+    public ChangeRecord(String type, Long entityId, boolean deleted) {
+        this.type = type;
+        this.entityId = entityId;
+        this.deleted = deleted;
+    }
+
+    // Getters and setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
+    public Integer getReps() {
+        return reps;
+    }
+
+    public void setReps(Integer reps) {
+        this.reps = reps;
+    }
+
+    public static class Key implements Serializable {
+
+        private Long userId;
+        private Long seq;
+
+        public Key() {
+        }
+
+        public Key(Long userId, Long seq) {
+            this.userId = userId;
+            this.seq = seq;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && userId.equals(key.userId) && seq.equals(key.seq);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, seq);
+        }
+    }
+}
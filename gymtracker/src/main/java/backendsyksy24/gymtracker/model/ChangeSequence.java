@@ -0,0 +1,52 @@
+package backendsyksy24.gymtracker.model;
+
+import jakarta.persistence.*;
+
+// Entity class for the change log position of a user: the last sequence number handed out, and the horizon up to
+// which the change log was compacted. A sync cursor below the horizon can no longer be served. See ChangeLogService.
+@Entity
+@Table(name="ChangeSequenceTable")
+public class ChangeSequence {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private long seq;
+
+    @Column(nullable = false)
+    private long horizon;
+
+    public ChangeSequence() {
+    }
+
+    public ChangeSequence(Long userId, long seq) {
+        this.userId = userId;
+        this.seq = seq;
+    }
+
+    // Getters and setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+    public void setHorizon(long horizon) {
+        this.horizon = horizon;
+    }
+}
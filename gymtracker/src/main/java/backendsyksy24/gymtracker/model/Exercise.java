@@ -3,15 +3,32 @@ package backendsyksy24.gymtracker.model;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLRestriction;
+
+import backendsyksy24.gymtracker.cache.SecondLevelCacheConfig;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
-// Entity class for the exercise table
+// Entity class for the exercise table. Deleted exercises stay hidden from every query until the purger removes them.
+// Exercises are kept in the second-level cache, see SecondLevelCacheConfig.
 @Entity
 @Table(name="ExerciseTable")
+@SQLRestriction("deleted_at is null")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.EXERCISE_REGION)
 public class Exercise {
 
+    public static final String ID_GENERATOR = "exercise";
+    public static final int ALLOCATION_SIZE = 50;
+
+    // Pooled table generator like ExerciseLog. Each shard hands out ids from its own range, so ids are unique across
+    // shards and a user's exercises keep their ids when moved to another shard.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = ID_GENERATOR)
+    @TableGenerator(name = ID_GENERATOR, table = "IdGeneratorTable", pkColumnValue = ID_GENERATOR,
+            allocationSize = ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -23,8 +40,11 @@ public class Exercise {
     @JsonBackReference // Prevents serialization of the user in Exercise
     private AppUser user;
 
-    // Each exercise can have multiple logs
-    @OneToMany(mappedBy = "exercise", cascade = CascadeType.ALL)
+    // Set when the exercise is deleted. The rows are removed later in chunks by PurgeService.
+    private LocalDateTime deletedAt;
+
+    // Each exercise can have multiple logs. Removal is not cascaded: see PurgeService.
+    @OneToMany(mappedBy = "exercise", cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JsonManagedReference // Manages serialization of exerciseLogs
     private List<ExerciseLog> exerciseLogs;
 
@@ -77,4 +97,12 @@ public class Exercise {
     public void setExerciseLogs(List<ExerciseLog> exerciseLogs) {
         this.exerciseLogs = exerciseLogs;
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,108 @@
+package backendsyksy24.gymtracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+// Entity class for the daily volume rollup: the totals of one exercise on one day, kept up to date on every log write
+@Entity
+@Table(name="ExerciseDailyVolumeTable", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_volume_exercise_day", columnNames = {"exercise_id", "training_day"})
+})
+public class ExerciseDailyVolume {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JsonIgnore
+    private Exercise exercise;
+
+    // "day" is a reserved word in H2
+    @Column(name = "training_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private long setCount;
+
+    @Column(nullable = false)
+    private long totalReps;
+
+    // Sum of weight x reps
+    @Column(nullable = false)
+    private long volume;
+
+    @Column(nullable = false)
+    private int maxWeight;
+
+    public ExerciseDailyVolume() {
+    }
+
+    public ExerciseDailyVolume(Exercise exercise, LocalDate day, long setCount, long totalReps, long volume, int maxWeight) {
+        this.exercise = exercise;
+        this.day = day;
+        this.setCount = setCount;
+        this.totalReps = totalReps;
+        this.volume = volume;
+        this.maxWeight = maxWeight;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Exercise getExercise() {
+        return exercise;
+    }
+
+    public void setExercise(Exercise exercise) {
+        this.exercise = exercise;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public long getSetCount() {
+        return setCount;
+    }
+
+    public void setSetCount(long setCount) {
+        this.setCount = setCount;
+    }
+
+    public long getTotalReps() {
+        return totalReps;
+    }
+
+    public void setTotalReps(long totalReps) {
+        this.totalReps = totalReps;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public void setVolume(long volume) {
+        this.volume = volume;
+    }
+
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(int maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+}
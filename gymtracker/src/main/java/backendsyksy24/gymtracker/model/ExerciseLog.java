@@ -6,13 +6,22 @@ import jakarta.validation.constraints.Positive;
 
 import java.time.LocalDateTime;
 
-// Entity class for the exercise log table
+// Entity class for the exercise log table. The composite index serves time-ordered keyset pages per exercise.
 @Entity
-@Table(name="ExerciseLogTable")
+@Table(name="ExerciseLogTable", indexes = {
+    @Index(name = "idx_exercise_log_exercise_time", columnList = "exercise_id, timestamp, id")
+})
 public class ExerciseLog {
 
+    public static final String ID_GENERATOR = "exercise_log";
+    public static final int ALLOCATION_SIZE = 50;
+
+    // Ids come from a pooled table generator instead of IDENTITY, so Hibernate can batch inserts.
+    // One round trip to the generator table reserves ALLOCATION_SIZE ids.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = ID_GENERATOR)
+    @TableGenerator(name = ID_GENERATOR, table = "IdGeneratorTable", pkColumnValue = ID_GENERATOR,
+            allocationSize = ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,127 @@
+package backendsyksy24.gymtracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Entity class for the all-time records of an exercise: the set with the best estimated 1RM and the best day
+@Entity
+@Table(name="ExerciseRecordTable")
+public class ExerciseRecord {
+
+    // Shares the id of the exercise
+    @Id
+    private Long exerciseId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JsonIgnore
+    private Exercise exercise;
+
+    @Column(nullable = false)
+    private int e1rmWeight;
+
+    @Column(nullable = false)
+    private int e1rmReps;
+
+    @Column(nullable = false)
+    private Long e1rmLogId;
+
+    @Column(nullable = false)
+    private LocalDateTime e1rmAchievedAt;
+
+    // Highest daily volume (sum of weight x reps) and the day it was reached
+    @Column(nullable = false)
+    private long bestVolume;
+
+    private LocalDate bestVolumeDay;
+
+    public ExerciseRecord() {
+    }
+
+    public ExerciseRecord(Exercise exercise, ExerciseLog e1rmHolder) {
+        this.exercise = exercise;
+        setE1rmHolder(e1rmHolder);
+    }
+
+    public void setE1rmHolder(ExerciseLog holder) {
+        this.e1rmWeight = holder.getWeight();
+        this.e1rmReps = holder.getReps();
+        this.e1rmLogId = holder.getId();
+        this.e1rmAchievedAt = holder.getTimestamp();
+    }
+
+    public void setE1rmHolder(ExerciseRepMax holder) {
+        this.e1rmWeight = holder.getWeight();
+        this.e1rmReps = holder.getReps();
+        this.e1rmLogId = holder.getLogId();
+        this.e1rmAchievedAt = holder.getAchievedAt();
+    }
+
+    // Getters and setters
+    public Long getExerciseId() {
+        return exerciseId;
+    }
+
+    public void setExerciseId(Long exerciseId) {
+        this.exerciseId = exerciseId;
+    }
+
+    public Exercise getExercise() {
+        return exercise;
+    }
+
+    public void setExercise(Exercise exercise) {
+        this.exercise = exercise;
+    }
+
+    public int getE1rmWeight() {
+        return e1rmWeight;
+    }
+
+    public void setE1rmWeight(int e1rmWeight) {
+        this.e1rmWeight = e1rmWeight;
+    }
+
+    public int getE1rmReps() {
+        return e1rmReps;
+    }
+
+    public void setE1rmReps(int e1rmReps) {
+        this.e1rmReps = e1rmReps;
+    }
+
+    public Long getE1rmLogId() {
+        return e1rmLogId;
+    }
+
+    public void setE1rmLogId(Long e1rmLogId) {
+        this.e1rmLogId = e1rmLogId;
+    }
+
+    public LocalDateTime getE1rmAchievedAt() {
+        return e1rmAchievedAt;
+    }
+
+    public void setE1rmAchievedAt(LocalDateTime e1rmAchievedAt) {
+        this.e1rmAchievedAt = e1rmAchievedAt;
+    }
+
+    public long getBestVolume() {
+        return bestVolume;
+    }
+
+    public void setBestVolume(long bestVolume) {
+        this.bestVolume = bestVolume;
+    }
+
+    public LocalDate getBestVolumeDay() {
+        return bestVolumeDay;
+    }
+
+    public void setBestVolumeDay(LocalDate bestVolumeDay) {
+        this.bestVolumeDay = bestVolumeDay;
+    }
+}
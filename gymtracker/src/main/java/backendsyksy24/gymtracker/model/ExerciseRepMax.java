@@ -0,0 +1,99 @@
+package backendsyksy24.gymtracker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Entity class for the heaviest set of an exercise at one rep count, e.g. the best 5-rep set
+@Entity
+@Table(name="ExerciseRepMaxTable", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_rep_max_exercise_reps", columnNames = {"exercise_id", "reps"})
+})
+public class ExerciseRepMax {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JsonIgnore
+    private Exercise exercise;
+
+    @Column(nullable = false)
+    private int reps;
+
+    @Column(nullable = false)
+    private int weight;
+
+    // The log that holds the record, so a delete can tell whether the record has to be recomputed
+    @Column(nullable = false)
+    private Long logId;
+
+    @Column(nullable = false)
+    private LocalDateTime achievedAt;
+
+    public ExerciseRepMax() {
+    }
+
+    public ExerciseRepMax(Exercise exercise, ExerciseLog holder) {
+        this.exercise = exercise;
+        this.reps = holder.getReps();
+        setHolder(holder);
+    }
+
+    public void setHolder(ExerciseLog holder) {
+        this.weight = holder.getWeight();
+        this.logId = holder.getId();
+        this.achievedAt = holder.getTimestamp();
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Exercise getExercise() {
+        return exercise;
+    }
+
+    public void setExercise(Exercise exercise) {
+        this.exercise = exercise;
+    }
+
+    public int getReps() {
+        return reps;
+    }
+
+    public void setReps(int reps) {
+        this.reps = reps;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public Long getLogId() {
+        return logId;
+    }
+
+    public void setLogId(Long logId) {
+        this.logId = logId;
+    }
+
+    public LocalDateTime getAchievedAt() {
+        return achievedAt;
+    }
+
+    public void setAchievedAt(LocalDateTime achievedAt) {
+        this.achievedAt = achievedAt;
+    }
+}
@@ -0,0 +1,85 @@
+package backendsyksy24.gymtracker.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.*;
+
+// Entity class for the version of a cached read: the exercise list of a user or the logs of an exercise.
+// Every write to the resource sets a new random version, so a version never comes back once replaced, not even
+// after the rows were purged or moved to another shard. See ResponseCache.
+@Entity
+@Table(name="ResourceVersionTable")
+@IdClass(ResourceVersion.Key.class)
+public class ResourceVersion {
+
+    public static final String EXERCISES = "exercises"; // The exercises of the user with the resource id
+    public static final String LOGS = "logs"; // The logs of the exercise with the resource id
+
+    @Id
+    private String kind;
+
+    @Id
+    private Long resourceId;
+
+    @Column(nullable = false)
+    private long version;
+
+    public ResourceVersion() {
+    }
+
+    public ResourceVersion(String kind, Long resourceId, long version) {
+        this.kind = kind;
+        this.resourceId = resourceId;
+        this.version = version;
+    }
+
+    // Getters and setters
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public Long getResourceId() {
+        return resourceId;
+    }
+
+    public void setResourceId(Long resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public static class Key implements Serializable {
+
+        private String kind;
+        private Long resourceId;
+
+        public Key() {
+        }
+
+        public Key(String kind, Long resourceId) {
+            this.kind = kind;
+            this.resourceId = resourceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && kind.equals(key.kind) && resourceId.equals(key.resourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, resourceId);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package backendsyksy24.gymtracker.querycount;
+
+import org.hibernate.SessionEventListener;
+
+// Measures how long each session holds its JDBC connection, from acquisition to release, and adds it to the open
+// QueryCounter scopes. Registered through hibernate.session.events.auto, so Hibernate creates one per session.
+// In a transaction the connection is held from begin to commit; outside one, per statement.
+public class ConnectionHoldListener implements SessionEventListener {
+
+    private long acquiredAt = -1;
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        acquiredAt = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcConnectionReleaseEnd() {
+        if (acquiredAt >= 0) {
+            QueryCounter.connectionReleased(System.nanoTime() - acquiredAt);
+            acquiredAt = -1;
+        }
+    }
+}
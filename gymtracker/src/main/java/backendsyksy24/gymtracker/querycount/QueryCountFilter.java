@@ -0,0 +1,179 @@
+package backendsyksy24.gymtracker.querycount;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Counts the statements of each request, including those of the security filters and of lazy loading while the
+// response is serialized. With expose on (dev), the count is sent in the X-Query-Count header and recorded in
+// gymtracker.http.queries{method,uri}; the body is buffered for that, so the header can follow serialization.
+// Responses too large to buffer opt out with disableBuffering and go without the header. An async request is
+// counted over its dispatches and its body sent after the last one; statements on other threads are not counted.
+// Always records how long the request held database connections, in gymtracker.http.connection.hold{method,uri},
+// and how many it took, in gymtracker.http.connections{method,uri}. A long hold per request is what drains the pool.
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    private static final String UNBUFFERED_ATTRIBUTE = QueryCountFilter.class.getName() + ".UNBUFFERED";
+
+    private final boolean expose;
+    private final MeterRegistry meterRegistry;
+
+    public QueryCountFilter(boolean expose, MeterRegistry meterRegistry) {
+        this.expose = expose;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Also runs on the async dispatch of a request, which writes the body of an async handler (login, register)
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // On the async dispatch the response is the wrapper of the first dispatch, which still holds the buffer
+        HttpServletResponse responseToUse = response;
+        if (expose && !isAsyncDispatch(request)) {
+            responseToUse = new BufferingResponseWrapper(request, response);
+        }
+        QueryCounter.Scope scope = QueryCounter.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, responseToUse);
+        } finally {
+            scope.close();
+            Totals totals = Totals.of(request).add(scope);
+            // Record and send once the last dispatch of the request is done
+            if (!request.isAsyncStarted()) {
+                recordConnections(request, totals);
+                if (expose) {
+                    complete(request, responseToUse, totals);
+                }
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response, Totals totals) throws IOException {
+        BufferingResponseWrapper buffered = WebUtils.getNativeResponse(response, BufferingResponseWrapper.class);
+        if (buffered == null) {
+            return;
+        }
+        if (!isUnbuffered(request)) {
+            recordQueries(request, totals.count);
+            if (!buffered.isCommitted()) {
+                buffered.setHeader(QUERY_COUNT_HEADER, Long.toString(totals.count));
+            }
+        }
+        buffered.copyBodyToResponse();
+    }
+
+    /* Sends the body of the request's response to the client as it is written, e.g. a streamed export. Must be
+     * called before the body is written. The response has no X-Query-Count header, and a body written on another
+     * thread is not counted. */
+    public static void disableBuffering(HttpServletRequest request) {
+        request.setAttribute(UNBUFFERED_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    private static boolean isUnbuffered(HttpServletRequest request) {
+        return request.getAttribute(UNBUFFERED_ATTRIBUTE) != null;
+    }
+
+    private void recordQueries(HttpServletRequest request, long count) {
+        DistributionSummary.builder("gymtracker.http.queries")
+                .description("SQL statements per request")
+                .tags(tags(request))
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    private void recordConnections(HttpServletRequest request, Totals totals) {
+        Tags tags = tags(request);
+        Timer.builder("gymtracker.http.connection.hold")
+                .description("Time database connections were held per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(totals.connectionNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("gymtracker.http.connections")
+                .description("Database connections taken per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(totals.connections);
+    }
+
+    private Tags tags(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+    }
+
+    // The counts of all dispatches of a request so far, kept in a request attribute between them
+    private static class Totals {
+
+        private static final String ATTRIBUTE = Totals.class.getName();
+
+        private long count;
+        private long connections;
+        private long connectionNanos;
+
+        static Totals of(HttpServletRequest request) {
+            Totals totals = (Totals) request.getAttribute(ATTRIBUTE);
+            if (totals == null) {
+                totals = new Totals();
+                request.setAttribute(ATTRIBUTE, totals);
+            }
+            return totals;
+        }
+
+        Totals add(QueryCounter.Scope scope) {
+            count += scope.getCount();
+            connections += scope.getConnections();
+            connectionNanos += scope.getConnectionNanos();
+            return this;
+        }
+    }
+
+    // Buffers the body unless buffering was disabled for the request
+    private static class BufferingResponseWrapper extends ContentCachingResponseWrapper {
+
+        private final HttpServletRequest request;
+
+        BufferingResponseWrapper(HttpServletRequest request, HttpServletResponse response) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return isUnbuffered(request) ? getResponse().getOutputStream() : super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return isUnbuffered(request) ? getResponse().getWriter() : super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (isUnbuffered(request)) {
+                getResponse().flushBuffer();
+            } else {
+                super.flushBuffer();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package backendsyksy24.gymtracker.querycount;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the SQL statements Hibernate prepares on the current thread while a scope is open.
+// Registered through hibernate.session_factory.statement_inspector, so every session factory counts, also in
+// @DataJpaTest. A JDBC batch is one statement. Plain JdbcTemplate work (the shard directory, the rebalancer) is
+// not seen here.
+// Scopes nest: a statement counts for every open scope on the thread, and a closed scope is remembered by its
+// parent, which is how a test sees the count of each request it made.
+// ConnectionHoldListener reports to the same scopes how many connections were held and for how long.
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.count++;
+        }
+        return sql;
+    }
+
+    static void connectionReleased(long heldNanos) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.connections++;
+            scope.connectionNanos += heldNanos;
+        }
+    }
+
+    /* Starts counting on the current thread until the returned scope is closed. */
+    public static Scope open(String name) {
+        Scope scope = new Scope(name, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final String name;
+        private final Scope parent;
+        private final List<Scope> nested = new ArrayList<>();
+        private long count;
+        private long connections;
+        private long connectionNanos;
+        private boolean closed;
+
+        private Scope(String name, Scope parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (CURRENT.get() == this) {
+                if (parent == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(parent);
+                }
+            }
+            if (parent != null) {
+                parent.nested.add(this);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /* The JDBC connections released while the scope was open. */
+        public long getConnections() {
+            return connections;
+        }
+
+        /* The total time those connections were held. */
+        public long getConnectionNanos() {
+            return connectionNanos;
+        }
+
+        /* The scopes that were opened and closed inside this one, in the order they were closed. */
+        public List<Scope> getNested() {
+            return Collections.unmodifiableList(nested);
+        }
+    }
+}
@@ -1,10 +1,64 @@
 package backendsyksy24.gymtracker.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import backendsyksy24.gymtracker.dto.UserDTO;
 import backendsyksy24.gymtracker.model.AppUser;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Username lookups are answered from the query cache until a user is written, see SecondLevelCacheConfig.
+// Native writes name their table, so Hibernate only invalidates what they touch instead of every cached region.
 public interface AppUserRepository extends JpaRepository<AppUser, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     AppUser findByUsername(String username);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsByUsername(String username);
-}
\ No newline at end of file
+
+    // Inserts a user whose id was handed out by the shard directory
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_table"))
+    @Query(value = "insert into user_table (id, username, password, role) values (:id, :username, :password, :role)",
+            nativeQuery = true)
+    int insertWithId(@Param("id") Long id, @Param("username") String username, @Param("password") String password,
+                     @Param("role") String role);
+
+    // The user list without loading entities
+    @Query("select new backendsyksy24.gymtracker.dto.UserDTO(u.id, u.username, u.role) from AppUser u order by u.id")
+    List<UserDTO> findAllDtos();
+
+    // Keyset scan over all user ids, for jobs that process every user in small transactions
+    @Query("select u.id from AppUser u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Soft delete: hides the user at once and frees the username, PurgeService removes the rows later
+    @Modifying
+    @Query("update AppUser u set u.deletedAt = :deletedAt, u.username = concat('deleted#', u.id) where u.id = :id")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // The queries below see deleted rows, which the entity queries hide. Native SQL skips the entity's restriction.
+    @Query(value = "select id from user_table where deleted_at is not null order by id", nativeQuery = true)
+    List<Long> findDeletedIds();
+
+    // Locks the user's row, also when deleted, for the rest of the transaction. Serializes the writers of the
+    // user's archive segment (see LogArchive) across instances. Returns null if there is no such user.
+    @Query(value = "select id from user_table where id = :id for update", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
+
+    // Removes a deleted user once all of their exercises are gone
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_table"))
+    @Query(value = "delete from user_table where id = :id and deleted_at is not null "
+            + "and not exists (select 1 from exercise_table e where e.user_id = :id)", nativeQuery = true)
+    int purgeDeleted(@Param("id") Long id);
+}
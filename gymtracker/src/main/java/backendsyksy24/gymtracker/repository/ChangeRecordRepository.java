@@ -0,0 +1,35 @@
+package backendsyksy24.gymtracker.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.model.ChangeRecord;
+
+public interface ChangeRecordRepository extends JpaRepository<ChangeRecord, ChangeRecord.Key> {
+
+    // The user's changes after the cursor, in order. A range scan of the primary key, so the cost grows with the
+    // number of changes returned, not with the size of the change log.
+    @Query("select new backendsyksy24.gymtracker.dto.ChangeDTO(c.seq, c.type, c.entityId, c.deleted, c.name, "
+            + "c.description, c.exerciseId, c.timestamp, c.weight, c.reps) "
+            + "from ChangeRecord c where c.userId = :userId and c.seq > :since order by c.seq")
+    List<ChangeDTO> findChanges(@Param("userId") Long userId, @Param("since") long since, Limit limit);
+
+    // The newest change of the user written before the cutoff, up to which compaction removes their changes
+    @Query("select max(c.seq) from ChangeRecord c where c.userId = :userId and c.changedAt < :cutoff")
+    Long findLastSeqBefore(@Param("userId") Long userId, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from ChangeRecord c where c.userId = :userId and c.seq <= :seq")
+    int deleteUpTo(@Param("userId") Long userId, @Param("seq") long seq);
+
+    @Modifying
+    @Query("delete from ChangeRecord c where c.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,38 @@
+package backendsyksy24.gymtracker.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import backendsyksy24.gymtracker.model.ChangeSequence;
+
+public interface ChangeSequenceRepository extends JpaRepository<ChangeSequence, Long> {
+
+    // Hands out the next count sequence numbers. An update reads the latest committed row, also in a transaction
+    // that read the table before, and locks it until the commit, so the user's changes commit in sequence order.
+    @Modifying
+    @Query("update ChangeSequence s set s.seq = s.seq + :count where s.userId = :userId")
+    int allocate(@Param("userId") Long userId, @Param("count") long count);
+
+    // Sees the transaction's own allocate, which the persistence context does not
+    @Query("select s.seq from ChangeSequence s where s.userId = :userId")
+    Long findSeq(@Param("userId") Long userId);
+
+    // Never lowers the horizon, and always updates (and locks) the row
+    @Modifying
+    @Query("update ChangeSequence s set s.horizon = case when s.horizon < :horizon then :horizon else s.horizon end "
+            + "where s.userId = :userId")
+    int raiseHorizon(@Param("userId") Long userId, @Param("horizon") long horizon);
+
+    @Modifying
+    @Query("delete from ChangeSequence s where s.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    // Keyset scan over the users with a change log, for compaction
+    @Query("select s.userId from ChangeSequence s where s.userId > :afterId order by s.userId")
+    List<Long> findUserIdsAfter(@Param("afterId") Long afterId, Limit limit);
+}
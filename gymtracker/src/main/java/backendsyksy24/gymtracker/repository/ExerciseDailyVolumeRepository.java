@@ -0,0 +1,61 @@
+package backendsyksy24.gymtracker.repository;
+
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.model.ExerciseDailyVolume;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExerciseDailyVolumeRepository extends JpaRepository<ExerciseDailyVolume, Long> {
+    Optional<ExerciseDailyVolume> findByExerciseIdAndDay(Long exerciseId, LocalDate day);
+
+    // Adds new sets to an existing day. Returns 0 if the day has no row yet.
+    @Modifying
+    @Query("update ExerciseDailyVolume v set v.setCount = v.setCount + :sets, v.totalReps = v.totalReps + :reps, "
+            + "v.volume = v.volume + :volume, "
+            + "v.maxWeight = case when v.maxWeight < :maxWeight then :maxWeight else v.maxWeight end "
+            + "where v.exercise.id = :exerciseId and v.day = :day")
+    int increment(@Param("exerciseId") Long exerciseId, @Param("day") LocalDate day, @Param("sets") long sets,
+                  @Param("reps") long reps, @Param("volume") long volume, @Param("maxWeight") int maxWeight);
+
+    @Modifying
+    @Query("delete from ExerciseDailyVolume v where v.exercise.id = :exerciseId")
+    int deleteByExerciseId(@Param("exerciseId") Long exerciseId);
+
+    // Recomputes the rollup of one exercise from its raw logs
+    @Modifying
+    @Query("insert into ExerciseDailyVolume (exercise, day, setCount, totalReps, volume, maxWeight) "
+            + "select l.exercise, cast(l.timestamp as LocalDate), count(l), sum(l.reps), sum(l.weight * l.reps), max(l.weight) "
+            + "from ExerciseLog l where l.exercise.id = :exerciseId group by l.exercise, cast(l.timestamp as LocalDate)")
+    int rebuildForExercise(@Param("exerciseId") Long exerciseId);
+
+    // Per-day totals of the latest dayCount days of each of the user's exercises, newest day first within each
+    // exercise. The days are ranked per exercise in the database, so older days are never sent over.
+    @Query("select new backendsyksy24.gymtracker.dto.DailyTotalDTO(r.exerciseId, r.trainingDay, r.setCount, r.totalReps, r.volume, r.maxWeight) "
+            + "from (select v.exercise.id as exerciseId, v.day as trainingDay, v.setCount as setCount, v.totalReps as totalReps, "
+            + "v.volume as volume, v.maxWeight as maxWeight, "
+            + "row_number() over (partition by v.exercise.id order by v.day desc) as dayRank "
+            + "from ExerciseDailyVolume v where v.exercise.user.id = :userId) r "
+            + "where r.dayRank <= :dayCount order by r.exerciseId, r.trainingDay desc")
+    List<DailyTotalDTO> findDailyTotalsByUserId(@Param("userId") Long userId, @Param("dayCount") int dayCount);
+
+    // Per-day totals of one exercise in [from, to], oldest day first
+    @Query("select new backendsyksy24.gymtracker.dto.DailyTotalDTO(v.exercise.id, v.day, v.setCount, v.totalReps, v.volume, v.maxWeight) "
+            + "from ExerciseDailyVolume v where v.exercise.id = :exerciseId and v.day between :from and :to order by v.day")
+    List<DailyTotalDTO> findDailyTotals(@Param("exerciseId") Long exerciseId, @Param("from") LocalDate from,
+                                        @Param("to") LocalDate to);
+
+    @Query("select v.volume from ExerciseDailyVolume v where v.exercise.id = :exerciseId and v.day = :day")
+    Long findVolume(@Param("exerciseId") Long exerciseId, @Param("day") LocalDate day);
+
+    // Days of one exercise by volume, highest first, earliest first on ties
+    @Query("select new backendsyksy24.gymtracker.dto.DailyTotalDTO(v.exercise.id, v.day, v.setCount, v.totalReps, v.volume, v.maxWeight) "
+            + "from ExerciseDailyVolume v where v.exercise.id = :exerciseId order by v.volume desc, v.day")
+    List<DailyTotalDTO> findBestDays(@Param("exerciseId") Long exerciseId, Limit limit);
+}
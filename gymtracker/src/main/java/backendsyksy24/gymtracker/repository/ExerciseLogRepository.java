@@ -1,10 +1,77 @@
 package backendsyksy24.gymtracker.repository;
 
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.ChangeRecord;
 import backendsyksy24.gymtracker.model.ExerciseLog;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ExerciseLogRepository extends JpaRepository<ExerciseLog, Long> {
     List<ExerciseLog> findByExerciseId(Long exerciseId);
-}
\ No newline at end of file
+
+    // The read queries below select only the columns the log endpoints return: no entities, persistence context
+    // snapshots or exercise proxies for rows that are only serialized.
+
+    // All logs of an exercise, oldest first, in the order of the (exercise_id, timestamp, id) index
+    @Query("select new backendsyksy24.gymtracker.dto.ExerciseLogDTO(l.id, l.timestamp, l.weight, l.reps) "
+            + "from ExerciseLog l where l.exercise.id = :exerciseId order by l.timestamp, l.id")
+    List<ExerciseLogDTO> findDtosByExerciseId(@Param("exerciseId") Long exerciseId);
+
+    // All logs of an exercise, oldest first, read from the database in chunks of fetch size rows while the stream is
+    // consumed. Must be consumed in a transaction and closed. On MySQL the fetch size needs useCursorFetch=true.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new backendsyksy24.gymtracker.dto.ExerciseLogDTO(l.id, l.timestamp, l.weight, l.reps) "
+            + "from ExerciseLog l where l.exercise.id = :exerciseId order by l.timestamp, l.id")
+    Stream<ExerciseLogDTO> streamDtosByExerciseId(@Param("exerciseId") Long exerciseId);
+
+    // A page of the logs of several exercises as sync changes, in id order after afterId
+    @Query("select new backendsyksy24.gymtracker.dto.ChangeDTO('" + ChangeRecord.LOG + "', l.id, l.exercise.id, "
+            + "l.timestamp, l.weight, l.reps) from ExerciseLog l where l.exercise.id in :exerciseIds "
+            + "and l.id > :afterId order by l.id")
+    List<ChangeDTO> findChangePage(@Param("exerciseIds") Collection<Long> exerciseIds, @Param("afterId") long afterId,
+                                   Limit limit);
+
+    // Keyset page, newest first: logs in [from, before) plus the logs at exactly "before" with a smaller id.
+    // Served by the (exercise_id, timestamp, id) index, so the cost does not grow with the history size.
+    @Query("select new backendsyksy24.gymtracker.dto.ExerciseLogDTO(l.id, l.timestamp, l.weight, l.reps) "
+            + "from ExerciseLog l where l.exercise.id = :exerciseId and l.timestamp >= :from "
+            + "and (l.timestamp < :beforeTimestamp or (l.timestamp = :beforeTimestamp and l.id < :beforeId)) "
+            + "order by l.timestamp desc, l.id desc")
+    List<ExerciseLogDTO> findPage(@Param("exerciseId") Long exerciseId,
+                               @Param("from") LocalDateTime from,
+                               @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                               @Param("beforeId") Long beforeId,
+                               Limit limit);
+
+    // Heaviest set of an exercise in [start, end), used when the heaviest set of a day is deleted
+    @Query("select max(l.weight) from ExerciseLog l where l.exercise.id = :exerciseId "
+            + "and l.timestamp >= :start and l.timestamp < :end")
+    Integer findMaxWeight(@Param("exerciseId") Long exerciseId, @Param("start") LocalDateTime start,
+                          @Param("end") LocalDateTime end);
+
+    // Heaviest set at a rep count, earliest first on ties. Used to rebuild the rep max records.
+    ExerciseLog findFirstByExerciseIdAndRepsOrderByWeightDescTimestampAscIdAsc(Long exerciseId, int reps);
+
+    @Query("select distinct l.reps from ExerciseLog l where l.exercise.id = :exerciseId")
+    List<Integer> findDistinctReps(@Param("exerciseId") Long exerciseId);
+
+    // Next chunk of logs older than "before" to move to the archive, see LogArchiver
+    @Query("select l from ExerciseLog l where l.exercise.id in :exerciseIds and l.timestamp < :before order by l.id")
+    List<ExerciseLog> findArchivable(@Param("exerciseIds") Collection<Long> exerciseIds,
+                                     @Param("before") LocalDateTime before, Limit limit);
+
+    // Next chunk of log ids to purge, see PurgeService
+    @Query("select l.id from ExerciseLog l where l.exercise.id = :exerciseId order by l.id")
+    List<Long> findIdsByExerciseId(@Param("exerciseId") Long exerciseId, Limit limit);
+}
@@ -0,0 +1,28 @@
+package backendsyksy24.gymtracker.repository;
+
+import backendsyksy24.gymtracker.model.ExerciseRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ExerciseRecordRepository extends JpaRepository<ExerciseRecord, Long> {
+    // The columns the records endpoint returns, selected without loading the entity
+    interface Summary {
+        int getE1rmWeight();
+        int getE1rmReps();
+        LocalDateTime getE1rmAchievedAt();
+        long getBestVolume();
+        LocalDate getBestVolumeDay();
+    }
+
+    Optional<Summary> findSummaryByExerciseId(Long exerciseId);
+
+    @Modifying
+    @Query("delete from ExerciseRecord r where r.exerciseId = :exerciseId")
+    int deleteByExerciseId(@Param("exerciseId") Long exerciseId);
+}
@@ -0,0 +1,26 @@
+package backendsyksy24.gymtracker.repository;
+
+import backendsyksy24.gymtracker.dto.RecordSetDTO;
+import backendsyksy24.gymtracker.model.ExerciseRepMax;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ExerciseRepMaxRepository extends JpaRepository<ExerciseRepMax, Long> {
+    List<ExerciseRepMax> findByExerciseIdOrderByReps(Long exerciseId);
+
+    // Rep maxes as the records endpoint returns them, without loading entities
+    @Query("select new backendsyksy24.gymtracker.dto.RecordSetDTO(r.weight, r.reps, r.achievedAt) "
+            + "from ExerciseRepMax r where r.exercise.id = :exerciseId order by r.reps")
+    List<RecordSetDTO> findDtosByExerciseId(@Param("exerciseId") Long exerciseId);
+
+    Optional<ExerciseRepMax> findByExerciseIdAndReps(Long exerciseId, int reps);
+
+    @Modifying
+    @Query("delete from ExerciseRepMax r where r.exercise.id = :exerciseId")
+    int deleteByExerciseId(@Param("exerciseId") Long exerciseId);
+}
@@ -1,10 +1,79 @@
 package backendsyksy24.gymtracker.repository;
 
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.model.ChangeRecord;
 import backendsyksy24.gymtracker.model.Exercise;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+// The exercise list queries are answered from the query cache until an exercise is written, see SecondLevelCacheConfig.
+// Native writes name their table, so Hibernate only invalidates what they touch instead of every cached region.
 public interface ExerciseRepository extends JpaRepository<Exercise, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Exercise> findByUserId(Long userId);
-}
\ No newline at end of file
+
+    // Locks the exercises for the rest of the transaction, so writes that update their rollups run one at a time.
+    // Ordered by id so that two transactions locking the same exercises cannot deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from Exercise e where e.id in :ids order by e.id")
+    List<Exercise> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from Exercise e where e.user.id = :userId order by e.id")
+    List<Exercise> lockAllByUserId(@Param("userId") Long userId);
+
+    // Keyset scan over all exercise ids, for jobs that process every exercise in small transactions
+    @Query("select e.id from Exercise e where e.id > :afterId order by e.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Selects only the columns the exercise list needs, without loading entities
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new backendsyksy24.gymtracker.dto.ExerciseDTO(e.id, e.name, e.description) "
+            + "from Exercise e where e.user.id = :userId order by e.id")
+    List<ExerciseDTO> findDtosByUserId(@Param("userId") Long userId);
+
+    // The exercise list as sync changes. Not cached: a snapshot must not miss an exercise written on another instance.
+    @Query("select new backendsyksy24.gymtracker.dto.ChangeDTO('" + ChangeRecord.EXERCISE + "', e.id, e.name, "
+            + "e.description) from Exercise e where e.user.id = :userId order by e.id")
+    List<ChangeDTO> findChangesByUserId(@Param("userId") Long userId);
+
+    // Soft delete: hides the exercise at once, PurgeService removes the rows later
+    @Modifying
+    @Query("update Exercise e set e.deletedAt = :deletedAt where e.id = :id")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("update Exercise e set e.deletedAt = :deletedAt where e.user.id = :userId")
+    int markDeletedByUserId(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // The queries below see deleted rows, which the entity queries hide. Native SQL skips the entity's restriction.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "exercise_table"))
+    @Query(value = "update exercise_table set deleted_at = :deletedAt where deleted_at is null "
+            + "and user_id in (select id from user_table where deleted_at is not null)", nativeQuery = true)
+    int markDeletedOfDeletedUsers(@Param("deletedAt") LocalDateTime deletedAt);
+
+    @Query(value = "select user_id from exercise_table where id = :id", nativeQuery = true)
+    Long findUserIdById(@Param("id") Long id);
+
+    @Query(value = "select id from exercise_table where deleted_at is not null order by id", nativeQuery = true)
+    List<Long> findDeletedIds();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "exercise_table"))
+    @Query(value = "delete from exercise_table where id = :id and deleted_at is not null", nativeQuery = true)
+    int purgeDeleted(@Param("id") Long id);
+}
@@ -0,0 +1,67 @@
+package backendsyksy24.gymtracker.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+// Moves the exercise and exercise log id generators past the highest existing id before anything is inserted.
+// Needed once for databases whose rows were created with IDENTITY ids; afterwards it is a no-op.
+// With sharding, the generators of shard i start at Shards.idBase(i), so ids are unique across shards.
+// Runs once the beans are created, before the web server is started, so no request can insert with an old value.
+@Component
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+
+    public IdGeneratorInitializer(JdbcTemplate jdbcTemplate, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            long base = Shards.idBase(shard);
+            shards.run(shard, () -> {
+                initialize(ExerciseLog.ID_GENERATOR, "exercise_log_table", ExerciseLog.ALLOCATION_SIZE, base);
+                initialize(Exercise.ID_GENERATOR, "exercise_table", Exercise.ALLOCATION_SIZE, base);
+            });
+        }
+    }
+
+    private void initialize(String generator, String table, int allocationSize, long base) {
+        // Only this shard's range counts: rows moved in from other shards keep the ids of theirs
+        long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), ?) from " + table
+                + " where id >= ? and id < ?", Long.class, base, base, base + Shards.ID_RANGE);
+        // Safe whether the stored value is the lower or the upper end of the next pooled block
+        long safeValue = maxId + allocationSize + 1;
+
+        int updated = jdbcTemplate.update(
+                "update id_generator_table set next_val = ? where sequence_name = ? and (next_val is null or next_val < ?)",
+                safeValue, generator, safeValue);
+        Integer rows = jdbcTemplate.queryForObject(
+                "select count(*) from id_generator_table where sequence_name = ?", Integer.class, generator);
+        if (rows == 0) {
+            try {
+                jdbcTemplate.update("insert into id_generator_table (sequence_name, next_val) values (?, ?)",
+                        generator, safeValue);
+                updated = 1;
+            } catch (DataIntegrityViolationException e) {
+                // Another instance created the row at the same time
+            }
+        }
+        if (updated > 0) {
+            log.info("Id generator {} starts at {}", generator, safeValue);
+        }
+    }
+}
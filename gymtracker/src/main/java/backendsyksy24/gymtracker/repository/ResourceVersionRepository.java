@@ -0,0 +1,26 @@
+package backendsyksy24.gymtracker.repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import backendsyksy24.gymtracker.model.ResourceVersion;
+
+public interface ResourceVersionRepository extends JpaRepository<ResourceVersion, ResourceVersion.Key> {
+
+    @Query("select v.version from ResourceVersion v where v.kind = :kind and v.resourceId = :resourceId")
+    Optional<Long> findVersion(@Param("kind") String kind, @Param("resourceId") Long resourceId);
+
+    // An update reads the latest committed row, also in a transaction that read the table before
+    @Modifying
+    @Query("update ResourceVersion v set v.version = :version where v.kind = :kind and v.resourceId = :resourceId")
+    int updateVersion(@Param("kind") String kind, @Param("resourceId") Long resourceId, @Param("version") long version);
+
+    @Modifying
+    @Query("delete from ResourceVersion v where v.kind = :kind and v.resourceId in :resourceIds")
+    int deleteVersions(@Param("kind") String kind, @Param("resourceIds") Collection<Long> resourceIds);
+}
@@ -0,0 +1,104 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.repository.ChangeRecordRepository;
+import backendsyksy24.gymtracker.repository.ChangeSequenceRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Removes changes older than the retention from the users' change logs (see ChangeLogService), one user per short
+// transaction, and raises the user's horizon over what was removed. A client whose cursor is below the horizon has
+// to start over from a snapshot, so the change log only has to cover clients that sync at least once per retention.
+@Component
+public class ChangeLogCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogCompactor.class);
+    private static final int USER_PAGE_SIZE = 500;
+
+    private final ChangeRecordRepository changeRecordRepository;
+    private final ChangeSequenceRepository changeSequenceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final Duration retention;
+    private final Counter changesCompacted;
+
+    public ChangeLogCompactor(ChangeRecordRepository changeRecordRepository,
+                              ChangeSequenceRepository changeSequenceRepository,
+                              PlatformTransactionManager transactionManager,
+                              Shards shards,
+                              MeterRegistry meterRegistry,
+                              @Value("${gymtracker.changes.retention:P30D}") Duration retention) {
+        this.changeRecordRepository = changeRecordRepository;
+        this.changeSequenceRepository = changeSequenceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.retention = retention;
+        this.changesCompacted = meterRegistry.counter("gymtracker.changes.compacted");
+    }
+
+    @Scheduled(fixedDelayString = "${gymtracker.changes.compaction-interval:PT1H}")
+    public void scheduledCompaction() {
+        compactAll(LocalDateTime.now().minus(retention));
+    }
+
+    /* Removes the changes written before the cutoff on every shard. Returns the number of changes removed. */
+    public long compactAll(LocalDateTime cutoff) {
+        PrimaryPin.pin();
+        try {
+            long[] compacted = {0};
+            shards.forEach(() -> compacted[0] += compactShard(cutoff));
+            if (compacted[0] > 0) {
+                log.info("Compacted {} changes from before {}", compacted[0], cutoff);
+            }
+            return compacted[0];
+        } catch (RuntimeException e) {
+            log.error("Change log compaction failed, it continues on the next run", e);
+            return 0;
+        } finally {
+            PrimaryPin.clear();
+        }
+    }
+
+    private long compactShard(LocalDateTime cutoff) {
+        long compacted = 0;
+        List<Long> userIds = changeSequenceRepository.findUserIdsAfter(0L, Limit.of(USER_PAGE_SIZE));
+        while (!userIds.isEmpty()) {
+            for (Long userId : userIds) {
+                compacted += compactUser(userId, cutoff);
+            }
+            userIds = changeSequenceRepository.findUserIdsAfter(userIds.get(userIds.size() - 1),
+                    Limit.of(USER_PAGE_SIZE));
+        }
+        return compacted;
+    }
+
+    /* Removes the user's changes written before the cutoff and raises their horizon to the last one removed.
+     * Returns the number of changes removed. */
+    public int compactUser(Long userId, LocalDateTime cutoff) {
+        Integer compacted = transactionTemplate.execute(status -> {
+            Long horizon = changeRecordRepository.findLastSeqBefore(userId, cutoff);
+            if (horizon == null) {
+                return 0;
+            }
+            // The sequence row is locked first, as writers lock it before they insert changes
+            changeSequenceRepository.raiseHorizon(userId, horizon);
+            return changeRecordRepository.deleteUpTo(userId, horizon);
+        });
+        changesCompacted.increment(compacted);
+        return compacted;
+    }
+}
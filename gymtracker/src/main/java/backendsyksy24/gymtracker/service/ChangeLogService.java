@@ -0,0 +1,132 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.events.ChangesAppended;
+import backendsyksy24.gymtracker.model.ChangeRecord;
+import backendsyksy24.gymtracker.model.ChangeSequence;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.ChangeSequenceRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Appends to a user's change log in the transaction of every write to their exercises and sets, for delta sync.
+// The caller must hold the user's row lock (AppUserRepository.lockById), which serializes the user's writers across
+// instances: without it two first writes could both insert the sequence row. Handing out sequence numbers locks the
+// sequence row until the commit, so a user's changes commit in sequence order and a sync never skips one.
+// Old changes are compacted away by ChangeLogCompactor. Each append is published as ChangesAppended, which
+// ChangeEventHub pushes to the user's event streams once the transaction commits.
+@Service
+public class ChangeLogService {
+
+    // Larger appends are published without their changes
+    private static final int MAX_PUBLISHED_CHANGES = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ChangeSequenceRepository changeSequenceRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    public ChangeLogService(ChangeSequenceRepository changeSequenceRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.changeSequenceRepository = changeSequenceRepository;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void exerciseSaved(Exercise exercise) {
+        if (exercise.getUser() != null) {
+            ChangeRecord change = new ChangeRecord(ChangeRecord.EXERCISE, exercise.getId(), false);
+            change.setName(exercise.getName());
+            change.setDescription(exercise.getDescription());
+            append(exercise.getUser().getId(), List.of(change));
+        }
+    }
+
+    /* Records the deletion of the exercise, which stands for the deletion of its sets too. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void exerciseDeleted(Exercise exercise) {
+        if (exercise.getUser() != null) {
+            ChangeRecord change = new ChangeRecord(ChangeRecord.EXERCISE, exercise.getId(), true);
+            append(exercise.getUser().getId(), List.of(change));
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void logsSaved(Collection<ExerciseLog> logs) {
+        Map<Long, List<ChangeRecord>> changesByUser = new LinkedHashMap<>();
+        for (ExerciseLog exerciseLog : logs) {
+            Exercise exercise = exerciseLog.getExercise();
+            if (exercise.getUser() != null) {
+                ChangeRecord change = new ChangeRecord(ChangeRecord.LOG, exerciseLog.getId(), false);
+                change.setExerciseId(exercise.getId());
+                change.setTimestamp(exerciseLog.getTimestamp());
+                change.setWeight(exerciseLog.getWeight());
+                change.setReps(exerciseLog.getReps());
+                changesByUser.computeIfAbsent(exercise.getUser().getId(), id -> new ArrayList<>()).add(change);
+            }
+        }
+        changesByUser.forEach(this::append);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void logDeleted(ExerciseLog exerciseLog) {
+        Exercise exercise = exerciseLog.getExercise();
+        if (exercise.getUser() != null) {
+            ChangeRecord change = new ChangeRecord(ChangeRecord.LOG, exerciseLog.getId(), true);
+            change.setExerciseId(exercise.getId());
+            append(exercise.getUser().getId(), List.of(change));
+        }
+    }
+
+    // Numbers the changes and inserts them in JDBC batches. They are detached per batch, so a large batch of sets
+    // does not pile up in the persistence context.
+    private void append(Long userId, List<ChangeRecord> changes) {
+        long last;
+        if (changeSequenceRepository.allocate(userId, changes.size()) == 0) {
+            entityManager.persist(new ChangeSequence(userId, changes.size()));
+            last = changes.size();
+        } else {
+            last = changeSequenceRepository.findSeq(userId);
+        }
+
+        long seq = last - changes.size();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < changes.size(); i++) {
+            ChangeRecord change = changes.get(i);
+            change.setUserId(userId);
+            change.setSeq(++seq);
+            change.setChangedAt(now);
+            entityManager.persist(change);
+            if ((i + 1) % batchSize == 0 || i == changes.size() - 1) {
+                entityManager.flush();
+                changes.subList(i - i % batchSize, i + 1).forEach(entityManager::detach);
+            }
+        }
+
+        List<ChangeDTO> published = null;
+        if (changes.size() <= MAX_PUBLISHED_CHANGES) {
+            published = changes.stream().map(change -> new ChangeDTO(change.getSeq(), change.getType(),
+                    change.getEntityId(), change.isDeleted(), change.getName(), change.getDescription(),
+                    change.getExerciseId(), change.getTimestamp(), change.getWeight(), change.getReps())).toList();
+        }
+        eventPublisher.publishEvent(new ChangesAppended(userId, last, published));
+    }
+}
@@ -0,0 +1,56 @@
+package backendsyksy24.gymtracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRecordRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+// Backfills the daily volume rollup and the personal records in the background the first time the application
+// starts on a database that has logs but no rollup or record rows yet. Later rebuilds are started from the admin endpoint.
+@Component
+public class DailyVolumeBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyVolumeBackfill.class);
+
+    private final DailyVolumeService dailyVolumeService;
+    private final ExerciseDailyVolumeRepository dailyVolumeRepository;
+    private final ExerciseRecordRepository recordRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final Shards shards;
+
+    public DailyVolumeBackfill(DailyVolumeService dailyVolumeService,
+                               ExerciseDailyVolumeRepository dailyVolumeRepository,
+                               ExerciseRecordRepository recordRepository,
+                               ExerciseLogRepository exerciseLogRepository,
+                               Shards shards) {
+        this.dailyVolumeService = dailyVolumeService;
+        this.dailyVolumeRepository = dailyVolumeRepository;
+        this.recordRepository = recordRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.shards = shards;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // Checked on the primary: a lagging replica could look empty
+        PrimaryPin.pin();
+        try {
+            boolean[] empty = {false};
+            shards.forEach(() -> empty[0] |= (dailyVolumeRepository.count() == 0 || recordRepository.count() == 0)
+                    && exerciseLogRepository.count() > 0);
+            if (empty[0]) {
+                log.info("Daily volume rollup or records are empty, backfilling them from the exercise logs");
+                dailyVolumeService.startRebuild();
+            }
+        } finally {
+            PrimaryPin.clear();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseDailyVolume;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Keeps the daily volume rollup (ExerciseDailyVolumeTable) in step with the exercise logs.
+// The record methods run inside the caller's write transaction, which must hold the lock of the exercise
+// (ExerciseRepository.lockAllById), so two writes can never both insert the first row of a day.
+// Rollup rows are updated with bulk queries that bypass the persistence context, so rows loaded or inserted here
+// are detached right away; a managed copy would go stale after the next increment.
+@Service
+public class DailyVolumeService {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyVolumeService.class);
+    private static final int REBUILD_PAGE_SIZE = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ExerciseDailyVolumeRepository dailyVolumeRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final PersonalRecordService personalRecordService;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "daily-volume-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public DailyVolumeService(ExerciseDailyVolumeRepository dailyVolumeRepository,
+                              ExerciseLogRepository exerciseLogRepository,
+                              ExerciseRepository exerciseRepository,
+                              PersonalRecordService personalRecordService,
+                              PlatformTransactionManager transactionManager,
+                              Shards shards,
+                              Optional<LogArchive> logArchive) {
+        this.dailyVolumeRepository = dailyVolumeRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.personalRecordService = personalRecordService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.logArchive = logArchive.orElse(null);
+    }
+
+    /* Adds new logs to the rollup: one update per exercise and day, or an insert for a new day. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(Collection<ExerciseLog> logs) {
+        Map<DayKey, ExerciseDailyVolume> deltas = new LinkedHashMap<>();
+        for (ExerciseLog exerciseLog : logs) {
+            DayKey key = new DayKey(exerciseLog.getExercise().getId(), exerciseLog.getTimestamp().toLocalDate());
+            ExerciseDailyVolume delta = deltas.computeIfAbsent(key, k -> new ExerciseDailyVolume(null, k.day, 0, 0, 0, 0));
+            delta.setSetCount(delta.getSetCount() + 1);
+            delta.setTotalReps(delta.getTotalReps() + exerciseLog.getReps());
+            delta.setVolume(delta.getVolume() + (long) exerciseLog.getWeight() * exerciseLog.getReps());
+            delta.setMaxWeight(Math.max(delta.getMaxWeight(), exerciseLog.getWeight()));
+        }
+        deltas.forEach((key, delta) -> {
+            int updated = dailyVolumeRepository.increment(key.exerciseId, key.day, delta.getSetCount(),
+                    delta.getTotalReps(), delta.getVolume(), delta.getMaxWeight());
+            if (updated == 0) {
+                delta.setExercise(entityManager.getReference(Exercise.class, key.exerciseId));
+                dailyVolumeRepository.save(delta);
+                entityManager.detach(delta);
+            }
+        });
+    }
+
+    /* Removes a deleted log from the rollup. The log must already be deleted (and flushed), because when it was
+     * the heaviest set of its day the new maximum is read from the remaining logs of that day. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(ExerciseLog exerciseLog) {
+        Long exerciseId = exerciseLog.getExercise().getId();
+        LocalDate day = exerciseLog.getTimestamp().toLocalDate();
+        dailyVolumeRepository.findByExerciseIdAndDay(exerciseId, day).ifPresent(total -> {
+            if (total.getSetCount() <= 1) {
+                dailyVolumeRepository.delete(total);
+                return;
+            }
+            total.setSetCount(total.getSetCount() - 1);
+            total.setTotalReps(total.getTotalReps() - exerciseLog.getReps());
+            total.setVolume(total.getVolume() - (long) exerciseLog.getWeight() * exerciseLog.getReps());
+            if (exerciseLog.getWeight() >= total.getMaxWeight()) {
+                Integer maxWeight = exerciseLogRepository.findMaxWeight(exerciseId, day.atStartOfDay(),
+                        day.plusDays(1).atStartOfDay());
+                total.setMaxWeight(maxWeight != null ? maxWeight : 0);
+            }
+            entityManager.flush();
+            entityManager.detach(total);
+        });
+    }
+
+    /* Removes the rollup rows of an exercise that is being deleted. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeExercise(Long exerciseId) {
+        dailyVolumeRepository.deleteByExerciseId(exerciseId);
+    }
+
+    /* Recomputes the rollup and the personal records of one exercise from its logs, archived ones included, in a
+     * transaction of its own. */
+    public void rebuild(Long exerciseId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (exerciseRepository.lockAllById(List.of(exerciseId)).isEmpty()) {
+                return;
+            }
+            dailyVolumeRepository.deleteByExerciseId(exerciseId);
+            dailyVolumeRepository.rebuildForExercise(exerciseId);
+            if (logArchive != null) {
+                // Archived days have no rows in the log table any more
+                List<ExerciseLog> archived = logArchive.findByExerciseId(exerciseId);
+                if (!archived.isEmpty()) {
+                    recordAdded(archived);
+                }
+            }
+            personalRecordService.rebuild(exerciseId);
+        });
+    }
+
+    /* Recomputes the whole rollup on every shard, one exercise per transaction so no lock is held for long.
+     * Returns the number of exercises processed. */
+    public int rebuildAll() {
+        int[] exercises = {0};
+        shards.forEach(() -> exercises[0] += rebuildShard());
+        return exercises[0];
+    }
+
+    private int rebuildShard() {
+        int exercises = 0;
+        List<Long> ids = exerciseRepository.findIdsAfter(0L, Limit.of(REBUILD_PAGE_SIZE));
+        while (!ids.isEmpty()) {
+            for (Long exerciseId : ids) {
+                rebuild(exerciseId);
+                exercises++;
+            }
+            ids = exerciseRepository.findIdsAfter(ids.get(ids.size() - 1), Limit.of(REBUILD_PAGE_SIZE));
+        }
+        return exercises;
+    }
+
+    /* Starts rebuildAll in the background. Returns false if a rebuild is already running. */
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> {
+            PrimaryPin.pin();
+            try {
+                long start = System.nanoTime();
+                int exercises = rebuildAll();
+                log.info("Rebuilt the daily volume rollup and records of {} exercises in {} ms", exercises,
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                log.error("Daily volume rollup rebuild failed", e);
+            } finally {
+                PrimaryPin.clear();
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private static final class DayKey {
+        private final Long exerciseId;
+        private final LocalDate day;
+
+        private DayKey(Long exerciseId, LocalDate day) {
+            this.exerciseId = exerciseId;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) o;
+            return exerciseId.equals(other.exerciseId) && day.equals(other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(exerciseId, day);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package backendsyksy24.gymtracker.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Writes exercise logs together with the daily volume rollup, the personal records and the users' change logs, in one
+// transaction per request.
+// Many logs are inserted in JDBC batches (hibernate.jdbc.batch_size), and the persistence context is flushed and
+// cleared per batch so memory stays flat.
+@Service
+public class ExerciseLogService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AppUserRepository appUserRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final DailyVolumeService dailyVolumeService;
+    private final PersonalRecordService personalRecordService;
+    private final ResourceVersionService resourceVersionService;
+    private final ChangeLogService changeLogService;
+    private final int batchSize;
+
+    public ExerciseLogService(AppUserRepository appUserRepository, ExerciseRepository exerciseRepository,
+                              DailyVolumeService dailyVolumeService, PersonalRecordService personalRecordService,
+                              ResourceVersionService resourceVersionService, ChangeLogService changeLogService,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.appUserRepository = appUserRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.dailyVolumeService = dailyVolumeService;
+        this.personalRecordService = personalRecordService;
+        this.resourceVersionService = resourceVersionService;
+        this.changeLogService = changeLogService;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public ExerciseLog save(ExerciseLog exerciseLog) {
+        lockExercises(List.of(exerciseLog));
+        entityManager.persist(exerciseLog);
+        dailyVolumeService.recordAdded(List.of(exerciseLog));
+        personalRecordService.recordAdded(List.of(exerciseLog));
+        changeLogService.logsSaved(List.of(exerciseLog));
+        return exerciseLog;
+    }
+
+    @Transactional
+    public int saveAll(List<ExerciseLog> logs) {
+        lockExercises(logs);
+        for (int i = 0; i < logs.size(); i++) {
+            entityManager.persist(logs.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        dailyVolumeService.recordAdded(logs);
+        personalRecordService.recordAdded(logs);
+        changeLogService.logsSaved(logs);
+        return logs.size();
+    }
+
+    @Transactional
+    public void delete(ExerciseLog exerciseLog) {
+        lockExercises(List.of(exerciseLog));
+        entityManager.remove(entityManager.contains(exerciseLog) ? exerciseLog : entityManager.merge(exerciseLog));
+        entityManager.flush();
+        dailyVolumeService.recordRemoved(exerciseLog);
+        personalRecordService.recordRemoved(exerciseLog);
+        changeLogService.logDeleted(exerciseLog);
+    }
+
+    // Locks the users, which their change logs need, then the exercises, in the order the log archiver locks them.
+    // Gives the exercises' logs a new version, which drops their cached responses.
+    private void lockExercises(List<ExerciseLog> logs) {
+        Set<Long> userIds = logs.stream().map(log -> log.getExercise().getUser()).filter(Objects::nonNull)
+                .map(AppUser::getId).collect(Collectors.toCollection(TreeSet::new));
+        userIds.forEach(appUserRepository::lockById);
+        Set<Long> exerciseIds = logs.stream().map(log -> log.getExercise().getId()).collect(Collectors.toSet());
+        exerciseRepository.lockAllById(exerciseIds);
+        resourceVersionService.logsChanged(exerciseIds);
+    }
+}
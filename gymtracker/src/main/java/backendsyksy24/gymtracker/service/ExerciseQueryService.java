@@ -0,0 +1,179 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.dto.ChangesDTO;
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.dto.DashboardExerciseDTO;
+import backendsyksy24.gymtracker.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.ChangeRecord;
+import backendsyksy24.gymtracker.model.ChangeSequence;
+import backendsyksy24.gymtracker.repository.ChangeRecordRepository;
+import backendsyksy24.gymtracker.repository.ChangeSequenceRepository;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.util.LogCursor;
+
+// The reads behind ExerciseController, each in one read-only transaction: Hibernate skips the flush and the dirty
+// checks, the driver gets the read-only hint, and with replicas configured the transaction goes to a replica.
+// The connection is given back before the response is serialized (open-in-view is off).
+@Service
+@Transactional(readOnly = true)
+public class ExerciseQueryService {
+
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final ExerciseDailyVolumeRepository dailyVolumeRepository;
+    private final ChangeRecordRepository changeRecordRepository;
+    private final ChangeSequenceRepository changeSequenceRepository;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+
+    public ExerciseQueryService(ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository,
+                                ExerciseDailyVolumeRepository dailyVolumeRepository,
+                                ChangeRecordRepository changeRecordRepository,
+                                ChangeSequenceRepository changeSequenceRepository, Optional<LogArchive> logArchive) {
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.dailyVolumeRepository = dailyVolumeRepository;
+        this.changeRecordRepository = changeRecordRepository;
+        this.changeSequenceRepository = changeSequenceRepository;
+        this.logArchive = logArchive.orElse(null);
+    }
+
+    public List<ExerciseDTO> findExercises(Long userId) {
+        return exerciseRepository.findDtosByUserId(userId);
+    }
+
+    /* The user's exercises with the totals of their latest dayCount training days. */
+    public List<DashboardExerciseDTO> getDashboard(Long userId, int dayCount) {
+        Map<Long, List<DailyTotalDTO>> totalsByExercise = new HashMap<>();
+        for (DailyTotalDTO total : dailyVolumeRepository.findDailyTotalsByUserId(userId, dayCount)) {
+            totalsByExercise.computeIfAbsent(total.getExerciseId(), id -> new ArrayList<>()).add(total);
+        }
+        return exerciseRepository.findDtosByUserId(userId).stream()
+            .map(exercise -> new DashboardExerciseDTO(exercise.getId(), exercise.getName(), exercise.getDescription(),
+                    totalsByExercise.getOrDefault(exercise.getId(), List.of())))
+            .collect(Collectors.toList());
+    }
+
+    public List<DailyTotalDTO> getVolume(Long exerciseId, LocalDate start, LocalDate end) {
+        return dailyVolumeRepository.findDailyTotals(exerciseId, start, end);
+    }
+
+    /* All logs of the exercise, oldest first, including those in the cold archive. */
+    public List<ExerciseLogDTO> getLogs(Long exerciseId) {
+        List<ExerciseLogDTO> exerciseLogs = exerciseLogRepository.findDtosByExerciseId(exerciseId);
+        if (logArchive == null) {
+            return exerciseLogs;
+        }
+        List<ExerciseLogDTO> archived = logArchive.findDtosByExerciseId(exerciseId);
+        if (archived.isEmpty()) {
+            return exerciseLogs;
+        }
+        // Backdated sets and imports put old logs in the database next to archived ones, so the two are sorted
+        // together; a log in both places is returned once
+        Set<Long> hotIds = exerciseLogs.stream().map(ExerciseLogDTO::getId).collect(Collectors.toSet());
+        List<ExerciseLogDTO> all = new ArrayList<>(archived);
+        all.removeIf(log -> hotIds.contains(log.getId()));
+        all.addAll(exerciseLogs);
+        all.sort(Comparator.comparing(ExerciseLogDTO::getTimestamp).thenComparing(ExerciseLogDTO::getId));
+        return all;
+    }
+
+    /* Up to limit logs in [from, after), newest first, including those in the cold archive. */
+    public List<ExerciseLogDTO> getLogPage(Long exerciseId, LocalDateTime from, LogCursor after, int limit) {
+        List<ExerciseLogDTO> logs = exerciseLogRepository.findPage(exerciseId, from,
+                after.getTimestamp(), after.getId(), Limit.of(limit));
+        if (logArchive != null) {
+            // Backdated sets and imports can be older than archived logs, so every page is merged with the archive.
+            // A full page from the database rules out archived logs older than its last one, so only the archive's
+            // blocks that reach into the page are read.
+            LocalDateTime archiveFrom = logs.size() == limit && logs.get(limit - 1).getTimestamp().isAfter(from)
+                    ? logs.get(limit - 1).getTimestamp() : from;
+            logs = LogArchive.merge(logs, logArchive.findPage(exerciseId, archiveFrom, after.getTimestamp(),
+                    after.getId(), limit), limit);
+        }
+        return logs;
+    }
+
+    /* Up to limit of the user's changes after the cursor since, oldest first. Empty if the cursor can no longer be
+     * served: the changes after it were compacted away, or it is not one this user's change log handed out. */
+    public Optional<ChangesDTO> getChanges(Long userId, long since, int limit) {
+        List<ChangeDTO> changes = changeRecordRepository.findChanges(userId, since, Limit.of(limit + 1));
+        // Read after the changes: if compaction commits in between, the cursor is refused rather than answered
+        // with changes that miss the compacted ones
+        ChangeSequence sequence = changeSequenceRepository.findById(userId).orElse(new ChangeSequence(userId, 0));
+        if (since < sequence.getHorizon() || since > sequence.getSeq()) {
+            return Optional.empty();
+        }
+        boolean more = changes.size() > limit;
+        if (more) {
+            changes = changes.subList(0, limit);
+        }
+        long cursor = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+        return Optional.of(new ChangesDTO(cursor, false, more, changes));
+    }
+
+    /* A page of the snapshot: every exercise of the user and every set of those, including those in the cold
+     * archive, as changes that replace what a client has, with the cursor to sync from afterwards. The first page
+     * (after null) reads the cursor and holds the exercises; the later ones hold up to limit sets each, in id order
+     * after "after", and keep the cursor of the first page, passed back as since. */
+    public ChangesDTO getSnapshot(Long userId, Long since, Long after, int limit) {
+        long cursor;
+        if (after == null) {
+            // Read first: a change that commits meanwhile may be in the snapshot and is then sent again by the next
+            // sync, which applies it a second time to the same effect. The same goes for changes made while the
+            // client is fetching the later pages.
+            Long seq = changeSequenceRepository.findSeq(userId);
+            cursor = seq != null ? seq : 0;
+        } else {
+            cursor = since;
+        }
+        List<ChangeDTO> exercises = exerciseRepository.findChangesByUserId(userId);
+        List<Long> exerciseIds = exercises.stream().map(ChangeDTO::getId).toList();
+        List<ChangeDTO> changes = new ArrayList<>(after == null ? exercises : List.of());
+        if (exerciseIds.isEmpty()) {
+            return new ChangesDTO(cursor, true, false, changes);
+        }
+        long afterId = after != null ? after : 0;
+        List<ChangeDTO> logs = exerciseLogRepository.findChangePage(exerciseIds, afterId, Limit.of(limit + 1));
+        if (logArchive != null) {
+            // Archived logs may be older or newer than those in the database, so both are read by id and merged; a
+            // log in both places is returned once
+            Map<Long, ChangeDTO> merged = new TreeMap<>();
+            logArchive.findAfter(userId, exerciseIds, afterId, limit + 1)
+                    .forEach(log -> merged.put(log.getId(), new ChangeDTO(ChangeRecord.LOG, log.getId(),
+                            log.getExercise().getId(), log.getTimestamp(), log.getWeight(), log.getReps())));
+            logs.forEach(log -> merged.put(log.getId(), log));
+            logs = new ArrayList<>(merged.values());
+        }
+        boolean more = logs.size() > limit;
+        if (more) {
+            logs = logs.subList(0, limit);
+        }
+        changes.addAll(logs);
+        ChangesDTO snapshot = new ChangesDTO(cursor, true, more, changes);
+        if (more) {
+            snapshot.setAfter(logs.get(logs.size() - 1).getId());
+        }
+        return snapshot;
+    }
+}
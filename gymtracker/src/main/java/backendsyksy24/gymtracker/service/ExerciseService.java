@@ -0,0 +1,171 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.dto.WorkoutDTO;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+
+// The writes behind ExerciseController, each in one transaction together with the lookups it depends on
+@Service
+public class ExerciseService {
+
+    public enum LogDeletion { DELETED, NOT_FOUND, OTHER_EXERCISE, ARCHIVED }
+
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final AppUserRepository appUserRepository;
+    private final ExerciseLogService exerciseLogService;
+    private final ResourceVersionService resourceVersionService;
+    private final ChangeLogService changeLogService;
+    private final PurgeService purgeService;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+
+    public ExerciseService(ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository,
+                           AppUserRepository appUserRepository, ExerciseLogService exerciseLogService,
+                           ResourceVersionService resourceVersionService, ChangeLogService changeLogService,
+                           PurgeService purgeService, Optional<LogArchive> logArchive) {
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.appUserRepository = appUserRepository;
+        this.exerciseLogService = exerciseLogService;
+        this.resourceVersionService = resourceVersionService;
+        this.changeLogService = changeLogService;
+        this.purgeService = purgeService;
+        this.logArchive = logArchive.orElse(null);
+    }
+
+    /* Saves a new exercise for the user; empty if the user does not exist. */
+    @Transactional
+    public Optional<Exercise> addExercise(Long userId, Exercise exercise) {
+        return appUserRepository.findById(userId).map(user -> {
+            exercisesChanged(user.getId());
+            exercise.setUser(user);
+            Exercise saved = exerciseRepository.save(exercise);
+            changeLogService.exerciseSaved(saved);
+            return saved;
+        });
+    }
+
+    /* Renames the exercise and replaces its description; false if it does not exist. */
+    @Transactional
+    public boolean updateExercise(Long exerciseId, Exercise details) {
+        return exerciseRepository.findById(exerciseId).map(exercise -> {
+            exercisesChanged(exercise);
+            exercise.setName(details.getName());
+            exercise.setDescription(details.getDescription());
+            changeLogService.exerciseSaved(exerciseRepository.save(exercise));
+            return true;
+        }).orElse(false);
+    }
+
+    /* Deletes the exercise by id; false if it does not exist. */
+    @Transactional
+    public boolean deleteExercise(Long exerciseId) {
+        return exerciseRepository.findById(exerciseId).map(exercise -> {
+            deleteExercise(exercise);
+            return true;
+        }).orElse(false);
+    }
+
+    /* Deletes the exercise. It is hidden at once; its logs, rollup rows and records are removed in the background. */
+    @Transactional
+    public void deleteExercise(Exercise exercise) {
+        exercisesChanged(exercise);
+        exerciseRepository.markDeleted(exercise.getId(), LocalDateTime.now());
+        changeLogService.exerciseDeleted(exercise);
+        purgeService.purgeAfterCommit();
+    }
+
+    /* Adds a set to the exercise, timestamped now; false if the exercise does not exist. */
+    @Transactional
+    public boolean addLog(Long exerciseId, ExerciseLog exerciseLog) {
+        return exerciseRepository.findById(exerciseId).map(exercise -> {
+            exerciseLog.setExercise(exercise);
+            exerciseLog.setTimestamp(LocalDateTime.now());
+            exerciseLogService.save(exerciseLog);
+            return true;
+        }).orElse(false);
+    }
+
+    /* Adds the sets to the exercise and returns how many were saved; empty if the exercise does not exist.
+     * Sets without a timestamp get the current time. */
+    @Transactional
+    public Optional<Integer> addLogs(Long exerciseId, List<ExerciseLog> exerciseLogs) {
+        return exerciseRepository.findById(exerciseId).map(exercise -> {
+            LocalDateTime now = LocalDateTime.now();
+            exerciseLogs.forEach(exerciseLog -> prepareSet(exerciseLog, exercise, now));
+            return exerciseLogService.saveAll(exerciseLogs);
+        });
+    }
+
+    /* Adds the sets of a workout covering several of the user's exercises and returns how many were saved;
+     * empty if one of the exercises does not exist or belongs to another user. */
+    @Transactional
+    public Optional<Integer> addWorkout(Long userId, List<WorkoutDTO> workout) {
+        Set<Long> exerciseIds = workout.stream().map(WorkoutDTO::getExerciseId).collect(Collectors.toSet());
+        Map<Long, Exercise> exercises = exerciseRepository.findAllById(exerciseIds).stream()
+                .filter(exercise -> exercise.getUser() != null && userId.equals(exercise.getUser().getId()))
+                .collect(Collectors.toMap(Exercise::getId, exercise -> exercise));
+        if (exercises.size() != exerciseIds.size()) {
+            return Optional.empty();
+        }
+
+        List<ExerciseLog> allSets = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        workout.forEach(entry -> entry.getSets().forEach(exerciseLog -> {
+            prepareSet(exerciseLog, exercises.get(entry.getExerciseId()), now);
+            allSets.add(exerciseLog);
+        }));
+        return Optional.of(exerciseLogService.saveAll(allSets));
+    }
+
+    /* Deletes a set of the exercise. Sets moved to the cold archive are read-only. */
+    @Transactional
+    public LogDeletion deleteLog(Long exerciseId, Long logId) {
+        Optional<ExerciseLog> exerciseLog = exerciseLogRepository.findById(logId);
+        if (exerciseLog.isEmpty()) {
+            return logArchive != null && logArchive.contains(exerciseId, logId) ? LogDeletion.ARCHIVED
+                    : LogDeletion.NOT_FOUND;
+        }
+        if (!exerciseLog.get().getExercise().getId().equals(exerciseId)) {
+            return LogDeletion.OTHER_EXERCISE;
+        }
+        exerciseLogService.delete(exerciseLog.get());
+        return LogDeletion.DELETED;
+    }
+
+    // Locks the user's row, before any exercise row like the log archiver does, which also lets the change log be
+    // written. Gives their exercise list a new version, which drops its cached responses.
+    private void exercisesChanged(Long userId) {
+        appUserRepository.lockById(userId);
+        resourceVersionService.exercisesChanged(userId);
+    }
+
+    private void exercisesChanged(Exercise exercise) {
+        if (exercise.getUser() != null) {
+            exercisesChanged(exercise.getUser().getId());
+        }
+    }
+
+    private void prepareSet(ExerciseLog exerciseLog, Exercise exercise, LocalDateTime now) {
+        exerciseLog.setId(null);
+        exerciseLog.setExercise(exercise);
+        if (exerciseLog.getTimestamp() == null) {
+            exerciseLog.setTimestamp(now);
+        }
+    }
+}
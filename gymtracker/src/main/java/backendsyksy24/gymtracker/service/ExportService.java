@@ -0,0 +1,205 @@
+package backendsyksy24.gymtracker.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.dto.ChangeDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.ShardContext;
+
+// Writes a user's whole training history, one row per set, as CSV or newline-delimited JSON. The rows are written
+// as they are read, so memory use does not grow with the history: the sets of each exercise are streamed from the
+// database in fetch-size chunks, oldest first in index order, in a read-only transaction of their own, and merged
+// with the archived ones as those are decoded from their segment block. Nothing is collected into a list.
+@Service
+public class ExportService {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final Comparator<ExerciseLogDTO> CHRONOLOGICAL =
+            Comparator.comparing(ExerciseLogDTO::getTimestamp).thenComparing(ExerciseLogDTO::getId);
+
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+
+    public ExportService(ExerciseRepository exerciseRepository, ExerciseLogRepository exerciseLogRepository,
+                         PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         Optional<LogArchive> logArchive) {
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.logArchive = logArchive.orElse(null);
+    }
+
+    /* The export of the user's history in the format (CSV or NDJSON), written when the body is sent. The body is
+     * written on an MVC async thread, so the request's shard and primary pin are carried over to it. */
+    public StreamingResponseBody export(Long userId, String format) {
+        Integer shard = ShardContext.current();
+        boolean pinned = PrimaryPin.isPinned();
+        return outputStream -> {
+            if (shard != null) {
+                ShardContext.set(shard);
+            }
+            if (pinned) {
+                PrimaryPin.pin();
+            }
+            try {
+                write(userId, format, outputStream);
+            } finally {
+                ShardContext.clear();
+                PrimaryPin.clear();
+            }
+        };
+    }
+
+    private void write(Long userId, String format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RowWriter rows = CSV.equals(format) ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+        List<ChangeDTO> exercises = readOnlyTransaction.execute(status ->
+                exerciseRepository.findChangesByUserId(userId));
+        try {
+            for (ChangeDTO exercise : exercises) {
+                writeExercise(exercise, rows);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        rows.finish();
+        writer.flush();
+    }
+
+    // The archived and the database sets are merged by timestamp and id as both are read: backdated sets and
+    // imports can be older than archived ones. A set in both places is written once.
+    private void writeExercise(ChangeDTO exercise, RowWriter rows) {
+        long[] archivedIds = logArchive != null ? logArchive.findIds(exercise.getId()) : new long[0];
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<ExerciseLogDTO> stream = exerciseLogRepository.streamDtosByExerciseId(exercise.getId())) {
+                Iterator<ExerciseLogDTO> logs = stream
+                        .filter(log -> Arrays.binarySearch(archivedIds, log.getId()) < 0)
+                        .iterator();
+                ExerciseLogDTO[] next = {logs.hasNext() ? logs.next() : null};
+                if (archivedIds.length > 0) {
+                    logArchive.forEachLog(exercise.getId(), archived -> {
+                        while (next[0] != null && CHRONOLOGICAL.compare(next[0], archived) < 0) {
+                            rows.write(exercise, next[0]);
+                            next[0] = logs.hasNext() ? logs.next() : null;
+                        }
+                        rows.write(exercise, archived);
+                    });
+                }
+                while (next[0] != null) {
+                    rows.write(exercise, next[0]);
+                    next[0] = logs.hasNext() ? logs.next() : null;
+                }
+            }
+        });
+    }
+
+    // One export format. I/O errors are thrown unchecked out of the stream callbacks.
+    private interface RowWriter {
+        void write(ChangeDTO exercise, ExerciseLogDTO log);
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("exercise_id,exercise_name,log_id,timestamp,weight,reps\n");
+        }
+
+        @Override
+        public void write(ChangeDTO exercise, ExerciseLogDTO log) {
+            try {
+                writer.write(exercise.getId() + "," + escape(exercise.getName()) + "," + log.getId() + ","
+                        + TIMESTAMP.format(log.getTimestamp()) + "," + log.getWeight() + "," + log.getReps() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        // Quotes a field that holds a separator, a quote or a line break, doubling the quotes (RFC 4180)
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ChangeDTO exercise, ExerciseLogDTO log) {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("exerciseId", exercise.getId());
+                generator.writeStringField("exerciseName", exercise.getName());
+                generator.writeNumberField("id", log.getId());
+                generator.writeStringField("timestamp", TIMESTAMP.format(log.getTimestamp()));
+                generator.writeNumberField("weight", log.getWeight());
+                generator.writeNumberField("reps", log.getReps());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package backendsyksy24.gymtracker.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import backendsyksy24.gymtracker.dto.ImportStatusDTO;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.ShardContext;
+import backendsyksy24.gymtracker.util.CsvReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Imports training history from CSV files exported by other trackers. The upload is copied to a temporary file and
+// imported in the background: the file is read one record at a time, and every chunk-size sets are saved in one
+// transaction through ExerciseLogService (JDBC batches, rollups, records and change log included), so memory does
+// not grow with the file. Exercises are matched by name, ignoring case, and created when missing.
+// The columns are found by their header: exercise name, timestamp or date, weight and reps, under the names common
+// trackers use. Rows that cannot be read are skipped and reported.
+// Jobs run on a small pool with a bounded queue; a full queue is refused with a RejectedExecutionException. The status
+// of a job is kept in memory on the instance that runs it, for an hour after it finishes.
+@Service
+public class ImportService {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    private static final int MAX_ERRORS = 100;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private static final Duration STATUS_RETENTION = Duration.ofHours(1);
+
+    // Header names per column, lower case with anything but letters and digits replaced by "_"
+    private static final List<String> EXERCISE_COLUMNS = List.of("exercise_name", "exercise", "exercise_title", "name");
+    private static final List<String> TIMESTAMP_COLUMNS = List.of("timestamp", "date", "start_time", "datetime",
+            "time");
+    private static final List<String> WEIGHT_COLUMNS = List.of("weight", "weight_kg", "kg");
+    private static final List<String> REPS_COLUMNS = List.of("reps", "repetitions");
+    private static final DateTimeFormatter SPACED_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm[:ss]");
+
+    private final AppUserRepository appUserRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseService exerciseService;
+    private final ExerciseLogService exerciseLogService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final Counter rowsImported;
+    private final Counter rowsSkipped;
+    private final Timer chunkTimer;
+
+    public ImportService(AppUserRepository appUserRepository, ExerciseRepository exerciseRepository,
+                         ExerciseService exerciseService, ExerciseLogService exerciseLogService,
+                         PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                         @Value("${gymtracker.import.chunk-size:2000}") int chunkSize,
+                         @Value("${gymtracker.import.threads:2}") int threads,
+                         @Value("${gymtracker.import.queue-capacity:16}") int queueCapacity) {
+        this.appUserRepository = appUserRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseService = exerciseService;
+        this.exerciseLogService = exerciseLogService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "import-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.rowsImported = meterRegistry.counter("gymtracker.import.rows", "result", "imported");
+        this.rowsSkipped = meterRegistry.counter("gymtracker.import.rows", "result", "skipped");
+        this.chunkTimer = Timer.builder("gymtracker.import.chunk")
+                .description("Time to save one chunk of imported sets")
+                .register(meterRegistry);
+    }
+
+    /* Starts importing the CSV file into the user's history; empty if the user does not exist. Throws
+     * RejectedExecutionException if too many imports are waiting. */
+    public Optional<ImportStatusDTO> start(Long userId, MultipartFile file) throws IOException {
+        if (!appUserRepository.existsById(userId)) {
+            return Optional.empty();
+        }
+        removeOldJobs();
+        // The upload is gone once the request ends
+        Path path = Files.createTempFile("gymtracker-import-", ".csv");
+        try {
+            file.transferTo(path);
+            Job job = new Job(UUID.randomUUID().toString(), userId);
+            jobs.put(job.id, job);
+            Integer shard = ShardContext.current();
+            try {
+                executor.execute(() -> run(job, path, shard));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                throw e;
+            }
+            return Optional.of(job.toDto());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /* The status of the user's import job; empty if there is no such job for the user on this instance. */
+    public Optional<ImportStatusDTO> getStatus(Long userId, String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null && job.userId.equals(userId) ? Optional.of(job.toDto()) : Optional.empty();
+    }
+
+    private void run(Job job, Path path, Integer shard) {
+        job.state = State.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        if (shard != null) {
+            ShardContext.set(shard);
+        }
+        try {
+            importFile(job, path);
+            job.state = State.DONE;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import {} of user {} failed after {} rows", job.id, job.userId, job.rowsImported, e);
+            job.message = e.getMessage();
+            job.state = State.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            ShardContext.clear();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete import file {}", path, e);
+            }
+        }
+    }
+
+    private void importFile(Job job, Path path) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            // Some trackers separate with semicolons; the header tells
+            reader.mark(MAX_RECORD_LENGTH);
+            String firstLine = reader.readLine();
+            reader.reset();
+            char separator = firstLine != null && firstLine.indexOf(';') >= 0 && firstLine.indexOf(',') < 0
+                    ? ';' : ',';
+
+            try (CsvReader csv = new CsvReader(reader, separator, MAX_RECORD_LENGTH)) {
+                List<String> header = csv.readRecord();
+                if (header == null) {
+                    throw new IOException("The file is empty");
+                }
+                Columns columns = Columns.of(header);
+
+                List<Row> chunk = new ArrayList<>(chunkSize);
+                List<String> record;
+                while ((record = csv.readRecord()) != null) {
+                    if (record.size() == 1 && record.get(0).isBlank()) {
+                        continue;
+                    }
+                    job.rowsRead.incrementAndGet();
+                    try {
+                        chunk.add(columns.parse(record));
+                    } catch (IllegalArgumentException e) {
+                        job.skip("Line " + csv.getLineNumber() + ": " + e.getMessage());
+                        rowsSkipped.increment();
+                    }
+                    if (chunk.size() == chunkSize) {
+                        importChunk(job, chunk);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    importChunk(job, chunk);
+                }
+            }
+        }
+    }
+
+    // Saves one chunk in one transaction. The user's row and exercises are locked first, as ExerciseLogService
+    // locks them, so two imports of the same user cannot both create an exercise.
+    private void importChunk(Job job, List<Row> rows) {
+        chunkTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+            appUserRepository.lockById(job.userId);
+            Map<String, Exercise> exercises = new HashMap<>();
+            for (Exercise exercise : exerciseRepository.lockAllByUserId(job.userId)) {
+                exercises.putIfAbsent(key(exercise.getName()), exercise);
+            }
+            List<ExerciseLog> logs = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                Exercise exercise = exercises.get(key(row.exerciseName()));
+                if (exercise == null) {
+                    exercise = exerciseService.addExercise(job.userId, new Exercise(row.exerciseName(), null, null))
+                            .orElseThrow(() -> new IllegalStateException("The user was deleted"));
+                    exercises.put(key(row.exerciseName()), exercise);
+                    job.exercisesCreated.incrementAndGet();
+                }
+                logs.add(new ExerciseLog(exercise, row.timestamp(), row.weight(), row.reps()));
+            }
+            exerciseLogService.saveAll(logs);
+        }));
+        job.rowsImported.addAndGet(rows.size());
+        rowsImported.increment(rows.size());
+    }
+
+    private void removeOldJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(STATUS_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static String key(String exerciseName) {
+        return exerciseName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Row(String exerciseName, LocalDateTime timestamp, int weight, int reps) {
+    }
+
+    // Positions of the columns in the file
+    private record Columns(int exercise, int timestamp, int weight, int reps) {
+
+        static Columns of(List<String> header) throws IOException {
+            List<String> names = header.stream()
+                    .map(name -> name.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_")
+                            .replaceAll("^_|_$", ""))
+                    .toList();
+            return new Columns(find(names, EXERCISE_COLUMNS), find(names, TIMESTAMP_COLUMNS),
+                    find(names, WEIGHT_COLUMNS), find(names, REPS_COLUMNS));
+        }
+
+        private static int find(List<String> names, List<String> candidates) throws IOException {
+            for (String candidate : candidates) {
+                int index = names.indexOf(candidate);
+                if (index >= 0) {
+                    return index;
+                }
+            }
+            throw new IOException("The header has no " + candidates.get(0) + " column (or " + candidates.subList(1,
+                    candidates.size()) + ")");
+        }
+
+        // Throws IllegalArgumentException with the reason if the record is not a set that can be saved
+        Row parse(List<String> record) {
+            String name = field(record, exercise);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("no exercise name");
+            }
+            int weightValue = number(field(record, weight), "weight");
+            int repsValue = number(field(record, reps), "reps");
+            return new Row(name, timestamp(field(record, timestamp)), weightValue, repsValue);
+        }
+
+        private static String field(List<String> record, int index) {
+            return index < record.size() ? record.get(index).trim() : "";
+        }
+
+        // A positive number, rounded to a whole one
+        private static int number(String value, String column) {
+            try {
+                int number = new BigDecimal(value).setScale(0, RoundingMode.HALF_UP).intValueExact();
+                if (number > 0) {
+                    return number;
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException(column + " \"" + value + "\" is not a number");
+            }
+            throw new IllegalArgumentException(column + " must be positive");
+        }
+
+        // ISO date-times, with or without an offset, "yyyy-MM-dd HH:mm[:ss]" and plain dates
+        private static LocalDateTime timestamp(String value) {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+            try {
+                return LocalDateTime.parse(value, SPACED_TIMESTAMP);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+            try {
+                return OffsetDateTime.parse(value).toLocalDateTime();
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+            try {
+                return LocalDate.parse(value).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("timestamp \"" + value + "\" is not a date");
+            }
+        }
+    }
+
+    private static final class Job {
+        private final String id;
+        private final Long userId;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsImported = new AtomicLong();
+        private final AtomicLong rowsSkipped = new AtomicLong();
+        private final AtomicLong exercisesCreated = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private volatile State state = State.QUEUED;
+        private volatile String message;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        Job(String id, Long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        // Only the first errors are kept
+        void skip(String error) {
+            rowsSkipped.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(error);
+                }
+            }
+        }
+
+        ImportStatusDTO toDto() {
+            List<String> errorsCopy;
+            synchronized (errors) {
+                errorsCopy = List.copyOf(errors);
+            }
+            return new ImportStatusDTO(id, state.name(), rowsRead.get(), rowsImported.get(), rowsSkipped.get(),
+                    exercisesCreated.get(), errorsCopy, message, startedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package backendsyksy24.gymtracker.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/*
+ * Runs BCrypt hashing on a dedicated pool sized to the CPU cores, so login and registration storms cannot
+ * take over the request threads. The queue is bounded: when it is full, new work is rejected immediately
+ * with a RejectedExecutionException and the caller can answer 503 instead of letting requests pile up.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(BCryptPasswordEncoder encoder, MeterRegistry registry,
+                                  @Value("${gymtracker.password-hashing.threads:0}") int threads,
+                                  @Value("${gymtracker.password-hashing.queue-capacity:64}") int queueCapacity) {
+        this.encoder = encoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("gymtracker.password.hash")
+                .description("Time spent hashing or checking a password")
+                .tag("operation", "encode")
+                .register(registry);
+        this.matchTimer = Timer.builder("gymtracker.password.hash")
+                .description("Time spent hashing or checking a password")
+                .tag("operation", "matches")
+                .register(registry);
+        this.queueWaitTimer = Timer.builder("gymtracker.password.queue.wait")
+                .description("Time a hashing task waited for a free thread")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("gymtracker.password.rejected")
+                .description("Hashing tasks rejected because the queue was full")
+                .register(registry);
+        Gauge.builder("gymtracker.password.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hashing tasks waiting for a thread")
+                .register(registry);
+        Gauge.builder("gymtracker.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads currently busy")
+                .register(registry);
+    }
+
+    // Hashes a new password. Throws RejectedExecutionException if the hashing queue is full.
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    // Checks a password against a stored hash. Throws RejectedExecutionException if the hashing queue is full.
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(matchTimer, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
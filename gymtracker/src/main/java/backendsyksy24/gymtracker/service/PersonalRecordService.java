@@ -0,0 +1,254 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.dto.PersonalRecordsDTO;
+import backendsyksy24.gymtracker.dto.RecordSetDTO;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.model.ExerciseRecord;
+import backendsyksy24.gymtracker.model.ExerciseRepMax;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRecordRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepMaxRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.util.OneRepMax;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Keeps the personal records of each exercise up to date: the heaviest set per rep count (ExerciseRepMaxTable),
+// the set with the best estimated 1RM and the best day by volume (ExerciseRecordTable).
+// Like DailyVolumeService, the record methods run in the caller's write transaction with the exercise locked, and
+// after the daily volume rollup has been updated, because the best day is read from it.
+// Logs in the cold archive (LogArchive) can still hold rep maxes, so the rebuilds look there too.
+@Service
+public class PersonalRecordService {
+
+    private static final Comparator<ExerciseLog> HEAVIEST_FIRST = Comparator.comparing(ExerciseLog::getWeight).reversed()
+            .thenComparing(ExerciseLog::getTimestamp).thenComparing(ExerciseLog::getId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ExerciseRepMaxRepository repMaxRepository;
+    private final ExerciseRecordRepository recordRepository;
+    private final ExerciseDailyVolumeRepository dailyVolumeRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+
+    public PersonalRecordService(ExerciseRepMaxRepository repMaxRepository,
+                                 ExerciseRecordRepository recordRepository,
+                                 ExerciseDailyVolumeRepository dailyVolumeRepository,
+                                 ExerciseLogRepository exerciseLogRepository,
+                                 ExerciseRepository exerciseRepository,
+                                 Optional<LogArchive> logArchive) {
+        this.repMaxRepository = repMaxRepository;
+        this.recordRepository = recordRepository;
+        this.dailyVolumeRepository = dailyVolumeRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.logArchive = logArchive.orElse(null);
+    }
+
+    /* Returns the records of an exercise from the record tables, or empty if the exercise does not exist.
+     * Reads projections only, no record entities. */
+    @Transactional(readOnly = true)
+    public Optional<PersonalRecordsDTO> getRecords(Long exerciseId) {
+        Optional<ExerciseRecordRepository.Summary> record = recordRepository.findSummaryByExerciseId(exerciseId);
+        if (record.isEmpty() && !exerciseRepository.existsById(exerciseId)) {
+            return Optional.empty();
+        }
+        List<RecordSetDTO> repMaxes = repMaxRepository.findDtosByExerciseId(exerciseId);
+        return Optional.of(record
+                .map(r -> new PersonalRecordsDTO(exerciseId,
+                        new RecordSetDTO(r.getE1rmWeight(), r.getE1rmReps(), r.getE1rmAchievedAt()),
+                        r.getBestVolume(), r.getBestVolumeDay(), repMaxes))
+                .orElseGet(() -> new PersonalRecordsDTO(exerciseId, null, null, null, repMaxes)));
+    }
+
+    /* Raises the records that the new logs beat. A set only takes a record by beating it, so ties keep the
+     * earlier holder. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(Collection<ExerciseLog> logs) {
+        Map<Long, List<ExerciseLog>> logsByExercise = logs.stream()
+                .collect(Collectors.groupingBy(log -> log.getExercise().getId(), LinkedHashMap::new, Collectors.toList()));
+        logsByExercise.forEach((exerciseId, exerciseLogs) -> {
+            Exercise exercise = entityManager.getReference(Exercise.class, exerciseId);
+            Map<Integer, ExerciseRepMax> repMaxes = repMaxRepository.findByExerciseIdOrderByReps(exerciseId).stream()
+                    .collect(Collectors.toMap(ExerciseRepMax::getReps, repMax -> repMax));
+            ExerciseRecord record = recordRepository.findById(exerciseId).orElse(null);
+
+            for (ExerciseLog exerciseLog : exerciseLogs) {
+                ExerciseRepMax repMax = repMaxes.get(exerciseLog.getReps());
+                if (repMax == null) {
+                    repMax = repMaxRepository.save(new ExerciseRepMax(exercise, exerciseLog));
+                    repMaxes.put(repMax.getReps(), repMax);
+                } else if (exerciseLog.getWeight() > repMax.getWeight()) {
+                    repMax.setHolder(exerciseLog);
+                }
+
+                if (record == null) {
+                    record = recordRepository.save(new ExerciseRecord(exercise, exerciseLog));
+                } else if (OneRepMax.epley(exerciseLog.getWeight(), exerciseLog.getReps())
+                        > OneRepMax.epley(record.getE1rmWeight(), record.getE1rmReps())) {
+                    record.setE1rmHolder(exerciseLog);
+                }
+            }
+
+            Set<LocalDate> days = exerciseLogs.stream().map(log -> log.getTimestamp().toLocalDate())
+                    .collect(Collectors.toSet());
+            for (LocalDate day : days) {
+                Long volume = dailyVolumeRepository.findVolume(exerciseId, day);
+                if (volume != null && volume > record.getBestVolume()) {
+                    record.setBestVolume(volume);
+                    record.setBestVolumeDay(day);
+                }
+            }
+        });
+    }
+
+    /* Corrects the records after a log was deleted (and the daily volume rollup updated). A record is only
+     * recomputed when the deleted log held it: a rep max from the logs at that rep count, the best e1RM from the
+     * rep maxes, and the best day from the rollup. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(ExerciseLog exerciseLog) {
+        Long exerciseId = exerciseLog.getExercise().getId();
+        repMaxRepository.findByExerciseIdAndReps(exerciseId, exerciseLog.getReps())
+                .filter(repMax -> repMax.getLogId().equals(exerciseLog.getId()))
+                .ifPresent(repMax -> {
+                    ExerciseLog holder = best(exerciseLogRepository
+                            .findFirstByExerciseIdAndRepsOrderByWeightDescTimestampAscIdAsc(exerciseId, exerciseLog.getReps()),
+                            archivedRepMaxes(exerciseId).get(exerciseLog.getReps()));
+                    if (holder == null) {
+                        repMaxRepository.delete(repMax);
+                    } else {
+                        repMax.setHolder(holder);
+                    }
+                });
+
+        ExerciseRecord record = recordRepository.findById(exerciseId).orElse(null);
+        if (record == null) {
+            return;
+        }
+        if (record.getE1rmLogId().equals(exerciseLog.getId())) {
+            Optional<ExerciseRepMax> best = findBestE1rm(repMaxRepository.findByExerciseIdOrderByReps(exerciseId));
+            if (best.isEmpty()) {
+                // That was the last log of the exercise
+                recordRepository.delete(record);
+                return;
+            }
+            record.setE1rmHolder(best.get());
+        }
+        if (exerciseLog.getTimestamp().toLocalDate().equals(record.getBestVolumeDay())) {
+            updateBestDay(record);
+        }
+    }
+
+    /* Removes the records of an exercise that is being deleted. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeExercise(Long exerciseId) {
+        repMaxRepository.deleteByExerciseId(exerciseId);
+        recordRepository.deleteByExerciseId(exerciseId);
+    }
+
+    /* Recomputes the records of an exercise from its logs and its (already rebuilt) daily volume rollup.
+     * Existing rows are updated in place, so the rebuild also works on records loaded earlier in the transaction. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void rebuild(Long exerciseId) {
+        Exercise exercise = entityManager.getReference(Exercise.class, exerciseId);
+        Map<Integer, ExerciseRepMax> oldRepMaxes = repMaxRepository.findByExerciseIdOrderByReps(exerciseId).stream()
+                .collect(Collectors.toMap(ExerciseRepMax::getReps, repMax -> repMax));
+        List<ExerciseRepMax> repMaxes = new ArrayList<>();
+        Map<Integer, ExerciseLog> archivedRepMaxes = archivedRepMaxes(exerciseId);
+        Set<Integer> repCounts = new TreeSet<>(exerciseLogRepository.findDistinctReps(exerciseId));
+        repCounts.addAll(archivedRepMaxes.keySet());
+        for (Integer reps : repCounts) {
+            ExerciseLog holder = best(
+                    exerciseLogRepository.findFirstByExerciseIdAndRepsOrderByWeightDescTimestampAscIdAsc(exerciseId, reps),
+                    archivedRepMaxes.get(reps));
+            ExerciseRepMax repMax = oldRepMaxes.remove(reps);
+            if (repMax == null) {
+                repMax = repMaxRepository.save(new ExerciseRepMax(exercise, holder));
+            } else {
+                repMax.setHolder(holder);
+            }
+            repMaxes.add(repMax);
+        }
+        repMaxRepository.deleteAll(oldRepMaxes.values());
+
+        ExerciseRecord record = recordRepository.findById(exerciseId).orElse(null);
+        Optional<ExerciseRepMax> best = findBestE1rm(repMaxes);
+        if (best.isEmpty()) {
+            if (record != null) {
+                recordRepository.delete(record);
+            }
+            return;
+        }
+        if (record == null) {
+            record = new ExerciseRecord();
+            record.setExercise(exercise);
+        }
+        record.setE1rmHolder(best.get());
+        updateBestDay(record);
+        recordRepository.save(record);
+    }
+
+    // The heaviest archived set per rep count, earliest first on ties like the repository query
+    private Map<Integer, ExerciseLog> archivedRepMaxes(Long exerciseId) {
+        Map<Integer, ExerciseLog> repMaxes = new HashMap<>();
+        if (logArchive != null) {
+            for (ExerciseLog archived : logArchive.findByExerciseId(exerciseId)) {
+                repMaxes.merge(archived.getReps(), archived, this::best);
+            }
+        }
+        return repMaxes;
+    }
+
+    private ExerciseLog best(ExerciseLog a, ExerciseLog b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return HEAVIEST_FIRST.compare(a, b) <= 0 ? a : b;
+    }
+
+    // The best e1RM set is always the rep max of its rep count, so the rep maxes are enough to find it
+    private Optional<ExerciseRepMax> findBestE1rm(List<ExerciseRepMax> repMaxes) {
+        ExerciseRepMax best = null;
+        double bestE1rm = 0;
+        for (ExerciseRepMax repMax : repMaxes) {
+            double e1rm = OneRepMax.epley(repMax.getWeight(), repMax.getReps());
+            if (best == null || e1rm > bestE1rm
+                    || (e1rm == bestE1rm && repMax.getAchievedAt().isBefore(best.getAchievedAt()))) {
+                best = repMax;
+                bestE1rm = e1rm;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private void updateBestDay(ExerciseRecord record) {
+        List<DailyTotalDTO> bestDays = dailyVolumeRepository.findBestDays(record.getExercise().getId(), Limit.of(1));
+        record.setBestVolume(bestDays.isEmpty() ? 0 : bestDays.get(0).getVolume());
+        record.setBestVolumeDay(bestDays.isEmpty() ? null : bestDays.get(0).getDate());
+    }
+}
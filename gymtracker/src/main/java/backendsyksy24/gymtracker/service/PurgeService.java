@@ -0,0 +1,253 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.archive.LogArchive;
+import backendsyksy24.gymtracker.datasource.PrimaryPin;
+import backendsyksy24.gymtracker.dto.PurgeStatusDTO;
+import backendsyksy24.gymtracker.model.ResourceVersion;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ChangeRecordRepository;
+import backendsyksy24.gymtracker.repository.ChangeSequenceRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.repository.ResourceVersionRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Removes soft-deleted exercises and users in the background. The logs of an exercise are deleted in chunks of
+// chunk-size rows, each chunk in its own short transaction, so a heavy user never holds locks for long or loads
+// their history into memory. Then the rollup rows, records and the exercise go in one small transaction, and the
+// user once no exercises are left, along with their archived logs and change log. An interrupted purge simply
+// continues on the next run.
+@Service
+public class PurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PurgeService.class);
+
+    private final ExerciseRepository exerciseRepository;
+    private final ExerciseLogRepository exerciseLogRepository;
+    private final AppUserRepository appUserRepository;
+    private final ResourceVersionRepository resourceVersionRepository;
+    private final ChangeRecordRepository changeRecordRepository;
+    private final ChangeSequenceRepository changeSequenceRepository;
+    private final DailyVolumeService dailyVolumeService;
+    private final PersonalRecordService personalRecordService;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+    private final LogArchive logArchive; // Null unless the cold log archive is enabled
+    private final int chunkSize;
+
+    private final ExecutorService purgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean rerun = new AtomicBoolean();
+    // Logs deleted so far per exercise that is being purged
+    private final Map<Long, Long> progress = new ConcurrentHashMap<>();
+    private final AtomicLong pendingExercises = new AtomicLong();
+    private final AtomicLong pendingUsers = new AtomicLong();
+
+    private final Counter logsPurged;
+    private final Counter exercisesPurged;
+    private final Counter usersPurged;
+    private final Timer chunkTimer;
+
+    public PurgeService(ExerciseRepository exerciseRepository,
+                        ExerciseLogRepository exerciseLogRepository,
+                        AppUserRepository appUserRepository,
+                        ResourceVersionRepository resourceVersionRepository,
+                        ChangeRecordRepository changeRecordRepository,
+                        ChangeSequenceRepository changeSequenceRepository,
+                        DailyVolumeService dailyVolumeService,
+                        PersonalRecordService personalRecordService,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        Shards shards,
+                        Optional<LogArchive> logArchive,
+                        @Value("${gymtracker.purge.chunk-size:1000}") int chunkSize) {
+        this.exerciseRepository = exerciseRepository;
+        this.exerciseLogRepository = exerciseLogRepository;
+        this.appUserRepository = appUserRepository;
+        this.resourceVersionRepository = resourceVersionRepository;
+        this.changeRecordRepository = changeRecordRepository;
+        this.changeSequenceRepository = changeSequenceRepository;
+        this.dailyVolumeService = dailyVolumeService;
+        this.personalRecordService = personalRecordService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.logArchive = logArchive.orElse(null);
+        this.chunkSize = chunkSize;
+
+        this.logsPurged = meterRegistry.counter("gymtracker.purge.logs");
+        this.exercisesPurged = meterRegistry.counter("gymtracker.purge.exercises");
+        this.usersPurged = meterRegistry.counter("gymtracker.purge.users");
+        this.chunkTimer = Timer.builder("gymtracker.purge.chunk")
+                .description("Time to delete one chunk of exercise logs")
+                .register(meterRegistry);
+        Gauge.builder("gymtracker.purge.pending", pendingExercises, AtomicLong::get)
+                .tag("type", "exercise").register(meterRegistry);
+        Gauge.builder("gymtracker.purge.pending", pendingUsers, AtomicLong::get)
+                .tag("type", "user").register(meterRegistry);
+    }
+
+    /* Starts a purge once the current transaction commits, or at once outside a transaction. */
+    public void purgeAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    startPurge();
+                }
+            });
+        } else {
+            startPurge();
+        }
+    }
+
+    /* Starts a purge in the background. If one is running, it runs again when done, to pick up new deletions. */
+    public void startPurge() {
+        rerun.set(true);
+        if (running.get()) {
+            return;
+        }
+        purgeExecutor.execute(this::purgePending);
+    }
+
+    // Catches deletions whose purge was interrupted, e.g. by a restart
+    @Scheduled(fixedDelayString = "${gymtracker.purge.interval:PT5M}")
+    public void scheduledPurge() {
+        startPurge();
+    }
+
+    /* Purges everything that is marked deleted. Returns false if another purge is already running. */
+    public boolean purgePending() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        // Reads the primary: a lagging replica would not show rows that were just marked deleted
+        PrimaryPin.pin();
+        try {
+            while (rerun.getAndSet(false)) {
+                shards.forEach(this::purgeOnce);
+            }
+        } catch (RuntimeException e) {
+            log.error("Purge failed, it is retried on the next run", e);
+        } finally {
+            PrimaryPin.clear();
+            running.set(false);
+        }
+        // A startPurge between the last check and the reset above saw this purge running and left its deletions to
+        // it, so they are picked up by another run
+        if (rerun.get()) {
+            startPurge();
+        }
+        return true;
+    }
+
+    // Purges one shard; the pending counts are those of the shard being purged
+    private void purgeOnce() {
+        // Exercises a user added while being deleted
+        transactionTemplate.executeWithoutResult(status -> exerciseRepository.markDeletedOfDeletedUsers(LocalDateTime.now()));
+
+        List<Long> exerciseIds = exerciseRepository.findDeletedIds();
+        List<Long> userIds = appUserRepository.findDeletedIds();
+        pendingExercises.set(exerciseIds.size());
+        pendingUsers.set(userIds.size());
+
+        for (Long exerciseId : exerciseIds) {
+            purgeExercise(exerciseId);
+            pendingExercises.decrementAndGet();
+        }
+        for (Long userId : userIds) {
+            Integer purged = transactionTemplate.execute(status -> {
+                int deleted = appUserRepository.purgeDeleted(userId);
+                if (deleted > 0) {
+                    resourceVersionRepository.deleteVersions(ResourceVersion.EXERCISES, List.of(userId));
+                    changeRecordRepository.deleteByUserId(userId);
+                    changeSequenceRepository.deleteByUserId(userId);
+                }
+                return deleted;
+            });
+            if (purged != null && purged > 0) {
+                if (logArchive != null) {
+                    logArchive.deleteUser(userId);
+                }
+                usersPurged.increment();
+            }
+            pendingUsers.decrementAndGet();
+        }
+    }
+
+    private void purgeExercise(Long exerciseId) {
+        long deleted = 0;
+        progress.put(exerciseId, 0L);
+        List<Long> logIds = exerciseLogRepository.findIdsByExerciseId(exerciseId, Limit.of(chunkSize));
+        while (!logIds.isEmpty()) {
+            List<Long> chunk = logIds;
+            chunkTimer.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> exerciseLogRepository.deleteAllByIdInBatch(chunk)));
+            deleted += chunk.size();
+            logsPurged.increment(chunk.size());
+            progress.put(exerciseId, deleted);
+            logIds = exerciseLogRepository.findIdsByExerciseId(exerciseId, Limit.of(chunkSize));
+        }
+
+        if (logArchive != null) {
+            // Before the exercise row goes, which tells whose segment holds its archived logs
+            transactionTemplate.executeWithoutResult(status -> {
+                Long userId = exerciseRepository.findUserIdById(exerciseId);
+                if (userId != null && appUserRepository.lockById(userId) != null) {
+                    logArchive.removeExercise(userId, exerciseId);
+                }
+            });
+        }
+
+        Integer purged = transactionTemplate.execute(status -> {
+            dailyVolumeService.removeExercise(exerciseId);
+            personalRecordService.removeExercise(exerciseId);
+            resourceVersionRepository.deleteVersions(ResourceVersion.LOGS, List.of(exerciseId));
+            return exerciseRepository.purgeDeleted(exerciseId);
+        });
+        if (purged != null && purged > 0) {
+            exercisesPurged.increment();
+            log.info("Purged exercise {} with {} logs", exerciseId, deleted);
+        }
+        progress.remove(exerciseId);
+    }
+
+    public PurgeStatusDTO getStatus() {
+        return new PurgeStatusDTO(running.get(), pendingUsers.get(), pendingExercises.get(),
+                (long) logsPurged.count(), Map.copyOf(progress));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdownNow();
+    }
+}
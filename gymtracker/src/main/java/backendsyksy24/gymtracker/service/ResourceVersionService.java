@@ -0,0 +1,46 @@
+package backendsyksy24.gymtracker.service;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.model.ResourceVersion;
+import backendsyksy24.gymtracker.repository.ResourceVersionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Gives cached reads a new version in the transaction of every write that changes them (see ResponseCache).
+// The caller must hold the lock that serializes the resource's writers: the exercise rows for their logs, the user
+// row for their exercises. Without it two first writes could both insert the version row.
+@Service
+public class ResourceVersionService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ResourceVersionRepository resourceVersionRepository;
+
+    public ResourceVersionService(ResourceVersionRepository resourceVersionRepository) {
+        this.resourceVersionRepository = resourceVersionRepository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void logsChanged(Collection<Long> exerciseIds) {
+        exerciseIds.forEach(exerciseId -> bump(ResourceVersion.LOGS, exerciseId));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void exercisesChanged(Long userId) {
+        bump(ResourceVersion.EXERCISES, userId);
+    }
+
+    private void bump(String kind, Long resourceId) {
+        long version = ThreadLocalRandom.current().nextLong();
+        if (resourceVersionRepository.updateVersion(kind, resourceId, version) == 0) {
+            entityManager.persist(new ResourceVersion(kind, resourceId, version));
+        }
+    }
+}
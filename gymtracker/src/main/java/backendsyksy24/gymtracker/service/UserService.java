@@ -0,0 +1,115 @@
+package backendsyksy24.gymtracker.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import backendsyksy24.gymtracker.dto.UserDTO;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.ShardDirectory;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+// User writes that touch more than the user row, each in one transaction, and lookups by username, which go
+// through the directory when the users are sharded
+@Service
+public class UserService {
+
+    private final AppUserRepository appUserRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final PurgeService purgeService;
+    private final ResourceVersionService resourceVersionService;
+    private final Shards shards;
+    private final ShardDirectory shardDirectory; // Null unless sharded
+
+    public UserService(AppUserRepository appUserRepository, ExerciseRepository exerciseRepository,
+                       PurgeService purgeService, ResourceVersionService resourceVersionService, Shards shards,
+                       Optional<ShardDirectory> shardDirectory) {
+        this.appUserRepository = appUserRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.purgeService = purgeService;
+        this.resourceVersionService = resourceVersionService;
+        this.shards = shards;
+        this.shardDirectory = shardDirectory.orElse(null);
+    }
+
+    public boolean usernameExists(String username) {
+        if (shardDirectory == null) {
+            return appUserRepository.existsByUsername(username);
+        }
+        return shardDirectory.findByUsername(username).isPresent();
+    }
+
+    /* Returns the user with the given username, or null. */
+    public AppUser findByUsername(String username) {
+        if (shardDirectory == null) {
+            return appUserRepository.findByUsername(username);
+        }
+        return shardDirectory.findByUsername(username)
+                .map(entry -> shards.call(entry.getShard(), () -> appUserRepository.findByUsername(username)))
+                .orElse(null);
+    }
+
+    /* Saves a new user. When sharded, the directory hands out the id and picks the shard; returns null if the
+     * username was taken meanwhile. */
+    public AppUser register(AppUser user) {
+        if (shardDirectory == null) {
+            return appUserRepository.save(user);
+        }
+        long id = shardDirectory.allocateUserId();
+        Optional<Integer> shard = shardDirectory.register(id, user.getUsername());
+        if (shard.isEmpty()) {
+            return null;
+        }
+        try {
+            shards.run(shard.get(), () -> appUserRepository.insertWithId(id, user.getUsername(),
+                    user.getPasswordHash(), user.getRole()));
+        } catch (RuntimeException e) {
+            shardDirectory.remove(id);
+            throw e;
+        }
+        user.setId(id);
+        return user;
+    }
+
+    /* Returns the users of every shard. Not one transaction: each shard is read in a read-only transaction of its
+     * own, on that shard's connection. */
+    public List<UserDTO> findAll() {
+        return shards.collect(appUserRepository::findAllDtos);
+    }
+
+    /* Deletes the user by id and returns them; empty if they do not exist. */
+    @Transactional
+    public Optional<AppUser> deleteUser(Long id) {
+        Optional<AppUser> user = appUserRepository.findById(id);
+        user.ifPresent(this::deleteUser);
+        return user;
+    }
+
+    /* Deletes the user. The user and their exercises are hidden at once and the username is freed;
+     * the rows are removed in the background. */
+    @Transactional
+    public void deleteUser(AppUser user) {
+        LocalDateTime now = LocalDateTime.now();
+        // The user's row first, the lock order of every writer of the user's exercises
+        appUserRepository.lockById(user.getId());
+        resourceVersionService.exercisesChanged(user.getId());
+        exerciseRepository.markDeletedByUserId(user.getId(), now);
+        appUserRepository.markDeleted(user.getId(), now);
+        if (shardDirectory != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    shardDirectory.remove(user.getId());
+                }
+            });
+        }
+        purgeService.purgeAfterCommit();
+    }
+}
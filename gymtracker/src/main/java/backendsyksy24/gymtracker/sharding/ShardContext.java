@@ -0,0 +1,24 @@
+package backendsyksy24.gymtracker.sharding;
+
+// The shard the current thread's database work goes to, see ShardRoutingDataSource.
+// Set per request by ShardRoutingFilter and per shard by background jobs through Shards.
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static void set(int shard) {
+        SHARD.set(shard);
+    }
+
+    public static void clear() {
+        SHARD.remove();
+    }
+
+    // The current shard, or null if none is set
+    public static Integer current() {
+        return SHARD.get();
+    }
+}
@@ -0,0 +1,219 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Which shard each user lives on, kept in user_directory_table on shard 0. Logins look users up by username here,
+// requests by user id. Users are placed by the ring when they register and stay put until the rebalancer moves them.
+// User ids are handed out here too, from the "app_user" row of shard 0's id generator table, so they are unique
+// across shards. Copies of users that a move left on a shard, to be deleted by the rebalancer, are listed in
+// shard_cleanup_table, so a failed delete is retried.
+public class ShardDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardDirectory.class);
+
+    static final String USER_ID_GENERATOR = "app_user";
+
+    private static final RowMapper<Cleanup> CLEANUP_MAPPER = (rs, rowNum) -> new Cleanup(rs.getLong("user_id"),
+            rs.getInt("shard"));
+    private static final RowMapper<Entry> ENTRY_MAPPER = (rs, rowNum) -> new Entry(rs.getLong("user_id"),
+            rs.getString("username"), rs.getInt("shard"), rs.getObject("moving_to", Integer.class));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRing ring;
+
+    public ShardDirectory(DataSource directoryDataSource, ShardRing ring) {
+        this.jdbcTemplate = new JdbcTemplate(directoryDataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(directoryDataSource));
+        this.ring = ring;
+    }
+
+    /* Creates the directory table. On a database that was not sharded before, the directory starts out with its
+     * existing users on shard 0 and user ids continue after theirs. */
+    public void initialize() {
+        jdbcTemplate.execute("create table if not exists user_directory_table ("
+                + "user_id bigint not null primary key, "
+                + "username varchar(255) not null unique, "
+                + "shard int not null, "
+                + "moving_to int)");
+        jdbcTemplate.execute("create table if not exists shard_cleanup_table ("
+                + "user_id bigint not null, "
+                + "shard int not null, "
+                + "primary key (user_id, shard))");
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer generators = jdbcTemplate.queryForObject(
+                    "select count(*) from id_generator_table where sequence_name = ?", Integer.class, USER_ID_GENERATOR);
+            if (generators > 0) {
+                return;
+            }
+            int seeded = jdbcTemplate.update("insert into user_directory_table (user_id, username, shard) "
+                    + "select id, username, 0 from user_table");
+            long nextId = jdbcTemplate.queryForObject("select coalesce(max(user_id), 0) + 1 from user_directory_table",
+                    Long.class);
+            jdbcTemplate.update("insert into id_generator_table (sequence_name, next_val) values (?, ?)",
+                    USER_ID_GENERATOR, nextId);
+            log.info("Created the user directory with {} existing users on shard 0", seeded);
+        });
+    }
+
+    /* Reserves an id for a new user. */
+    public long allocateUserId() {
+        return transactionTemplate.execute(status -> {
+            // The update locks the row, so concurrent registrations get different ids
+            jdbcTemplate.update("update id_generator_table set next_val = next_val + 1 where sequence_name = ?",
+                    USER_ID_GENERATOR);
+            return jdbcTemplate.queryForObject("select next_val - 1 from id_generator_table where sequence_name = ?",
+                    Long.class, USER_ID_GENERATOR);
+        });
+    }
+
+    /* Adds a new user on the shard the ring assigns to their id. Returns the shard, or empty if the username is
+     * already taken. */
+    public Optional<Integer> register(long userId, String username) {
+        int shard = ring.shardFor(userId);
+        try {
+            jdbcTemplate.update("insert into user_directory_table (user_id, username, shard) values (?, ?, ?)",
+                    userId, username, shard);
+            return Optional.of(shard);
+        } catch (DuplicateKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void remove(long userId) {
+        jdbcTemplate.update("delete from user_directory_table where user_id = ?", userId);
+    }
+
+    public Optional<Entry> findByUsername(String username) {
+        return jdbcTemplate.query("select * from user_directory_table where username = ?", ENTRY_MAPPER, username)
+                .stream().findFirst();
+    }
+
+    public Optional<Entry> findByUserId(long userId) {
+        return jdbcTemplate.query("select * from user_directory_table where user_id = ?", ENTRY_MAPPER, userId)
+                .stream().findFirst();
+    }
+
+    /* A page of the directory in user id order, after the given user id. */
+    public List<Entry> findAfter(long afterUserId, int limit) {
+        return jdbcTemplate.query("select * from user_directory_table where user_id > ? order by user_id limit ?",
+                ENTRY_MAPPER, afterUserId, limit);
+    }
+
+    /* Flags the user as moving to the target shard. Writes are refused until the move finishes. Returns false if the
+     * user is not on the source shard or already moving. */
+    public boolean startMove(long userId, int source, int target) {
+        return jdbcTemplate.update("update user_directory_table set moving_to = ? "
+                + "where user_id = ? and shard = ? and moving_to is null", target, userId, source) == 1;
+    }
+
+    /* Points the user at the target shard and, in the same transaction, lists the copy on the source for cleanup. */
+    public void finishMove(long userId, int source, int target) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("update user_directory_table set shard = ?, moving_to = null where user_id = ?",
+                    target, userId);
+            addCleanup(userId, source);
+        });
+    }
+
+    /* Clears the move flag and, in the same transaction, lists the partial copy on the target for cleanup. */
+    public void cancelMove(long userId, int target) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("update user_directory_table set moving_to = null where user_id = ?", userId);
+            addCleanup(userId, target);
+        });
+    }
+
+    /* The copies waiting to be deleted, in user id order. */
+    public List<Cleanup> findCleanups() {
+        return jdbcTemplate.query("select * from shard_cleanup_table order by user_id, shard", CLEANUP_MAPPER);
+    }
+
+    public void finishCleanup(long userId, int shard) {
+        jdbcTemplate.update("delete from shard_cleanup_table where user_id = ? and shard = ?", userId, shard);
+    }
+
+    private void addCleanup(long userId, int shard) {
+        if (jdbcTemplate.update("update shard_cleanup_table set shard = shard where user_id = ? and shard = ?",
+                userId, shard) == 0) {
+            jdbcTemplate.update("insert into shard_cleanup_table (user_id, shard) values (?, ?)", userId, shard);
+        }
+    }
+
+    /* Number of users per shard. */
+    public Map<Integer, Long> countByShard() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        jdbcTemplate.query("select shard, count(*) as users from user_directory_table group by shard",
+                (RowCallbackHandler) rs -> counts.put(rs.getInt("shard"), rs.getLong("users")));
+        return counts;
+    }
+
+    public ShardRing getRing() {
+        return ring;
+    }
+
+    // A copy of a user left on a shard by a move
+    public static final class Cleanup {
+        private final long userId;
+        private final int shard;
+
+        public Cleanup(long userId, int shard) {
+            this.userId = userId;
+            this.shard = shard;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+    }
+
+    // One row of the directory
+    public static final class Entry {
+        private final long userId;
+        private final String username;
+        private final int shard;
+        private final Integer movingTo;
+
+        public Entry(long userId, String username, int shard, Integer movingTo) {
+            this.userId = userId;
+            this.username = username;
+            this.shard = shard;
+            this.movingTo = movingTo;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        // The shard the user is being moved to, or null
+        public Integer getMovingTo() {
+            return movingTo;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.model.ResourceVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+// Moves users between shards: one user on request, or every user the ring places on another shard than the
+// directory, e.g. after a shard was added. A move:
+// 1. flags the user as moving in the directory, so ShardRoutingFilter refuses their writes,
+// 2. waits for writes that passed the check before the flag to finish,
+// 3. copies the user, their exercises, logs and change log to the target in keyset chunks, each read on its own
+//    without locks,
+// 4. locks the user's exercises on the source and, in that one short transaction, catches up with what changed
+//    during the copy and copies the rollup and record rows,
+// 5. points the directory at the target and deletes the rows from the source in one transaction.
+// Ids are kept: they are unique across shards. A failed copy is removed from the target and the user stays put.
+// The copy left behind, on the source after a move or on the target after a failed one, is listed in the directory
+// when the move ends, and deleted again by the next cleanup if deleting it fails.
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final int DIRECTORY_PAGE_SIZE = 500;
+    // Rows of these tables are found through the user's exercises
+    private static final String[] EXERCISE_TABLES = {
+        "exercise_daily_volume_table", "exercise_rep_max_table", "exercise_record_table"
+    };
+
+    private final ShardRoutingDataSource shards;
+    private final ShardDirectory directory;
+    private final int chunkSize;
+    private final Duration drainTime;
+    private final Counter usersMoved;
+
+    private final ExecutorService moveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ShardRebalancer(ShardRoutingDataSource shards, ShardDirectory directory, int chunkSize, Duration drainTime,
+                           MeterRegistry meterRegistry) {
+        this.shards = shards;
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        this.drainTime = drainTime;
+        this.usersMoved = meterRegistry.counter("gymtracker.sharding.moves");
+    }
+
+    /* Starts moving one user to the target shard in the background. Returns false if a move is already running. */
+    public boolean startMove(long userId, int target) {
+        return start(() -> moveUser(userId, target));
+    }
+
+    /* Starts moving every misplaced user in the background. Returns false if a move is already running. */
+    public boolean startRebalance() {
+        return start(this::rebalance);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    // Retries the cleanups that failed, unless a move is running, which does its own
+    @Scheduled(fixedDelayString = "${gymtracker.sharding.cleanup-interval:PT5M}")
+    public void scheduledCleanUp() {
+        if (!directory.findCleanups().isEmpty()) {
+            start(this::cleanUp);
+        }
+    }
+
+    /* Deletes the copies of users that moves left behind. Returns the number deleted. */
+    public int cleanUp() {
+        int cleaned = 0;
+        for (ShardDirectory.Cleanup cleanup : directory.findCleanups()) {
+            try {
+                if (cleanUp(cleanup)) {
+                    cleaned++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Cleaning up user {} on shard {} failed, it is retried later", cleanup.getUserId(),
+                        cleanup.getShard(), e);
+            }
+        }
+        return cleaned;
+    }
+
+    private boolean start(Runnable job) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        moveExecutor.execute(() -> {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                log.error("Shard rebalancing failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /* Moves every user whose directory shard is not the one the ring assigns. Returns the number of users moved. */
+    public int rebalance() {
+        cleanUp();
+        int moved = 0;
+        long after = 0;
+        List<ShardDirectory.Entry> page = directory.findAfter(after, DIRECTORY_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            for (ShardDirectory.Entry entry : page) {
+                int target = directory.getRing().shardFor(entry.getUserId());
+                if (target != entry.getShard() && moveUser(entry.getUserId(), target)) {
+                    moved++;
+                }
+            }
+            after = page.get(page.size() - 1).getUserId();
+            page = directory.findAfter(after, DIRECTORY_PAGE_SIZE);
+        }
+        log.info("Rebalancing moved {} users", moved);
+        return moved;
+    }
+
+    /* Moves one user to the target shard. Returns false if the user does not exist, is already there or is
+     * being moved. */
+    public boolean moveUser(long userId, int target) {
+        if (target < 0 || target >= shards.getShardCount()) {
+            throw new IllegalArgumentException("No shard " + target);
+        }
+        ShardDirectory.Entry entry = directory.findByUserId(userId).orElse(null);
+        if (entry == null || entry.getShard() == target) {
+            return false;
+        }
+        // A copy left on the target by an earlier move would collide with this one
+        for (ShardDirectory.Cleanup cleanup : directory.findCleanups()) {
+            if (cleanup.getUserId() == userId) {
+                cleanUp(cleanup);
+            }
+        }
+        if (!directory.startMove(userId, entry.getShard(), target)) {
+            return false;
+        }
+        int source = entry.getShard();
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(drainTime.toMillis());
+            copyUser(userId, shards.getShard(source), shards.getShard(target));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortMove(userId, target);
+            return false;
+        } catch (RuntimeException e) {
+            abortMove(userId, target);
+            throw e;
+        }
+        directory.finishMove(userId, source, target);
+        usersMoved.increment();
+        cleanUpAfterMove(new ShardDirectory.Cleanup(userId, source));
+        log.info("Moved user {} from shard {} to shard {} in {} ms", userId, source, target,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    private void abortMove(long userId, int target) {
+        directory.cancelMove(userId, target);
+        cleanUpAfterMove(new ShardDirectory.Cleanup(userId, target));
+    }
+
+    // A failure is logged and left to the next cleanup: the move itself is done
+    private void cleanUpAfterMove(ShardDirectory.Cleanup cleanup) {
+        try {
+            cleanUp(cleanup);
+        } catch (RuntimeException e) {
+            log.warn("Cleaning up user {} on shard {} failed, it is retried later", cleanup.getUserId(),
+                    cleanup.getShard(), e);
+        }
+    }
+
+    // Deletes a copy of a user that a move left behind. The shard the user lives on, or is being moved to, is never
+    // cleaned up.
+    private boolean cleanUp(ShardDirectory.Cleanup cleanup) {
+        ShardDirectory.Entry entry = directory.findByUserId(cleanup.getUserId()).orElse(null);
+        if (entry != null && Objects.equals(entry.getMovingTo(), cleanup.getShard())) {
+            return false;
+        }
+        boolean deleted = false;
+        if (entry == null || entry.getShard() != cleanup.getShard()) {
+            deleteUser(cleanup.getUserId(), shards.getShard(cleanup.getShard()));
+            deleted = true;
+        }
+        directory.finishCleanup(cleanup.getUserId(), cleanup.getShard());
+        return deleted;
+    }
+
+    private void copyUser(long userId, DataSource source, DataSource target) {
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        // Bulk copy: every chunk is a statement of its own, so no source lock is held across chunks
+        copyRows(sourceJdbc, targetJdbc, "select * from user_table where id = ?", "user_table", true, userId);
+        copyChanges(sourceJdbc, targetJdbc, userId);
+        List<Long> copiedIds = sourceJdbc.queryForList("select id from exercise_table "
+                + "where user_id = ? and deleted_at is null order by id", Long.class, userId);
+        for (Long exerciseId : copiedIds) {
+            copyRows(sourceJdbc, targetJdbc, "select * from exercise_table where id = ?", "exercise_table", true,
+                    exerciseId);
+            copyLogs(sourceJdbc, targetJdbc, exerciseId);
+        }
+
+        // Catch-up: writes are refused during the move, but background jobs may still have changed the user
+        new TransactionTemplate(new DataSourceTransactionManager(source)).executeWithoutResult(status -> {
+            // Locked in the same order as ExerciseLogService locks them
+            List<Long> exerciseIds = sourceJdbc.queryForList("select id from exercise_table "
+                    + "where user_id = ? and deleted_at is null order by id for update", Long.class, userId);
+            Set<Long> locked = new HashSet<>(exerciseIds);
+            for (Long exerciseId : copiedIds) {
+                if (!locked.contains(exerciseId)) {
+                    deleteExercise(targetJdbc, exerciseId);
+                }
+            }
+            Set<Long> copied = new HashSet<>(copiedIds);
+            for (Long exerciseId : exerciseIds) {
+                if (!copied.contains(exerciseId)) {
+                    copyRows(sourceJdbc, targetJdbc, "select * from exercise_table where id = ?", "exercise_table",
+                            true, exerciseId);
+                }
+                copyLogs(sourceJdbc, targetJdbc, exerciseId);
+                String count = "select count(*) from exercise_log_table where exercise_id = ?";
+                if (!sourceJdbc.queryForObject(count, Long.class, exerciseId)
+                        .equals(targetJdbc.queryForObject(count, Long.class, exerciseId))) {
+                    // Logs were deleted during the copy, e.g. by the archiver: copied again
+                    targetJdbc.update("delete from exercise_log_table where exercise_id = ?", exerciseId);
+                    copyLogs(sourceJdbc, targetJdbc, exerciseId);
+                }
+                for (String table : EXERCISE_TABLES) {
+                    // The rollup and rep max rows get new ids on the target; nothing refers to them
+                    copyRows(sourceJdbc, targetJdbc, "select * from " + table + " where exercise_id = ?", table,
+                            table.equals("exercise_record_table"), exerciseId);
+                }
+            }
+            // Compaction removes a prefix of the change log
+            Long firstSeq = sourceJdbc.queryForObject("select min(seq) from change_log_table where user_id = ?",
+                    Long.class, userId);
+            targetJdbc.update("delete from change_log_table where user_id = ? and seq < ?", userId,
+                    firstSeq != null ? firstSeq : Long.MAX_VALUE);
+            copyChanges(sourceJdbc, targetJdbc, userId);
+            copyRows(sourceJdbc, targetJdbc, "select * from change_sequence_table where user_id = ?",
+                    "change_sequence_table", true, userId);
+        });
+    }
+
+    // Copies the exercise's logs after the last one on the target
+    private void copyLogs(JdbcTemplate sourceJdbc, JdbcTemplate targetJdbc, long exerciseId) {
+        long afterId = targetJdbc.queryForObject("select coalesce(max(id), ?) from exercise_log_table "
+                + "where exercise_id = ?", Long.class, Long.MIN_VALUE, exerciseId);
+        int copied;
+        do {
+            copied = copyRows(sourceJdbc, targetJdbc, "select * from exercise_log_table where exercise_id = ? "
+                    + "and id > ? order by id limit " + chunkSize, "exercise_log_table", true, exerciseId, afterId);
+            if (copied > 0) {
+                afterId = targetJdbc.queryForObject("select max(id) from exercise_log_table where exercise_id = ?",
+                        Long.class, exerciseId);
+            }
+        } while (copied == chunkSize);
+    }
+
+    // Copies the user's changes after the last one on the target. The sequence row is copied after the last of them:
+    // if compaction removes changes that were not copied yet, it has raised the horizon over them by then, and sync
+    // clients are not told that the target has them
+    private void copyChanges(JdbcTemplate sourceJdbc, JdbcTemplate targetJdbc, long userId) {
+        long afterSeq = targetJdbc.queryForObject("select coalesce(max(seq), 0) from change_log_table "
+                + "where user_id = ?", Long.class, userId);
+        int copied;
+        do {
+            copied = copyRows(sourceJdbc, targetJdbc, "select * from change_log_table where user_id = ? and seq > ? "
+                    + "order by seq limit " + chunkSize, "change_log_table", true, userId, afterSeq);
+            if (copied > 0) {
+                afterSeq = targetJdbc.queryForObject("select max(seq) from change_log_table where user_id = ?",
+                        Long.class, userId);
+            }
+        } while (copied == chunkSize);
+    }
+
+    // Copies the rows the query returns into the table of the same name on the target, in one batch
+    private int copyRows(JdbcTemplate sourceJdbc, JdbcTemplate targetJdbc, String query, String table, boolean keepId,
+                         Object... args) {
+        List<String> columns = new ArrayList<>();
+        List<Object[]> rows = sourceJdbc.query(query, (rs, rowNum) -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            if (columns.isEmpty()) {
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i).toLowerCase());
+                }
+            }
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (keepId || !columns.get(i - 1).equals("id")) {
+                    values.add(rs.getObject(i));
+                }
+            }
+            return values.toArray();
+        }, args);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        if (!keepId) {
+            columns.remove("id");
+        }
+        String insert = "insert into " + table + " (" + String.join(", ", columns) + ") values ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        targetJdbc.batchUpdate(insert, rows);
+        return rows.size();
+    }
+
+    // Deletes the user and everything under them from one shard, in one transaction of that shard, so the copy is
+    // either gone or still whole for the next cleanup
+    private void deleteUser(long userId, DataSource shard) {
+        JdbcTemplate jdbc = new JdbcTemplate(shard);
+        new TransactionTemplate(new DataSourceTransactionManager(shard)).executeWithoutResult(status -> {
+            List<Long> exerciseIds = jdbc.queryForList("select id from exercise_table where user_id = ?", Long.class,
+                    userId);
+            for (Long exerciseId : exerciseIds) {
+                deleteExercise(jdbc, exerciseId);
+            }
+            jdbc.update("delete from resource_version_table where kind = ? and resource_id = ?",
+                    ResourceVersion.EXERCISES, userId);
+            jdbc.update("delete from change_log_table where user_id = ?", userId);
+            jdbc.update("delete from change_sequence_table where user_id = ?", userId);
+            jdbc.update("delete from user_table where id = ?", userId);
+        });
+    }
+
+    private void deleteExercise(JdbcTemplate jdbc, long exerciseId) {
+        for (String table : EXERCISE_TABLES) {
+            jdbc.update("delete from " + table + " where exercise_id = ?", exerciseId);
+        }
+        // Versions are not copied: the moved data is not cached until its next write, and a version left
+        // behind here would be wrong if the user ever came back
+        jdbc.update("delete from resource_version_table where kind = ? and resource_id = ?",
+                ResourceVersion.LOGS, exerciseId);
+        jdbc.update("delete from exercise_log_table where exercise_id = ?", exerciseId);
+        jdbc.update("delete from exercise_table where id = ?", exerciseId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        moveExecutor.shutdownNow();
+    }
+}
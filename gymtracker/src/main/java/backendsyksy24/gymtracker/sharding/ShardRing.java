@@ -0,0 +1,46 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Consistent-hash ring over user ids. Each shard owns virtual-nodes points on the ring and a user belongs to the first
+// point at or after the hash of their id. Adding a shard takes over about 1/N of the users from every other shard,
+// instead of reshuffling everyone as a plain modulo would.
+// The ring only places new users and tells the rebalancer where users belong; ShardDirectory is authoritative.
+public class ShardRing {
+
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int shardCount;
+
+    public ShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one shard and one virtual node per shard");
+        }
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // Points depend only on the shard index, so appending a shard keeps the existing points
+                ring.put(mix(((long) shard << 32) | node), shard);
+            }
+        }
+    }
+
+    public int shardFor(long userId) {
+        Map.Entry<Long, Integer> owner = ring.ceilingEntry(mix(userId ^ 0x5DEECE66DL));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // MurmurHash3 finalizer: spreads consecutive ids evenly over the ring and is the same on every instance
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
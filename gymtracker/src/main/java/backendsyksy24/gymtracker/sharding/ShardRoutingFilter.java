@@ -0,0 +1,86 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Routes a request's database work to the shard of the user it concerns: the user in the path for /api/users/{id}/...,
+// otherwise the authenticated user. Exercise and log ids are only looked up on that shard.
+// Requests without a user of the directory (login, registration, admin jobs) are left on shard 0 and route themselves.
+// Runs after the security filters, so the user is known.
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final String USER_PATH = "/api/users/{userId}/**";
+
+    private final ShardDirectory directory;
+
+    public ShardRoutingFilter(ShardDirectory directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Long pathUserId = pathUserId(request);
+        Long userId = pathUserId != null ? pathUserId : principalId(request);
+        ShardDirectory.Entry entry = userId != null ? directory.findByUserId(userId).orElse(null) : null;
+        if (entry == null) {
+            if (pathUserId != null) {
+                response.sendError(HttpStatus.NOT_FOUND.value(), "User not found");
+                return;
+            }
+            // Not about a user of the directory; whatever is read here is read from shard 0
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (entry.getMovingTo() != null && !READ_METHODS.contains(request.getMethod())) {
+            // The user's rows are being copied to another shard; a write now could be lost
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "User data is being moved, please try again");
+            return;
+        }
+        ShardContext.set(entry.getShard());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ShardContext.clear();
+        }
+    }
+
+    private Long pathUserId(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!PATH_MATCHER.match(USER_PATH, path)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(PATH_MATCHER.extractUriTemplateVariables(USER_PATH, path).get("userId"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Long principalId(HttpServletRequest request) {
+        if (request.getRequestURI().startsWith(request.getContextPath() + "/api/admin/")) {
+            return null;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.util.List;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// Hibernate applies spring.jpa.hibernate.ddl-auto only to the database it connects to at startup, shard 0.
+// This runs the same schema action on the other shards, and then sets up the user directory on shard 0.
+public class ShardSchemaInitializer implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+    private final Shards shards;
+    private final ShardDirectory directory;
+    private final EntityManagerFactory entityManagerFactory;
+    private final MetadataCapture metadataCapture;
+
+    public ShardSchemaInitializer(Shards shards, ShardDirectory directory, EntityManagerFactory entityManagerFactory,
+                                  MetadataCapture metadataCapture) {
+        this.shards = shards;
+        this.directory = directory;
+        this.entityManagerFactory = entityManagerFactory;
+        this.metadataCapture = metadataCapture;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        for (int shard = 1; shard < shards.count(); shard++) {
+            log.info("Applying the schema action to shard {}", shard);
+            // Connections come from the routing DataSource, so the shard context selects the database.
+            // The extra shards are not dropped on shutdown, even with create-drop.
+            shards.run(shard, () -> SchemaManagementToolCoordinator.process(metadataCapture.metadata,
+                    sessionFactory.getServiceRegistry(), sessionFactory.getProperties(), action -> {
+                    }));
+        }
+        directory.initialize();
+    }
+
+    // Registered as hibernate.integrator_provider, to get hold of the mapping metadata while Hibernate starts
+    public static class MetadataCapture implements IntegratorProvider {
+
+        private volatile Metadata metadata;
+
+        @Override
+        public List<Integrator> getIntegrators() {
+            return List.of(new Integrator() {
+                @Override
+                public void integrate(Metadata bootMetadata, BootstrapContext bootstrapContext,
+                                      SessionFactoryImplementor sessionFactory) {
+                    metadata = bootMetadata;
+                }
+
+                @Override
+                public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                         SessionFactoryServiceRegistry serviceRegistry) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+// Sharding by user, enabled by listing the JDBC URLs of the shards after the first in gymtracker.sharding.shard-urls.
+// Shard 0 keeps the spring.datasource settings and also holds the user directory; the other shards use the same
+// driver and, unless set, the same account. Every shard has the full schema.
+// Read replicas (gymtracker.datasource.replica-urls) cannot be combined with sharding.
+@Configuration
+@ConditionalOnExpression("!'${gymtracker.sharding.shard-urls:}'.isBlank()")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties,
+            @Value("${gymtracker.sharding.shard-urls}") String shardUrls,
+            @Value("${gymtracker.sharding.username:${spring.datasource.username:}}") String username,
+            @Value("${gymtracker.sharding.password:${spring.datasource.password:}}") String password,
+            @Value("${gymtracker.datasource.replica-urls:}") String replicaUrls,
+            MeterRegistry meterRegistry) {
+        if (!replicaUrls.isBlank()) {
+            throw new IllegalStateException("Read replicas are not supported together with sharding");
+        }
+        List<HikariDataSource> shards = new ArrayList<>();
+        HikariDataSource first = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        first.setPoolName("shard-0");
+        shards.add(first);
+        for (String url : Shards.splitUrls(shardUrls)) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            shard.setPoolName("shard-" + shards.size());
+            shards.add(shard);
+        }
+        // Spring Boot cannot see the pools behind the routing, so their metrics (hikari.*{pool}) are bound here
+        shards.forEach(shard -> shard.setMetricRegistry(meterRegistry));
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public ShardRing shardRing(ShardRoutingDataSource dataSource,
+            @Value("${gymtracker.sharding.virtual-nodes:128}") int virtualNodes) {
+        return new ShardRing(dataSource.getShardCount(), virtualNodes);
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardRoutingDataSource dataSource, ShardRing shardRing) {
+        return new ShardDirectory(dataSource.getShard(0), shardRing);
+    }
+
+    @Bean
+    public ShardSchemaInitializer.MetadataCapture shardMetadataCapture() {
+        return new ShardSchemaInitializer.MetadataCapture();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardMetadataCustomizer(ShardSchemaInitializer.MetadataCapture capture) {
+        return properties -> properties.put("hibernate.integrator_provider", capture);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer(Shards shards, ShardDirectory shardDirectory,
+            EntityManagerFactory entityManagerFactory, ShardSchemaInitializer.MetadataCapture capture) {
+        return new ShardSchemaInitializer(shards, shardDirectory, entityManagerFactory, capture);
+    }
+
+    @Bean
+    public ShardRoutingFilter shardRoutingFilter(ShardDirectory shardDirectory) {
+        return new ShardRoutingFilter(shardDirectory);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardRoutingDataSource dataSource, ShardDirectory shardDirectory,
+            @Value("${gymtracker.sharding.move-chunk-size:1000}") int chunkSize,
+            @Value("${gymtracker.sharding.move-drain-time:PT2S}") Duration drainTime,
+            MeterRegistry meterRegistry) {
+        return new ShardRebalancer(dataSource, shardDirectory, chunkSize, drainTime, meterRegistry);
+    }
+}
@@ -0,0 +1,105 @@
+package backendsyksy24.gymtracker.sharding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// The shards of the deployment: spring.datasource is shard 0 and gymtracker.sharding.shard-urls adds shards 1..N-1.
+// Without shard URLs there is just shard 0 and running on a shard changes nothing, so background jobs can always
+// loop over the shards.
+@Component
+public class Shards {
+
+    // Ids of shard i start at i * ID_RANGE, see IdGeneratorInitializer
+    public static final long ID_RANGE = 1L << 40;
+
+    private final int count;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public Shards(@Value("${gymtracker.sharding.shard-urls:}") String shardUrls,
+                  EntityManagerFactory entityManagerFactory) {
+        this.count = 1 + splitUrls(shardUrls).size();
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    static List<String> splitUrls(String shardUrls) {
+        List<String> urls = new ArrayList<>();
+        for (String url : shardUrls.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        return urls;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public static long idBase(int shard) {
+        return shard * ID_RANGE;
+    }
+
+    /* Runs the task with its database work on the given shard. Must not be called inside a transaction, which is
+     * bound to one shard's connection. An entity manager kept open for the request (open-in-view) is set aside
+     * meanwhile, as it holds on to the connection of the shard it was first used on. */
+    public <T> T call(int shard, Supplier<T> task) {
+        if (!isSharded()) {
+            return task.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch shards inside a transaction");
+        }
+        Integer previous = ShardContext.current();
+        EntityManagerHolder requestEntityManager =
+                (EntityManagerHolder) TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        ShardContext.set(shard);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                ShardContext.set(previous);
+            } else {
+                ShardContext.clear();
+            }
+            if (requestEntityManager != null) {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, requestEntityManager);
+            }
+        }
+    }
+
+    public void run(int shard, Runnable task) {
+        call(shard, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /* Runs the task once on every shard. */
+    public void forEach(Runnable task) {
+        for (int shard = 0; shard < count; shard++) {
+            run(shard, task);
+        }
+    }
+
+    /* Runs the query on every shard and concatenates the results. */
+    public <T> List<T> collect(Supplier<? extends Collection<T>> query) {
+        List<T> results = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            results.addAll(call(shard, query));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,118 @@
+package backendsyksy24.gymtracker.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads CSV (RFC 4180) one record at a time: fields split by the separator, optionally quoted, with doubled quotes
+// and line breaks inside quotes. Only the current record is held, and a record longer than maxRecordLength is
+// refused, so an unterminated quote cannot pull the rest of a large file into memory.
+public class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char separator;
+    private final int maxRecordLength;
+    private final StringBuilder field = new StringBuilder();
+    private long lineNumber = 1; // Line the next record starts on
+    private long recordLine;
+    private int pushedBack = -2; // -2: nothing pushed back
+    private boolean first = true;
+
+    /* The reader should be buffered. */
+    public CsvReader(Reader reader, char separator, int maxRecordLength) {
+        this.reader = reader;
+        this.separator = separator;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /* The next record's fields, or null at the end of the input. */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = lineNumber;
+        List<String> fields = new ArrayList<>();
+        int length = 0;
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        field.setLength(0);
+        while (true) {
+            if (++length > maxRecordLength) {
+                throw new IOException("Line " + recordLine + ": record longer than " + maxRecordLength
+                        + " characters, is a quote missing?");
+            }
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Line " + recordLine + ": quoted field is not closed");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pushedBack = next;
+                    }
+                }
+                if (c != -1) {
+                    lineNumber++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /* The line the last record read started on, from 1. */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Skips a byte order mark at the start of the input
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        int c = reader.read();
+        if (first) {
+            first = false;
+            if (c == '\uFEFF') {
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+}
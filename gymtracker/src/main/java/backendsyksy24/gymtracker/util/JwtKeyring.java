@@ -0,0 +1,214 @@
+package backendsyksy24.gymtracker.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/*
+ * HMAC keys shared by all backend instances, so a token issued by one replica is accepted by the others
+ * and survives restarts. Every key has an id ("kid") that is written to the token header.
+ *
+ * Sources (gymtracker.jwt.keyring.type):
+ * - "file": a properties file with lines  kid=base64Secret[,activationInstant]
+ *   e.g.  2026-10=q3Jt...=,2026-10-01T00:00:00Z
+ * - "pkcs12" / "jceks": a keystore with secret key entries. The alias is the kid and the entry
+ *   creation date is the activation time.
+ *
+ * All loaded keys verify tokens. New tokens are signed with the newest key whose activation time has passed,
+ * so a key can be published to every replica before it starts signing. The source is re-read on a schedule.
+ * Without a location, a random key is generated and tokens only work on this instance until restart.
+ */
+@Component
+public class JwtKeyring {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyring.class);
+
+    private final String location;
+    private final String type;
+    private final char[] password;
+
+    // Replaced as a whole on reload, so lookups never see a half-loaded keyring
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public JwtKeyring(@Value("${gymtracker.jwt.keyring.location:}") String location,
+                      @Value("${gymtracker.jwt.keyring.type:file}") String type,
+                      @Value("${gymtracker.jwt.keyring.password:}") String password) {
+        this.location = location;
+        this.type = type;
+        this.password = password.toCharArray();
+        if (StringUtils.hasText(location)) {
+            this.snapshot = load();
+        } else {
+            log.warn("No JWT keyring configured, using a random key. Tokens are only valid on this instance until restart.");
+            this.snapshot = new Snapshot(List.of(
+                    new SigningKey("local", Keys.secretKeyFor(SignatureAlgorithm.HS256), Instant.EPOCH)));
+        }
+    }
+
+    private JwtKeyring(Snapshot snapshot) {
+        this.location = "";
+        this.type = "file";
+        this.password = new char[0];
+        this.snapshot = snapshot;
+    }
+
+    // Keyring with a single fixed key, e.g. for tests and benchmarks
+    public static JwtKeyring of(String kid, Key key) {
+        return new JwtKeyring(new Snapshot(List.of(new SigningKey(kid, key, Instant.EPOCH))));
+    }
+
+    // Key used to sign new tokens
+    public SigningKey signingKey() {
+        return snapshot.signingKey(Instant.now());
+    }
+
+    // Key for verifying a token with the given kid, or null if the kid is unknown. Tokens without a kid
+    // are only accepted when the keyring holds a single key.
+    public Key verificationKey(String kid) {
+        Snapshot current = snapshot;
+        if (kid == null) {
+            return current.keys.size() == 1 ? current.keys.get(0).getKey() : null;
+        }
+        SigningKey key = current.byKid.get(kid);
+        return key == null ? null : key.getKey();
+    }
+
+    // Picks up added, activated and removed keys. A broken source keeps the previous keys in use.
+    @Scheduled(fixedDelayString = "${gymtracker.jwt.keyring.reload-interval:PT5M}")
+    public void reload() {
+        if (!StringUtils.hasText(location)) {
+            return;
+        }
+        try {
+            snapshot = load();
+        } catch (RuntimeException e) {
+            log.error("Reloading the JWT keyring from {} failed, keeping the previous keys", location, e);
+        }
+    }
+
+    private Snapshot load() {
+        Path path = Path.of(location);
+        try {
+            List<SigningKey> keys = "file".equalsIgnoreCase(type) ? loadFile(path) : loadKeyStore(path);
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("JWT keyring " + location + " contains no keys");
+            }
+            return new Snapshot(keys);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load JWT keyring from " + location, e);
+        }
+    }
+
+    private List<SigningKey> loadFile(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        List<SigningKey> keys = new ArrayList<>();
+        for (String kid : properties.stringPropertyNames()) {
+            String[] parts = properties.getProperty(kid).split(",", 2);
+            SecretKey key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(parts[0].trim()));
+            Instant activation = parts.length > 1 ? Instant.parse(parts[1].trim()) : Instant.EPOCH;
+            keys.add(new SigningKey(kid, key, activation));
+        }
+        return keys;
+    }
+
+    private List<SigningKey> loadKeyStore(Path path) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(type.toUpperCase());
+        try (InputStream in = Files.newInputStream(path)) {
+            keyStore.load(in, password);
+        }
+        List<SigningKey> keys = new ArrayList<>();
+        for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();) {
+            String alias = aliases.nextElement();
+            Key key = keyStore.getKey(alias, password);
+            if (key instanceof SecretKey) {
+                keys.add(new SigningKey(alias, key, keyStore.getCreationDate(alias).toInstant()));
+            }
+        }
+        return keys;
+    }
+
+    // A key together with its id and the time from which it signs new tokens
+    public static final class SigningKey {
+        private final String kid;
+        private final Key key;
+        private final Instant activation;
+
+        SigningKey(String kid, Key key, Instant activation) {
+            this.kid = kid;
+            this.key = key;
+            this.activation = activation;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public Instant getActivation() {
+            return activation;
+        }
+    }
+
+    // Immutable view of the keyring with the decoded keys indexed by kid
+    private static final class Snapshot {
+        private final List<SigningKey> keys;
+        private final Map<String, SigningKey> byKid;
+
+        Snapshot(List<SigningKey> keys) {
+            List<SigningKey> sorted = new ArrayList<>(keys);
+            // Newest activation first
+            sorted.sort(Comparator.comparing(SigningKey::getActivation).reversed());
+            Map<String, SigningKey> index = new HashMap<>();
+            for (SigningKey key : sorted) {
+                index.put(key.getKid(), key);
+            }
+            this.keys = Collections.unmodifiableList(sorted);
+            this.byKid = Map.copyOf(index);
+        }
+
+        SigningKey signingKey(Instant now) {
+            for (SigningKey key : keys) {
+                if (!key.getActivation().isAfter(now)) {
+                    return key;
+                }
+            }
+            // Every key is scheduled for the future; fall back to the one activating first
+            return keys.get(keys.size() - 1);
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package backendsyksy24.gymtracker.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -16,7 +24,53 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
 
-    private final Key SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256); // Generates a secure 256-bit key
+    // Claim names for the data the request filter needs to authenticate a request without a database lookup
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    private final JwtKeyring keyring;
+
+    // Parsers are immutable and thread-safe, so one instance is shared by all requests.
+    // The verification key is picked by the "kid" header from the keyring's decoded keys.
+    private final JwtParser parser;
+
+    public JwtUtil() {
+        this(Keys.secretKeyFor(SignatureAlgorithm.HS256)); // Generates a secure 256-bit key
+    }
+
+    public JwtUtil(Key secretKey) {
+        this(JwtKeyring.of("local", secretKey));
+    }
+
+    @Autowired
+    public JwtUtil(JwtKeyring keyring) {
+        this.keyring = keyring;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = keyring.verificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new SignatureException("Unknown signing key id: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
+
+    // Parses the token and verifies its signature and expiry exactly once.
+    // Throws a JwtException if the token is malformed, tampered with or expired.
+    public VerifiedToken verify(String token) throws JwtException {
+        Claims claims = extractAllClaims(token);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get(USER_ID_CLAIM, Long.class),
+                role == null ? List.of() : List.of(role),
+                expiration == null ? null : expiration.toInstant());
+    }
 
     public String extractUsername(String token) { 
         return extractClaim(token, Claims::getSubject);
@@ -26,17 +80,22 @@ public class JwtUtil {
         return extractClaim(token, Claims::getExpiration);
     }
 
+    // Returns null for tokens issued before the role claim was added
+    public String extractRole(String token) {
+        return extractClaim(token, claims -> claims.get(ROLE_CLAIM, String.class));
+    }
+
+    public Long extractUserId(String token) {
+        return extractClaim(token, claims -> claims.get(USER_ID_CLAIM, Long.class));
+    }
+
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) { 
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
 
     private Claims extractAllClaims(String token) { 
-        return Jwts.parserBuilder()
-                   .setSigningKey(SECRET_KEY)
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     private Boolean isTokenExpired(String token) {
@@ -48,14 +107,24 @@ public class JwtUtil {
         return createToken(claims, username);
     }
 
-    // Create token with the given claims and subject with 10 hours expiration time
+    // Token that carries the user id and role, so it can be authenticated from the verified claims alone
+    public String generateToken(String username, Long userId, String role) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userId);
+        claims.put(ROLE_CLAIM, role);
+        return createToken(claims, username);
+    }
+
+    // Create token with the given claims and subject with 10 hours expiration time, signed with the active keyring key
     private String createToken(Map<String, Object> claims, String subject) {
+        JwtKeyring.SigningKey signingKey = keyring.signingKey();
         return Jwts.builder()
+                   .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                    .setClaims(claims)
                    .setSubject(subject)
                    .setIssuedAt(new Date(System.currentTimeMillis()))
                    .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours
-                   .signWith(SECRET_KEY)
+                   .signWith(signingKey.getKey())
                    .compact();
     }
 
@@ -64,4 +133,9 @@ public class JwtUtil {
         final String extractedUsername = extractUsername(token);
         return (extractedUsername.equals(username) && !isTokenExpired(token));
     }
-}
\ No newline at end of file
+
+    // Single-parse variant of validateToken for callers that already hold a verified token
+    public boolean validateToken(VerifiedToken token, String username) {
+        return token.getSubject().equals(username) && !token.isExpired(Instant.now());
+    }
+}
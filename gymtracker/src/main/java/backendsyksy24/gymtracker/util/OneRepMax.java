@@ -0,0 +1,18 @@
+package backendsyksy24.gymtracker.util;
+
+// Estimated one-rep max from a set of several reps
+public final class OneRepMax {
+
+    private OneRepMax() {
+    }
+
+    // Epley: weight x (1 + reps / 30). Used to rank sets.
+    public static double epley(int weight, int reps) {
+        return reps == 1 ? weight : weight * (1 + reps / 30.0);
+    }
+
+    // Brzycki: weight x 36 / (37 - reps). Not defined from 37 reps up, returns null there.
+    public static Double brzycki(int weight, int reps) {
+        return reps < 37 ? weight * 36.0 / (37 - reps) : null;
+    }
+}
@@ -0,0 +1,60 @@
+package backendsyksy24.gymtracker.web;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Bounded cache of verified principals for tokens that still need a database lookup. Entries expire after a fixed TTL.
+// Concurrent misses for a user wait for one lookup. The lookup runs outside the cache's map, whose compute holds a
+// monitor that would pin a virtual thread for the whole query.
+@Component
+public class PrincipalCache {
+
+    private final AsyncCache<String, UserDetails> cache;
+
+    public PrincipalCache(@Value("${gymtracker.auth.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${gymtracker.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    // Returns the cached principal or loads it with the given function. Failed loads are not cached.
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        CompletableFuture<UserDetails> loading = new CompletableFuture<>();
+        CompletableFuture<UserDetails> cached = cache.asMap().putIfAbsent(username, loading);
+        if (cached != null) {
+            try {
+                return cached.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            UserDetails principal = loader.apply(username);
+            loading.complete(principal);
+            return principal;
+        } catch (RuntimeException | Error e) {
+            // The cache drops a failed future
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Removes a principal, e.g. after the user has been deleted or the role has changed
+    public void evict(String username) {
+        cache.synchronous().invalidate(username);
+    }
+}
@@ -0,0 +1,153 @@
+package backendsyksy24.gymtracker.web;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import backendsyksy24.gymtracker.repository.ResourceVersionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Serialized JSON of whole-list reads, kept per resource together with the version it was built from (see
+// ResourceVersion). A read looks up the current version, one primary-key query, and answers 304 Not Modified if the
+// client already has it, or the cached bytes if this instance has them. Only a new version runs the read's queries
+// and serialization. The version is looked up rather than kept in memory, because a write on another instance
+// has to show up here at once.
+// Each WireFormat of a resource is cached and tagged on its own, and the responses vary by Accept.
+// Bounded by the total size of the cached bodies. Hits and misses are published as cache.gets{cache=response}.
+@Component
+public class ResponseCache {
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private record Key(String kind, Long resourceId, WireFormat format) {
+    }
+
+    private record Entry(long version, byte[] body) {
+    }
+
+    // What a read found: no version, a 304 (no body and no data), the cached body, or freshly loaded data
+    private record Read(Long version, byte[] body, Object data) {
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final ResourceVersionRepository resourceVersionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final Counter notModified;
+
+    public ResponseCache(ResourceVersionRepository resourceVersionRepository,
+                         PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         MappingJackson2CborHttpMessageConverter cborConverter, MeterRegistry meterRegistry,
+                         @Value("${gymtracker.response-cache.max-size:64MB}") DataSize maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .<Key, Entry>weigher((key, entry) -> entry.body().length)
+                .recordStats()
+                .build();
+        this.resourceVersionRepository = resourceVersionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborConverter.getObjectMapper();
+        this.notModified = meterRegistry.counter("gymtracker.response-cache.not-modified");
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "response");
+    }
+
+    /* Answers a read of the resource: 304 if ifNoneMatch holds its current version, else the JSON of what the
+     * loader returns, cached for the next read. Resources that were never written since versions were introduced
+     * (or whose user was moved to another shard) have no version and are not cached until their next write. */
+    public ResponseEntity<byte[]> get(String kind, Long resourceId, String ifNoneMatch, Supplier<?> loader) {
+        return get(kind, resourceId, ifNoneMatch, WireFormat.JSON, loader);
+    }
+
+    /* Like get, in the format; the loader returns the data in the format's shape. */
+    public ResponseEntity<byte[]> get(String kind, Long resourceId, String ifNoneMatch, WireFormat format,
+                                      Supplier<?> loader) {
+        Key key = new Key(kind, resourceId, format);
+        // The version is read first and in the same transaction as the data: data newer than its version is only
+        // cached under a version that has already been replaced, never the other way round
+        Read read = readOnlyTransaction.execute(status -> {
+            Long version = resourceVersionRepository.findVersion(kind, resourceId).orElse(null);
+            if (version == null) {
+                return new Read(null, null, loader.get());
+            }
+            if (matches(ifNoneMatch, etag(version, format))) {
+                return new Read(version, null, null);
+            }
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null && entry.version() == version) {
+                return new Read(version, entry.body(), null);
+            }
+            return new Read(version, null, loader.get());
+        });
+
+        if (read.version() == null) {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).contentType(format.getMediaType())
+                    .body(serialize(read.data(), format));
+        }
+        String etag = etag(read.version(), format);
+        if (read.body() == null && read.data() == null) {
+            notModified.increment();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE)
+                    .varyBy(HttpHeaders.ACCEPT).build();
+        }
+        byte[] body = read.body();
+        if (body == null) {
+            body = serialize(read.data(), format);
+            cache.put(key, new Entry(read.version(), body));
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.getMediaType()).body(body);
+    }
+
+    // The JSON rows keep the plain version as their tag; the other formats add their name.
+    // Weak, because Tomcat does not compress a response with a strong tag: the gzipped bytes would differ from
+    // the ones tagged. The data is the same either way, which is all a weak tag promises.
+    private static String etag(long version, WireFormat format) {
+        String tag = Long.toHexString(version);
+        return "W/\"" + (format == WireFormat.JSON ? tag : tag + "-" + format.name().toLowerCase()) + "\"";
+    }
+
+    // If-None-Match holds a list of entity tags, possibly weak, or *. Compared weakly, as RFC 9110 asks for it.
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] serialize(Object data, WireFormat format) {
+        try {
+            return (format.isBinary() ? cborMapper : objectMapper).writeValueAsBytes(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize response", e);
+        }
+    }
+}
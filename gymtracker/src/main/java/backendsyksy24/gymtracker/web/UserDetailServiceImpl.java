@@ -8,20 +8,23 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import backendsyksy24.gymtracker.model.AppUser;
-import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.service.UserService;
 
 // Authenticates users by loading their details from the database and providing the necessary information for security checks.
 @Service
 public class UserDetailServiceImpl implements UserDetailsService  {
 	
 	@Autowired
-	AppUserRepository repository;
+	UserService userService;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {   
-    	AppUser curruser = repository.findByUsername(username);
-        UserDetails user = new org.springframework.security.core.userdetails.User(username, curruser.getPasswordHash(), 
+    	AppUser curruser = userService.findByUsername(username);
+        if (curruser == null) {
+            throw new UsernameNotFoundException("User not found: " + username);
+        }
+        UserDetails user = new AuthenticatedUser(curruser.getId(), username, curruser.getPasswordHash(), 
         		AuthorityUtils.createAuthorityList(curruser.getRole())); 
         return user;
     }   
-} 
+}
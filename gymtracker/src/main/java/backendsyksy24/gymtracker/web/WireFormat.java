@@ -0,0 +1,61 @@
+package backendsyksy24.gymtracker.web;
+
+import java.util.List;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+// The representations of the log, volume and dashboard responses, chosen by the Accept header. Rows are the plain
+// JSON shape, one object per set or day; columns write each field once as an array (see ColumnarLogsDTO). Either
+// shape can be encoded as JSON or as CBOR, which also writes numbers in binary. Anything else gets JSON rows.
+public enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, false),
+    CBOR(MediaType.APPLICATION_CBOR, false),
+    COLUMNAR_JSON(MediaType.valueOf("application/vnd.gymtracker.columnar+json"), true),
+    COLUMNAR_CBOR(MediaType.valueOf("application/vnd.gymtracker.columnar+cbor"), true);
+
+    private final MediaType mediaType;
+    private final boolean columnar;
+
+    WireFormat(MediaType mediaType, boolean columnar) {
+        this.mediaType = mediaType;
+        this.columnar = columnar;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public boolean isBinary() {
+        return this == CBOR || this == COLUMNAR_CBOR;
+    }
+
+    /* The format the Accept header prefers: the one with the highest quality among those it names exactly. */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null) {
+            return JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        WireFormat best = JSON;
+        double bestQuality = 0;
+        for (MediaType type : acceptable) {
+            for (WireFormat format : values()) {
+                if (format.mediaType.equalsTypeAndSubtype(type) && type.getQualityValue() > bestQuality) {
+                    best = format;
+                    bestQuality = type.getQualityValue();
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,25 @@
+package backendsyksy24.gymtracker.web;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+// Writes CBOR with the application's Jackson settings (dates as ISO strings like the JSON), for both CBOR formats
+// of WireFormat. The columnar JSON format is already handled by the JSON converter, as a +json type.
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        MappingJackson2CborHttpMessageConverter converter =
+                new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+        converter.setSupportedMediaTypes(List.of(WireFormat.CBOR.getMediaType(),
+                WireFormat.COLUMNAR_CBOR.getMediaType()));
+        return converter;
+    }
+}
@@ -0,0 +1,76 @@
+package backendsyksy24.gymtracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import backendsyksy24.gymtracker.util.JwtUtil;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+import backendsyksy24.gymtracker.web.PrincipalCache;
+import backendsyksy24.gymtracker.web.UserDetailServiceImpl;
+
+public class JwtRequestFilterTests {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final UserDetailServiceImpl userDetailsService = mock(UserDetailServiceImpl.class);
+    private final PrincipalCache principalCache = new PrincipalCache(100, Duration.ofMinutes(5));
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Claims mode authenticates from the token without a database lookup")
+    public void testClaimsModeSkipsLookup() throws Exception {
+        JwtRequestFilter filter = new JwtRequestFilter(jwtUtil, userDetailsService, principalCache, "claims");
+        String token = jwtUtil.generateToken("admin", 7L, "ROLE_ADMIN");
+
+        filter.doFilter(requestWithToken(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.getName()).isEqualTo("admin");
+        assertThat(authentication.getAuthorities()).extracting("authority").containsExactly("ROLE_ADMIN");
+        assertThat(((AuthenticatedUser) authentication.getPrincipal()).getId()).isEqualTo(7L);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    @DisplayName("Lookup mode loads the user once and then serves it from the principal cache")
+    public void testLookupModeUsesCache() throws Exception {
+        JwtRequestFilter filter = new JwtRequestFilter(jwtUtil, userDetailsService, principalCache, "lookup");
+        String token = jwtUtil.generateToken("user", 3L, "ROLE_USER");
+        when(userDetailsService.loadUserByUsername("user")).thenReturn(
+                new AuthenticatedUser(3L, "user", "hash", AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            filter.doFilter(requestWithToken(token), new MockHttpServletResponse(), new MockFilterChain());
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        }
+
+        verify(userDetailsService, times(1)).loadUserByUsername("user");
+    }
+
+    private MockHttpServletRequest requestWithToken(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1/exercises");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
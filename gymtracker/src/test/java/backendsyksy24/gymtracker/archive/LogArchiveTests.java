@@ -0,0 +1,300 @@
+package backendsyksy24.gymtracker.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.dto.PersonalRecordsDTO;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.DailyVolumeService;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.service.ExerciseService;
+import backendsyksy24.gymtracker.service.PersonalRecordService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LogArchiveTests {
+
+    private static final Path ARCHIVE_DIRECTORY;
+
+    static {
+        try {
+            ARCHIVE_DIRECTORY = Files.createTempDirectory("gymtracker-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("gymtracker.archive.directory", ARCHIVE_DIRECTORY::toString);
+        registry.add("gymtracker.archive.chunk-size", () -> "4");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LogArchive logArchive;
+
+    @Autowired
+    private LogArchiver logArchiver;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private ExerciseService exerciseService;
+
+    @Autowired
+    private DailyVolumeService dailyVolumeService;
+
+    @Autowired
+    private PersonalRecordService personalRecordService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+    private final LocalDateTime cutoff = LocalDate.now().minusDays(365).atStartOfDay();
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("archived" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        exercise = exerciseRepository.save(new Exercise("Deadlift", "Back exercise", appUser));
+        List<ExerciseLog> logs = new ArrayList<>();
+        // Ten old sets, the heaviest at 5 reps among them, and five recent ones
+        for (int i = 0; i < 10; i++) {
+            logs.add(new ExerciseLog(exercise, cutoff.minusDays(30 + i).plusHours(18), i == 3 ? 200 : 100 + i, 5));
+        }
+        for (int i = 0; i < 5; i++) {
+            logs.add(new ExerciseLog(exercise, LocalDateTime.now().minusDays(i), 150, 5));
+        }
+        exerciseLogService.saveAll(logs);
+    }
+
+    @Test
+    @DisplayName("Move old logs to the archive and read them back through the log endpoints")
+    public void testArchiveAndRead() throws Exception {
+        // Act
+        long archived = logArchiver.archiveUser(appUser.getId(), cutoff);
+
+        // Assert: old rows left the database, the rollup still counts them
+        assertThat(archived).isEqualTo(10);
+        assertThat(count("select count(*) from exercise_log_table where exercise_id = ?")).isEqualTo(5);
+        assertThat(count("select count(*) from exercise_daily_volume_table where exercise_id = ?")).isEqualTo(15);
+        assertThat(logArchive.countByExercise(appUser.getId())).containsEntry(exercise.getId(), 10);
+
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(15));
+
+        // Pages walk from the database into the archive without gaps or repeats
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        LocalDateTime previous = LocalDateTime.MAX;
+        do {
+            MvcResult result = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                    .param("limit", "4").param("cursor", cursor).with(user(principal)))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            for (JsonNode log : objectMapper.readTree(result.getResponse().getContentAsString())) {
+                LocalDateTime timestamp = LocalDateTime.parse(log.get("timestamp").asText());
+                assertThat(timestamp).isBeforeOrEqualTo(previous);
+                previous = timestamp;
+                ids.add(log.get("id").asLong());
+            }
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        } while (cursor != null);
+        assertThat(ids).hasSize(15).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Merge backdated logs in the database with archived logs that are newer")
+    public void testBackdatedLogs() throws Exception {
+        // Arrange: history imported after the archive run, older than every archived log
+        logArchiver.archiveUser(appUser.getId(), cutoff);
+        List<ExerciseLog> imported = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            imported.add(new ExerciseLog(exercise, cutoff.minusYears(3).plusDays(i), 80, 8));
+        }
+        exerciseLogService.saveAll(imported);
+
+        // Act & Assert: the full list is oldest first, the imported logs before the archived ones
+        String all = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(20))
+                .andReturn().getResponse().getContentAsString();
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        objectMapper.readTree(all).forEach(log -> timestamps.add(LocalDateTime.parse(log.get("timestamp").asText())));
+        assertThat(timestamps).isSorted();
+        assertThat(timestamps.get(0)).isEqualTo(cutoff.minusYears(3));
+
+        // Full pages from the database do not skip the archived logs between them
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            MvcResult result = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                    .param("limit", "4").param("cursor", cursor).with(user(principal)))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            objectMapper.readTree(result.getResponse().getContentAsString())
+                    .forEach(log -> ids.add(log.get("id").asLong()));
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        } while (cursor != null);
+        assertThat(ids).hasSize(20).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Page a sync snapshot through archived and database sets in id order")
+    public void testSnapshotPages() throws Exception {
+        // Arrange
+        logArchiver.archiveUser(appUser.getId(), cutoff);
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, cutoff.minusYears(3), 80, 8),
+                new ExerciseLog(exercise, cutoff.minusYears(3).plusDays(1), 80, 8)));
+
+        // Act
+        List<Long> ids = new ArrayList<>();
+        Long since = null;
+        Long after = null;
+        boolean more;
+        do {
+            var request = get("/api/users/{userId}/changes", appUser.getId()).param("limit", "4")
+                    .with(user(principal));
+            if (after != null) {
+                request.param("since", since.toString()).param("after", after.toString());
+            }
+            JsonNode page = objectMapper.readTree(mockMvc.perform(request).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            page.get("changes").forEach(change -> {
+                if (change.get("type").asText().equals("log")) {
+                    ids.add(change.get("id").asLong());
+                }
+            });
+            since = page.get("cursor").asLong();
+            after = page.has("after") ? page.get("after").asLong() : null;
+            more = page.get("more").asBoolean();
+        } while (more);
+
+        // Assert
+        assertThat(ids).hasSize(17).doesNotHaveDuplicates().isSorted();
+        assertThat(logArchive.countByExercise(appUser.getId())).containsEntry(exercise.getId(), 10);
+    }
+
+    @Test
+    @DisplayName("Export archived, recent and backdated sets once each, oldest first")
+    public void testExport() throws Exception {
+        // Arrange: two sets imported after the archive run, older than every archived one
+        logArchiver.archiveUser(appUser.getId(), cutoff);
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, cutoff.minusYears(3), 80, 8),
+                new ExerciseLog(exercise, cutoff.minusYears(3).plusDays(1), 80, 8)));
+
+        // Act
+        MvcResult started = mockMvc.perform(get("/api/users/{userId}/export", appUser.getId()).with(user(principal)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String csv = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert: a header and seventeen rows, the two imported ones first
+        List<String> rows = csv.lines().skip(1).toList();
+        assertThat(rows).hasSize(17);
+        assertThat(LocalDateTime.parse(rows.get(0).split(",")[3])).isEqualTo(cutoff.minusYears(3));
+        assertThat(rows.stream().map(row -> row.split(",")[2])).doesNotHaveDuplicates();
+        assertThat(rows.stream().map(row -> LocalDateTime.parse(row.split(",")[3])).toList()).isSorted();
+    }
+
+    @Test
+    @DisplayName("Keep archived logs read-only and count them when rebuilding the rollup and records")
+    public void testArchivedLogsInRebuild() throws Exception {
+        // Arrange
+        logArchiver.archiveUser(appUser.getId(), cutoff);
+        Long archivedId = logArchive.findByExerciseId(exercise.getId()).get(0).getId();
+
+        // Act
+        mockMvc.perform(delete("/api/exercises/{exerciseId}/logs/{logId}", exercise.getId(), archivedId)
+                .with(user(principal)).with(csrf()))
+                .andExpect(status().isConflict());
+        dailyVolumeService.rebuild(exercise.getId());
+
+        // Assert
+        assertThat(count("select count(*) from exercise_daily_volume_table where exercise_id = ?")).isEqualTo(15);
+        PersonalRecordsDTO records = personalRecordService.getRecords(exercise.getId()).get();
+        assertThat(records.getRepMaxes()).extracting(repMax -> repMax.getWeight()).containsExactly(200);
+        assertThat(records.getBestE1rm().getTimestamp()).isBefore(cutoff);
+    }
+
+    @Test
+    @DisplayName("Drop the archived logs of a purged exercise")
+    public void testPurge() throws Exception {
+        // Arrange
+        logArchiver.archiveUser(appUser.getId(), cutoff);
+
+        // Act: the purge runs in the background
+        exerciseService.deleteExercise(exercise);
+        for (int i = 0; i < 100 && count("select count(*) from exercise_table where id = ?") > 0; i++) {
+            Thread.sleep(50);
+        }
+
+        // Assert
+        assertThat(count("select count(*) from exercise_table where id = ?")).isZero();
+        assertThat(logArchive.countByExercise(appUser.getId())).doesNotContainKey(exercise.getId());
+        assertThat(logArchive.findByExerciseId(exercise.getId())).isEmpty();
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class, exercise.getId());
+    }
+}
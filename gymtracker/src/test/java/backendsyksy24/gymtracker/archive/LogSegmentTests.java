@@ -0,0 +1,214 @@
+package backendsyksy24.gymtracker.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+
+public class LogSegmentTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, 3, 1, 17, 30, 12, 345_678_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Read back every column of the written logs, oldest first")
+    public void testRoundTrip() throws Exception {
+        // Arrange
+        List<ExerciseLog> bench = logs(1L, 1000, 300);
+        List<ExerciseLog> squat = logs(2L, 5000, 20);
+        Path path = directory.resolve("user-1.seg");
+
+        // Act
+        LogSegment.write(path, Map.of(1L, reversed(bench), 2L, squat));
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+
+        // Assert
+        assertThat(segment.getExerciseIds()).containsExactly(1L, 2L);
+        assertThat(segment.read(1L)).usingRecursiveFieldByFieldElementComparatorIgnoringFields("exercise")
+                .containsExactlyElementsOf(bench);
+        assertThat(segment.read(2L)).extracting(log -> log.getExercise().getId()).containsOnly(2L);
+        assertThat(segment.getLogCount(2L)).isEqualTo(20);
+        assertThat(segment.read(3L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Stream the logs of an exercise without decoding them into a list")
+    public void testForEach() throws Exception {
+        // Arrange
+        List<ExerciseLog> bench = logs(1L, 1000, 300);
+        Path path = directory.resolve("user-5.seg");
+        LogSegment.write(path, Map.of(1L, reversed(bench)));
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+
+        // Act
+        List<ExerciseLogDTO> streamed = new ArrayList<>();
+        segment.forEach(1L, streamed::add);
+
+        // Assert
+        assertThat(streamed).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(bench.stream().map(log -> new ExerciseLogDTO(log.getId(),
+                        log.getTimestamp(), log.getWeight(), log.getReps())).toList());
+        assertThat(segment.readIds(1L)).isSorted().containsExactly(bench.stream().mapToLong(ExerciseLog::getId)
+                .toArray());
+        assertThat(segment.readIds(2L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Append a block by copying the existing ones, and read both blocks merged oldest first")
+    public void testAppend() throws Exception {
+        // Arrange: the sets of alternate days in two blocks, so their rows interleave
+        List<ExerciseLog> bench = logs(1L, 1000, 300);
+        List<ExerciseLog> even = new ArrayList<>();
+        List<ExerciseLog> odd = new ArrayList<>();
+        for (int i = 0; i < bench.size(); i++) {
+            (i % 2 == 0 ? even : odd).add(bench.get(i));
+        }
+        Path basePath = directory.resolve("user-6.seg");
+        LogSegment.write(basePath, Map.of(1L, even, 2L, logs(2L, 5000, 20)));
+        LogSegment base = LogSegment.open(basePath, Files.readAttributes(basePath, BasicFileAttributes.class));
+        Path path = directory.resolve("user-6.tmp");
+
+        // Act: exercise 2 is dropped
+        LogSegment.write(path, base, Set.of(1L), Map.of(1L, odd));
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+
+        // Assert
+        assertThat(segment.getExerciseIds()).containsExactly(1L);
+        assertThat(segment.getLogCount(1L)).isEqualTo(300);
+        assertThat(segment.read(1L)).usingRecursiveFieldByFieldElementComparatorIgnoringFields("exercise")
+                .containsExactlyElementsOf(bench);
+        assertThat(segment.read(1L, START.plusDays(10), START.plusDays(19))).extracting(ExerciseLog::getTimestamp)
+                .isSorted().hasSize(10);
+        List<ExerciseLogDTO> streamed = new ArrayList<>();
+        segment.forEach(1L, streamed::add);
+        assertThat(streamed).extracting(ExerciseLogDTO::getId)
+                .containsExactlyElementsOf(bench.stream().map(ExerciseLog::getId).toList());
+        assertThat(segment.readIds(1L)).isSorted().hasSize(300);
+        assertThat(segment.contains(1L, odd.get(7).getId())).isTrue();
+        assertThat(segment.contains(1L, even.get(7).getId())).isTrue();
+        assertThat(segment.contains(1L, even.get(7).getId() + 1)).isFalse();
+        assertThat(segment.contains(2L, 5000)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Page newest first and by id across interleaved blocks")
+    public void testPages() throws Exception {
+        // Arrange: three blocks, each with every third day
+        List<ExerciseLog> bench = logs(1L, 1000, 300);
+        List<List<ExerciseLog>> parts = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; i < bench.size(); i++) {
+            parts.get(i % 3).add(bench.get(i));
+        }
+        Path path = directory.resolve("user-7.seg");
+        LogSegment.write(path, Map.of(1L, parts.get(0)));
+        for (int part = 1; part < 3; part++) {
+            LogSegment base = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+            Path next = directory.resolve("user-7." + part);
+            LogSegment.write(next, base, Set.of(1L), Map.of(1L, parts.get(part)));
+            Files.move(next, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+        List<ExerciseLog> newestFirst = reversed(bench);
+
+        // Act
+        List<ExerciseLog> first = segment.readPage(1L, START.minusYears(1), START.plusYears(5), Long.MAX_VALUE, 10);
+        ExerciseLog last = first.get(first.size() - 1);
+        List<ExerciseLog> second = segment.readPage(1L, START.minusYears(1), last.getTimestamp(), last.getId(), 10);
+        List<ExerciseLog> bounded = segment.readPage(1L, START.plusDays(295), START.plusYears(5), Long.MAX_VALUE,
+                10);
+        List<ExerciseLog> afterIds = segment.readAfter(List.of(1L, 2L), bench.get(20).getId(), 7);
+
+        // Assert
+        assertThat(first).extracting(ExerciseLog::getId)
+                .containsExactlyElementsOf(newestFirst.subList(0, 10).stream().map(ExerciseLog::getId).toList());
+        assertThat(second).extracting(ExerciseLog::getId)
+                .containsExactlyElementsOf(newestFirst.subList(10, 20).stream().map(ExerciseLog::getId).toList());
+        assertThat(bounded).hasSize(5);
+        assertThat(afterIds).extracting(ExerciseLog::getId)
+                .containsExactlyElementsOf(bench.subList(21, 28).stream().map(ExerciseLog::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Read a time range and skip blocks outside it")
+    public void testRange() throws Exception {
+        // Arrange
+        Path path = directory.resolve("user-2.seg");
+        LogSegment.write(path, Map.of(1L, logs(1L, 1, 100)));
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+
+        // Act
+        List<ExerciseLog> range = segment.read(1L, START.plusDays(10), START.plusDays(19));
+
+        // Assert
+        assertThat(range).hasSize(10);
+        assertThat(range.get(0).getTimestamp()).isEqualTo(START.plusDays(10));
+        assertThat(segment.read(1L, START.minusYears(2), START.minusYears(1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Store a log in a few bytes")
+    public void testCompression() throws Exception {
+        // Arrange
+        Path path = directory.resolve("user-3.seg");
+
+        // Act
+        LogSegment.write(path, Map.of(1L, logs(1L, 1_000_000, 10_000)));
+
+        // Assert: an id, a timestamp and two ints take 24 bytes uncompressed
+        assertThat(Files.size(path)).isLessThan(10_000 * 4);
+    }
+
+    @Test
+    @DisplayName("Notice that the file was replaced")
+    public void testIsCurrent() throws Exception {
+        // Arrange
+        Path path = directory.resolve("user-4.seg");
+        Path replacement = directory.resolve("user-4.tmp");
+        LogSegment.write(path, Map.of(1L, logs(1L, 1, 5)));
+        LogSegment segment = LogSegment.open(path, Files.readAttributes(path, BasicFileAttributes.class));
+
+        // Act
+        LogSegment.write(replacement, Map.of(1L, logs(1L, 1, 6)));
+        Files.move(replacement, path, StandardCopyOption.REPLACE_EXISTING);
+
+        // Assert
+        assertThat(segment.isCurrent(Files.readAttributes(path, BasicFileAttributes.class))).isFalse();
+    }
+
+    // One set a day with varying weight and reps; ids grow with a few gaps
+    private List<ExerciseLog> logs(Long exerciseId, long firstId, int count) {
+        Exercise exercise = new Exercise();
+        exercise.setId(exerciseId);
+        List<ExerciseLog> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ExerciseLog log = new ExerciseLog(exercise, START.plusDays(i), 60 + (i * 7) % 90, 1 + i % 12);
+            log.setId(firstId + i * 3L);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private List<ExerciseLog> reversed(List<ExerciseLog> logs) {
+        List<ExerciseLog> reversed = new ArrayList<>(logs);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+}
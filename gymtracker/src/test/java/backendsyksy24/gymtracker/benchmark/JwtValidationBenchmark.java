@@ -0,0 +1,77 @@
+package backendsyksy24.gymtracker.benchmark;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import backendsyksy24.gymtracker.util.JwtUtil;
+import backendsyksy24.gymtracker.util.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/*
+ * Compares the per-request cost of JWT validation in JwtRequestFilter:
+ * - legacyPath: a new parser per call and three signature verifications (extractUsername, then validateToken)
+ * - singleParse: one verification with the shared parser into a VerifiedToken
+ *
+ * Run with:
+ *   mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtValidationBenchmark
+ *
+ * The profile enables the GC profiler, whose gc.alloc.rate.norm is the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtValidationBenchmark {
+
+    private Key key;
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        jwtUtil = new JwtUtil(key);
+        token = jwtUtil.generateToken("admin", 1L, "ROLE_ADMIN");
+    }
+
+    @Benchmark
+    public void legacyPath(Blackhole blackhole) {
+        String username = legacyClaims().getSubject();
+        // validateToken extracted the username and the expiration again, each with a new parser
+        boolean valid = legacyClaims().getSubject().equals(username)
+                && !legacyClaims().getExpiration().before(new Date());
+        blackhole.consume(valid);
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole blackhole) {
+        VerifiedToken verified = jwtUtil.verify(token);
+        blackhole.consume(jwtUtil.validateToken(verified, verified.getSubject()));
+    }
+
+    private Claims legacyClaims() {
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
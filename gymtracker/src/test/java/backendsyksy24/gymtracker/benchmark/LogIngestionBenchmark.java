@@ -0,0 +1,95 @@
+package backendsyksy24.gymtracker.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import backendsyksy24.gymtracker.GymtrackerApplication;
+import backendsyksy24.gymtracker.controller.ExerciseController;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+
+/*
+ * Rows per second for storing a workout of WORKOUT_SETS sets:
+ * - perSet: one addExerciseLog call per set, as the frontend does today (one transaction and insert each)
+ * - batch: one addExerciseLogs call for the whole workout (one transaction, JDBC batched inserts)
+ *
+ * Runs the application against in-memory H2, so it measures the persistence path without network latency.
+ * Against MySQL every per-set call also pays a network round trip, which widens the gap.
+ *
+ * Run with:
+ *   mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LogIngestionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogIngestionBenchmark {
+
+    private static final int WORKOUT_SETS = 30;
+
+    private ConfigurableApplicationContext context;
+    private ExerciseController controller;
+    private Long exerciseId;
+
+    @Setup
+    public void setup() {
+        // Command line arguments override the profile set in application.properties
+        context = new SpringApplicationBuilder(GymtrackerApplication.class)
+                .run("--spring.profiles.active=test", "--server.port=0", "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        controller = context.getBean(ExerciseController.class);
+        AppUser user = context.getBean(AppUserRepository.class).save(new AppUser("benchmark", "password", "USER"));
+        exerciseId = context.getBean(ExerciseRepository.class).save(new Exercise("Bench Press", "", user)).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORKOUT_SETS)
+    public void perSet() {
+        for (ExerciseLog set : workout()) {
+            controller.addExerciseLog(exerciseId, set);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORKOUT_SETS)
+    public void batch() {
+        controller.addExerciseLogs(exerciseId, workout());
+    }
+
+    private List<ExerciseLog> workout() {
+        List<ExerciseLog> sets = new ArrayList<>(WORKOUT_SETS);
+        for (int i = 0; i < WORKOUT_SETS; i++) {
+            ExerciseLog set = new ExerciseLog();
+            set.setWeight(100);
+            set.setReps(5);
+            sets.add(set);
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,96 @@
+package backendsyksy24.gymtracker.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.GymtrackerApplication;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+
+/*
+ * Time to read and serialize the full log of an exercise with LOGS sets, as GET /api/exercises/{id}/logs does:
+ * - entities: ExerciseLog entities, each one hydrated, registered in the persistence context and snapshotted
+ * - projection: ExerciseLogDTOs built straight from the result set, which is what the endpoint now reads
+ *
+ * The benchmark profile runs with -prof gc, so gc.alloc.rate.norm gives the allocation per read as well.
+ *
+ * Run with:
+ *   mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LogReadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LogReadBenchmark {
+
+    private static final int LOGS = 100_000;
+    private static final int CHUNK = 5_000;
+
+    private ConfigurableApplicationContext context;
+    private ExerciseLogRepository exerciseLogRepository;
+    private ObjectMapper objectMapper;
+    private Long exerciseId;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(GymtrackerApplication.class)
+                .run("--spring.profiles.active=test", "--server.port=0", "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        exerciseLogRepository = context.getBean(ExerciseLogRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        AppUser user = context.getBean(AppUserRepository.class).save(new AppUser("benchmark", "password", "USER"));
+        Exercise exercise = context.getBean(ExerciseRepository.class).save(new Exercise("Bench Press", "", user));
+        exerciseId = exercise.getId();
+
+        ExerciseLogService exerciseLogService = context.getBean(ExerciseLogService.class);
+        LocalDateTime start = LocalDateTime.now().minusMinutes(LOGS);
+        for (int saved = 0; saved < LOGS; saved += CHUNK) {
+            List<ExerciseLog> chunk = new ArrayList<>(CHUNK);
+            for (int i = saved; i < saved + CHUNK; i++) {
+                chunk.add(new ExerciseLog(exercise, start.plusMinutes(i), 60 + i % 80, 1 + i % 12));
+            }
+            exerciseLogService.saveAll(chunk);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String entities() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(exerciseLogRepository.findByExerciseId(exerciseId));
+    }
+
+    @Benchmark
+    public String projection() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(exerciseLogRepository.findDtosByExerciseId(exerciseId));
+    }
+}
@@ -0,0 +1,124 @@
+package backendsyksy24.gymtracker.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import backendsyksy24.gymtracker.GymtrackerApplication;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.util.JwtUtil;
+
+/*
+ * Throughput and latency percentiles of GET /api/exercises/{id}/logs?limit=20 under CLIENTS concurrent clients,
+ * with requests handled on Tomcat's platform threads or on virtual threads (spring.threads.virtual.enabled):
+ * - virtual=false: at most server.tomcat.threads.max (200) requests run at once, the rest wait for a thread
+ * - virtual=true: every request has its own thread and waits for a connection from the pool of poolSize instead
+ *
+ * The server runs in the benchmark process on a random port, against the test profile's in-memory H2. There the
+ * queries hardly block, which understates the difference; to measure against MySQL, start the dev profile's
+ * database and set the profile parameter to dev. Sample time reports the p0.99 latency.
+ *
+ * Virtual threads need Java 21, so run on a JDK 21 with:
+ *   mvn -Pjava21,benchmark test-compile exec:exec -Dbenchmark=RequestThreadsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(RequestThreadsBenchmark.CLIENTS)
+@Fork(1)
+public class RequestThreadsBenchmark {
+
+    static final int CLIENTS = 1024;
+    private static final int LOGS = 1_000;
+
+    @Param({"false", "true"})
+    private boolean virtual;
+
+    @Param("50")
+    private int poolSize;
+
+    @Param("test")
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() {
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, this is " + Runtime.version());
+        }
+        context = new SpringApplicationBuilder(GymtrackerApplication.class)
+                .run("--spring.profiles.active=" + profile, "--server.port=0", "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN", "--spring.threads.virtual.enabled=" + virtual,
+                        "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        "--server.tomcat.max-connections=" + 2 * CLIENTS);
+        AppUser user = context.getBean(AppUserRepository.class)
+                .save(new AppUser("load" + System.nanoTime(), "password", "USER"));
+        Exercise exercise = context.getBean(ExerciseRepository.class).save(new Exercise("Bench Press", "", user));
+        List<ExerciseLog> logs = new ArrayList<>(LOGS);
+        LocalDateTime start = LocalDateTime.now().minusDays(LOGS);
+        for (int i = 0; i < LOGS; i++) {
+            logs.add(new ExerciseLog(exercise, start.plusDays(i), 60 + i % 80, 1 + i % 12));
+        }
+        context.getBean(ExerciseLogService.class).saveAll(logs);
+
+        String token = context.getBean(JwtUtil.class).generateToken(user.getUsername(), user.getId(), "ROLE_USER");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/exercises/"
+                        + exercise.getId() + "/logs?limit=20"))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int logPage() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,96 @@
+package backendsyksy24.gymtracker.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import backendsyksy24.gymtracker.dto.ColumnarLogsDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.web.WireFormat;
+
+/*
+ * Size and serialization time of the full log of an exercise with LOGS sets (GET /api/exercises/{id}/logs) in each
+ * WireFormat: four sets a session every other day or so, as stored (to the second), with random weights and reps.
+ * - serialize: building the columns if the format has them, and writing the bytes
+ * - gzip: the same, then compressed as server.compression does for the response
+ *
+ * The sizes are printed at setup. With 10 000 sets (size, then serialize / gzip time per response):
+ *   JSON           689 KB, 109 KB gzipped   1.1 ms / 17.8 ms
+ *   CBOR           464 KB,  95 KB gzipped   0.8 ms /  9.5 ms
+ *   COLUMNAR_JSON  162 KB,  44 KB gzipped   0.4 ms / 14.6 ms
+ *   COLUMNAR_CBOR   95 KB,  44 KB gzipped   0.2 ms /  5.4 ms
+ * Compression takes most of the time, and a body from ResponseCache still has it to pay.
+ *
+ * Run with:
+ *   mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WireFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final int LOGS = 10_000;
+    private static final int SETS_PER_SESSION = 4;
+
+    @Param({"JSON", "CBOR", "COLUMNAR_JSON", "COLUMNAR_CBOR"})
+    private WireFormat format;
+
+    private List<ExerciseLogDTO> logs;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() throws IOException {
+        // The application's Jackson settings, as in WireFormatConfig
+        mapper = format.isBinary() ? Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()
+                : Jackson2ObjectMapperBuilder.json().build();
+        Random random = new Random(42);
+        logs = new ArrayList<>(LOGS);
+        LocalDateTime timestamp = LocalDateTime.of(2020, 1, 6, 17, 30);
+        long id = 1_000_000;
+        for (int i = 0; i < LOGS; i++) {
+            timestamp = i % SETS_PER_SESSION == 0 ? timestamp.plusDays(1 + random.nextInt(3))
+                    : timestamp.plusSeconds(90 + random.nextInt(180));
+            id += 1 + random.nextInt(50);
+            logs.add(new ExerciseLogDTO(id, timestamp, 60 + random.nextInt(80), 1 + random.nextInt(12)));
+        }
+        System.out.printf("%n%s: %d bytes, %d gzipped%n", format, serialize().length, gzip().length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(format.isColumnar() ? ColumnarLogsDTO.of(logs) : logs);
+    }
+
+    @Benchmark
+    public byte[] gzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(serialize());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package backendsyksy24.gymtracker.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.cache.CacheManager;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+// Runs without the test transaction: the cache is filled and invalidated when transactions commit
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(SecondLevelCacheConfig.class)
+public class SecondLevelCacheTests {
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager hibernateCacheManager;
+
+    @Autowired
+    private MeterBinder hibernateCacheMetrics;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Serve exercise and user lookups from the cache")
+    public void testLookupsHitCache() {
+        // Arrange
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        hibernateCacheMetrics.bindTo(meterRegistry);
+        AppUser user = appUserRepository.save(new AppUser("cacheuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        entityManagerFactory.getCache().evictAll();
+
+        // Act
+        exerciseRepository.findById(bench.getId());
+        exerciseRepository.findById(bench.getId());
+        exerciseRepository.findByUserId(user.getId());
+        List<Exercise> cached = exerciseRepository.findByUserId(user.getId());
+        appUserRepository.findByUsername("cacheuser");
+        AppUser cachedUser = appUserRepository.findByUsername("cacheuser");
+
+        // Assert
+        assertThat(cached).extracting(Exercise::getName).containsExactly("Bench Press");
+        assertThat(cachedUser.getId()).isEqualTo(user.getId());
+        assertThat(hits(meterRegistry, SecondLevelCacheConfig.EXERCISE_REGION)).isGreaterThanOrEqualTo(2);
+        assertThat(hits(meterRegistry, "default-query-results-region")).isEqualTo(2);
+        assertThat(hibernateCacheManager.getCache(SecondLevelCacheConfig.USER_REGION)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Drop cached exercises and queries when exercises are updated or deleted")
+    public void testInvalidation() {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("invalidateuser", "password", "USER"));
+        Exercise squat = exerciseRepository.save(new Exercise("Squat", "Leg exercise", user));
+        assertThat(exerciseRepository.findByUserId(user.getId())).hasSize(1);
+
+        // Act: rename, then soft delete with a bulk update
+        squat.setName("Front Squat");
+        exerciseRepository.save(squat);
+        List<Exercise> renamed = exerciseRepository.findByUserId(user.getId());
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> exerciseRepository.markDeleted(squat.getId(), LocalDateTime.now()));
+
+        // Assert
+        assertThat(renamed).extracting(Exercise::getName).containsExactly("Front Squat");
+        assertThat(exerciseRepository.findById(squat.getId())).isEmpty();
+        assertThat(exerciseRepository.findByUserId(user.getId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Keep cached users when a native write touches only the exercise table")
+    public void testNativeWriteKeepsOtherRegions() {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("keptuser", "password", "USER"));
+        Exercise deadlift = exerciseRepository.save(new Exercise("Deadlift", "Back exercise", user));
+        appUserRepository.findById(user.getId());
+        assertThat(entityManagerFactory.getCache().contains(AppUser.class, user.getId())).isTrue();
+
+        // Act
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            exerciseRepository.markDeleted(deadlift.getId(), LocalDateTime.now());
+            exerciseRepository.purgeDeleted(deadlift.getId());
+        });
+
+        // Assert
+        assertThat(entityManagerFactory.getCache().contains(AppUser.class, user.getId())).isTrue();
+        assertThat(entityManagerFactory.getCache().contains(Exercise.class, deadlift.getId())).isFalse();
+    }
+
+    private double hits(MeterRegistry meterRegistry, String region) {
+        return meterRegistry.get("cache.gets").tag("cache", region).tag("result", "hit").functionCounter().count();
+    }
+}
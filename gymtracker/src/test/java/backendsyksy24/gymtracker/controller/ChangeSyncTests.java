@@ -0,0 +1,206 @@
+package backendsyksy24.gymtracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ChangeLogCompactor;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ChangeSyncTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private ChangeLogCompactor changeLogCompactor;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("sync" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, LocalDateTime.now().minusDays(1), 100, 5),
+                new ExerciseLog(exercise, LocalDateTime.now(), 105, 3)));
+    }
+
+    @Test
+    @DisplayName("Start from a snapshot, then receive only the saves and tombstones written since the cursor")
+    public void testSnapshotThenDelta() throws Exception {
+        // Act
+        JsonNode snapshot = objectMapper.readTree(sync(null, null).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        // Assert: the exercise and both sets, with the position after the two saved sets
+        assertThat(snapshot.get("snapshot").asBoolean()).isTrue();
+        assertThat(snapshot.get("changes")).hasSize(3);
+        assertThat(snapshot.get("changes").get(0).get("type").asText()).isEqualTo("exercise");
+        long cursor = snapshot.get("cursor").asLong();
+        assertThat(cursor).isEqualTo(2);
+
+        // Act: a rename, a new set and a deleted set
+        mockMvc.perform(put("/api/users/{userId}/exercises/{exerciseId}", appUser.getId(), exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Incline Bench\",\"description\":\"Upper chest\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"weight\":110,\"reps\":2}"))
+                .andExpect(status().isOk());
+        Long deletedLogId = snapshot.get("changes").get(1).get("id").asLong();
+        mockMvc.perform(delete("/api/exercises/{exerciseId}/logs/{logId}", exercise.getId(), deletedLogId)
+                .with(user(principal)).with(csrf()))
+                .andExpect(status().isOk());
+
+        // Assert: only the three changes, in order, in pages of two
+        sync(cursor, 2).andExpect(status().isOk())
+                .andExpect(jsonPath("$.snapshot").value(false))
+                .andExpect(jsonPath("$.more").value(true))
+                .andExpect(jsonPath("$.cursor").value(cursor + 2))
+                .andExpect(jsonPath("$.changes.length()").value(2))
+                .andExpect(jsonPath("$.changes[0].type").value("exercise"))
+                .andExpect(jsonPath("$.changes[0].name").value("Incline Bench"))
+                .andExpect(jsonPath("$.changes[1].type").value("log"))
+                .andExpect(jsonPath("$.changes[1].weight").value(110))
+                .andExpect(jsonPath("$.changes[1].exerciseId").value(exercise.getId()));
+        sync(cursor + 2, 2).andExpect(status().isOk())
+                .andExpect(jsonPath("$.more").value(false))
+                .andExpect(jsonPath("$.cursor").value(cursor + 3))
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].id").value(deletedLogId))
+                .andExpect(jsonPath("$.changes[0].deleted").value(true))
+                .andExpect(jsonPath("$.changes[0].weight").doesNotExist());
+        sync(cursor + 3, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(cursor + 3))
+                .andExpect(jsonPath("$.changes.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Send a deleted exercise as one tombstone, and refuse cursors from before a compaction")
+    public void testTombstoneAndCompaction() throws Exception {
+        // Arrange
+        mockMvc.perform(delete("/api/users/{userId}/exercises/{exerciseId}", appUser.getId(), exercise.getId())
+                .with(user(principal)).with(csrf()))
+                .andExpect(status().isOk());
+        sync(2L, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].type").value("exercise"))
+                .andExpect(jsonPath("$.changes[0].deleted").value(true));
+
+        // Act
+        changeLogCompactor.compactAll(LocalDateTime.now().plusMinutes(1));
+
+        // Assert: old cursors have to start over, current ones carry on, and a snapshot still works
+        sync(0L, null).andExpect(status().isGone());
+        sync(2L, null).andExpect(status().isGone());
+        sync(3L, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(0));
+        sync(4L, null).andExpect(status().isGone());
+        sync(null, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(3))
+                .andExpect(jsonPath("$.changes.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Page through a snapshot with the first page's cursor, then sync what changed meanwhile")
+    public void testSnapshotPages() throws Exception {
+        // Act
+        JsonNode first = objectMapper.readTree(sync(null, null, 1).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        long cursor = first.get("cursor").asLong();
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, LocalDateTime.now(), 110, 2)));
+        JsonNode second = objectMapper.readTree(sync(cursor, first.get("after").asLong(), 1)
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        JsonNode third = objectMapper.readTree(sync(cursor, second.get("after").asLong(), 1)
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+
+        // Assert: the exercise only on the first page, a set per page, and the cursor of the first page throughout
+        assertThat(first.get("snapshot").asBoolean()).isTrue();
+        assertThat(first.get("more").asBoolean()).isTrue();
+        assertThat(first.get("changes")).hasSize(2);
+        assertThat(first.get("changes").get(0).get("type").asText()).isEqualTo("exercise");
+        assertThat(second.get("snapshot").asBoolean()).isTrue();
+        assertThat(second.get("cursor").asLong()).isEqualTo(cursor);
+        assertThat(second.get("changes")).hasSize(1);
+        assertThat(second.get("changes").get(0).get("id").asLong())
+                .isGreaterThan(first.get("changes").get(1).get("id").asLong());
+        assertThat(third.get("more").asBoolean()).isFalse();
+        assertThat(third.has("after")).isFalse();
+        assertThat(third.get("changes").get(0).get("weight").asInt()).isEqualTo(110);
+        sync(cursor, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$.snapshot").value(false))
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].weight").value(110));
+        sync(null, 1L, 1).andExpect(status().isBadRequest());
+    }
+
+    private ResultActions sync(Long since, Integer limit) throws Exception {
+        return sync(since, null, limit);
+    }
+
+    private ResultActions sync(Long since, Long after, Integer limit) throws Exception {
+        var request = get("/api/users/{userId}/changes", appUser.getId()).with(user(principal));
+        if (since != null) {
+            request.param("since", since.toString());
+        }
+        if (after != null) {
+            request.param("after", after.toString());
+        }
+        if (limit != null) {
+            request.param("limit", limit.toString());
+        }
+        return mockMvc.perform(request);
+    }
+}
@@ -9,24 +9,38 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.dto.ExerciseDTO;
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.dto.PersonalRecordsDTO;
+import backendsyksy24.gymtracker.dto.RecordSetDTO;
 import backendsyksy24.gymtracker.model.AppUser;
 import backendsyksy24.gymtracker.model.Exercise;
 import backendsyksy24.gymtracker.model.ExerciseLog;
 import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
 import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
 import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.service.PersonalRecordService;
+import backendsyksy24.gymtracker.service.PurgeService;
+import backendsyksy24.gymtracker.util.LogCursor;
 import java.util.Optional;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -35,6 +49,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
@@ -55,6 +70,18 @@ public class ExerciseControllerTests {
     @MockBean
     private AppUserRepository appUserRepository;
 
+    @MockBean
+    private ExerciseDailyVolumeRepository dailyVolumeRepository;
+
+    @MockBean
+    private ExerciseLogService exerciseLogService;
+
+    @MockBean
+    private PersonalRecordService personalRecordService;
+
+    @MockBean
+    private PurgeService purgeService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -68,9 +95,12 @@ public class ExerciseControllerTests {
         user.setId(userId);
 
         Exercise exercise = new Exercise("Bench Press", "Chest exercise", user);
+        Exercise saved = new Exercise("Bench Press", "Chest exercise", user);
+        saved.setId(10L);
 
         when(appUserRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(exerciseRepository.save(ArgumentMatchers.any(Exercise.class))).thenReturn(exercise);
+        when(appUserRepository.lockById(userId)).thenReturn(userId);
+        when(exerciseRepository.save(ArgumentMatchers.any(Exercise.class))).thenReturn(saved);
 
         // Act & Assert
         mockMvc.perform(post("/api/users/{userId}/exercises", userId)
@@ -82,6 +112,7 @@ public class ExerciseControllerTests {
 
         // Verify interactions
         verify(appUserRepository, times(1)).findById(userId);
+        verify(appUserRepository, times(1)).lockById(userId);
         verify(exerciseRepository, times(1)).save(ArgumentMatchers.any(Exercise.class));
         verifyNoMoreInteractions(appUserRepository, exerciseRepository);
     }
@@ -93,12 +124,10 @@ public class ExerciseControllerTests {
         // Arrange
         Long userId = 1L;
 
-        Exercise exercise1 = new Exercise("Bench Press", "Chest exercise", null);
-        exercise1.setId(1L);
-        Exercise exercise2 = new Exercise("Squat", "Leg exercise", null);
-        exercise2.setId(2L);
+        ExerciseDTO exercise1 = new ExerciseDTO(1L, "Bench Press", "Chest exercise");
+        ExerciseDTO exercise2 = new ExerciseDTO(2L, "Squat", "Leg exercise");
 
-        when(exerciseRepository.findByUserId(userId)).thenReturn(Arrays.asList(exercise1, exercise2));
+        when(exerciseRepository.findDtosByUserId(userId)).thenReturn(Arrays.asList(exercise1, exercise2));
 
         // Act & Assert
         mockMvc.perform(get("/api/users/{userId}/exercises", userId)
@@ -112,10 +141,43 @@ public class ExerciseControllerTests {
                 .andExpect(jsonPath("$[1].description").value(exercise2.getDescription()));
 
         // Verify interactions
-        verify(exerciseRepository, times(1)).findByUserId(userId);
+        verify(exerciseRepository, times(1)).findDtosByUserId(userId);
         verifyNoMoreInteractions(exerciseRepository);
     }
 
+    @Test
+    @DisplayName("Get the dashboard with the latest training days of each exercise")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testGetDashboard() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        LocalDate today = LocalDate.of(2024, 5, 3);
+
+        when(exerciseRepository.findDtosByUserId(userId)).thenReturn(Arrays.asList(
+                new ExerciseDTO(1L, "Bench Press", "Chest exercise"),
+                new ExerciseDTO(2L, "Squat", "Leg exercise")));
+        when(dailyVolumeRepository.findDailyTotalsByUserId(userId, 2)).thenReturn(Arrays.asList(
+                new DailyTotalDTO(1L, today, 3, 15, 1500, 100),
+                new DailyTotalDTO(1L, today.minusDays(2), 3, 15, 1425, 95)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/users/{userId}/dashboard", userId)
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Bench Press"))
+                .andExpect(jsonPath("$[0].days.length()").value(2))
+                .andExpect(jsonPath("$[0].days[0].date").value("2024-05-03"))
+                .andExpect(jsonPath("$[0].days[0].volume").value(1500))
+                .andExpect(jsonPath("$[0].days[1].volume").value(1425))
+                .andExpect(jsonPath("$[1].name").value("Squat"))
+                .andExpect(jsonPath("$[1].days.length()").value(0));
+
+        // Verify interactions: one query for the exercises and one for the totals
+        verify(exerciseRepository, times(1)).findDtosByUserId(userId);
+        verify(dailyVolumeRepository, times(1)).findDailyTotalsByUserId(userId, 2);
+        verifyNoMoreInteractions(exerciseRepository, exerciseLogRepository, dailyVolumeRepository);
+    }
+
     @Test
     @DisplayName("Add an exercise log")
     @WithMockUser(username = "testuser", roles = {"USER"})
@@ -130,7 +192,7 @@ public class ExerciseControllerTests {
         exerciseLog.setReps(10);
 
         when(exerciseRepository.findById(exerciseId)).thenReturn(Optional.of(exercise));
-        when(exerciseLogRepository.save(ArgumentMatchers.any(ExerciseLog.class))).thenReturn(exerciseLog);
+        when(exerciseLogService.save(ArgumentMatchers.any(ExerciseLog.class))).thenReturn(exerciseLog);
 
         // Act & Assert
         mockMvc.perform(post("/api/exercises/{exerciseId}/logs", exerciseId)
@@ -142,10 +204,98 @@ public class ExerciseControllerTests {
 
         // Verify interactions
         verify(exerciseRepository, times(1)).findById(exerciseId);
-        verify(exerciseLogRepository, times(1)).save(ArgumentMatchers.any(ExerciseLog.class));
+        verify(exerciseLogService, times(1)).save(ArgumentMatchers.any(ExerciseLog.class));
         verifyNoMoreInteractions(exerciseRepository, exerciseLogRepository);
     } 
 
+    @Test
+    @DisplayName("Add a batch of exercise logs")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testAddExerciseLogsBatch() throws Exception {
+        // Arrange
+        Long exerciseId = 1L;
+        Exercise exercise = new Exercise("Bench Press", "Chest exercise", null);
+        exercise.setId(exerciseId);
+
+        ExerciseLog set1 = new ExerciseLog();
+        set1.setWeight(100);
+        set1.setReps(5);
+        ExerciseLog set2 = new ExerciseLog();
+        set2.setWeight(105);
+        set2.setReps(3);
+
+        when(exerciseRepository.findById(exerciseId)).thenReturn(Optional.of(exercise));
+        when(exerciseLogService.saveAll(ArgumentMatchers.anyList())).thenReturn(2);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs/batch", exerciseId)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(set1, set2))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2 exercise logs added successfully"));
+
+        // Verify interactions
+        verify(exerciseRepository, times(1)).findById(exerciseId);
+        verify(exerciseLogService, times(1)).saveAll(ArgumentMatchers.argThat(sets -> sets.size() == 2
+                && sets.stream().allMatch(set -> set.getExercise() == exercise && set.getTimestamp() != null)));
+        verifyNoMoreInteractions(exerciseRepository, exerciseLogRepository);
+    }
+
+    @Test
+    @DisplayName("Reject a batch with a non-positive weight")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testAddExerciseLogsBatchInvalid() throws Exception {
+        // Arrange
+        ExerciseLog set = new ExerciseLog();
+        set.setWeight(0);
+        set.setReps(5);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs/batch", 1L)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(set))))
+                .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(exerciseLogService);
+    }
+
+    @Test
+    @DisplayName("Reject a batch or a workout with a null set")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testAddNullSet() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs/batch", 1L)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[null]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Weight and reps must be positive"));
+        mockMvc.perform(post("/api/users/{userId}/workouts", 1L)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"exerciseId\":1,\"sets\":[{\"weight\":100,\"reps\":5},null]}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Weight and reps must be positive"));
+
+        verifyNoInteractions(exerciseRepository, exerciseLogService);
+    }
+
+    @Test
+    @DisplayName("Reject a workout with an exercise without an id")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testAddWorkoutWithoutExerciseId() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/users/{userId}/workouts", 1L)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"sets\":[{\"weight\":100,\"reps\":5}]}]"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(exerciseRepository, exerciseLogService);
+    }
+
     @Test
     @DisplayName("Get logs for an exercise")
     @WithMockUser(username = "testuser", roles = {"USER"})
@@ -153,19 +303,10 @@ public class ExerciseControllerTests {
         // Arrange
         Long exerciseId = 1L;
 
-        ExerciseLog log1 = new ExerciseLog();
-        log1.setId(1L);
-        log1.setWeight(100);
-        log1.setReps(10);
-        log1.setTimestamp(LocalDateTime.now());
+        ExerciseLogDTO log1 = new ExerciseLogDTO(1L, LocalDateTime.now(), 100, 10);
+        ExerciseLogDTO log2 = new ExerciseLogDTO(2L, LocalDateTime.now(), 105, 8);
 
-        ExerciseLog log2 = new ExerciseLog();
-        log2.setId(2L);
-        log2.setWeight(105);
-        log2.setReps(8);
-        log2.setTimestamp(LocalDateTime.now());
-
-        when(exerciseLogRepository.findByExerciseId(exerciseId)).thenReturn(Arrays.asList(log1, log2));
+        when(exerciseLogRepository.findDtosByExerciseId(exerciseId)).thenReturn(Arrays.asList(log1, log2));
 
         // Act & Assert
         mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exerciseId)
@@ -179,10 +320,37 @@ public class ExerciseControllerTests {
                 .andExpect(jsonPath("$[1].reps").value(log2.getReps()));
 
         // Verify interactions
-        verify(exerciseLogRepository, times(1)).findByExerciseId(exerciseId);
+        verify(exerciseLogRepository, times(1)).findDtosByExerciseId(exerciseId);
         verifyNoMoreInteractions(exerciseLogRepository);
     } 
 
+    @Test
+    @DisplayName("Get one page of logs with a next-page cursor")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testGetExerciseLogsPage() throws Exception {
+        // Arrange
+        Long exerciseId = 1L;
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+        ExerciseLogDTO log1 = new ExerciseLogDTO(3L, now, 100, 5);
+        ExerciseLogDTO log2 = new ExerciseLogDTO(2L, now.minusDays(1), 95, 5);
+        ExerciseLogDTO log3 = new ExerciseLogDTO(1L, now.minusDays(2), 90, 5);
+
+        when(exerciseLogRepository.findPage(ArgumentMatchers.eq(exerciseId), ArgumentMatchers.any(LocalDateTime.class),
+                ArgumentMatchers.any(LocalDateTime.class), ArgumentMatchers.eq(Long.MIN_VALUE), ArgumentMatchers.eq(Limit.of(3))))
+                .thenReturn(Arrays.asList(log1, log2, log3));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exerciseId)
+                .param("limit", "2")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(header().string("X-Next-Cursor", new LogCursor(log2.getTimestamp(), 2L).encode()));
+    }
+
     @Test
     @DisplayName("Update an exercise")
     @WithMockUser(username = "testuser", roles = {"USER"})
@@ -223,7 +391,7 @@ public class ExerciseControllerTests {
         exercise.setId(exerciseId);
 
         when(exerciseRepository.findById(exerciseId)).thenReturn(Optional.of(exercise));
-        doNothing().when(exerciseRepository).delete(exercise);
+        when(exerciseRepository.markDeleted(ArgumentMatchers.eq(exerciseId), ArgumentMatchers.any(LocalDateTime.class))).thenReturn(1);
 
         // Act & Assert
         mockMvc.perform(delete("/api/users/{userId}/exercises/{exerciseId}", userId, exerciseId)
@@ -233,8 +401,38 @@ public class ExerciseControllerTests {
 
         // Verify interactions
         verify(exerciseRepository, times(1)).findById(exerciseId);
-        verify(exerciseRepository, times(1)).delete(exercise);
+        // Soft delete only, the rows are purged in the background
+        verify(exerciseRepository, times(1)).markDeleted(ArgumentMatchers.eq(exerciseId), ArgumentMatchers.any(LocalDateTime.class));
+        verify(exerciseRepository, never()).delete(exercise);
+        verify(purgeService, times(1)).purgeAfterCommit();
         verifyNoMoreInteractions(exerciseRepository);
     }
 
+    @Test
+    @DisplayName("Get the personal records of an exercise")
+    @WithMockUser(username = "testuser", roles = {"USER"})
+    public void testGetExerciseRecords() throws Exception {
+        // Arrange
+        Long exerciseId = 1L;
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 3, 18, 0);
+        RecordSetDTO fiveRepMax = new RecordSetDTO(105, 5, timestamp);
+        when(personalRecordService.getRecords(exerciseId)).thenReturn(Optional.of(new PersonalRecordsDTO(
+                exerciseId, fiveRepMax, 1500L, timestamp.toLocalDate(), List.of(fiveRepMax))));
+        when(personalRecordService.getRecords(2L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/exercises/{exerciseId}/records", exerciseId)
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestE1rm.weight").value(105))
+                .andExpect(jsonPath("$.bestE1rm.epley").value(122.5))
+                .andExpect(jsonPath("$.bestVolume").value(1500))
+                .andExpect(jsonPath("$.repMaxes[0].reps").value(5));
+        mockMvc.perform(get("/api/exercises/{exerciseId}/records", 2L)
+                .with(csrf()))
+                .andExpect(status().isNotFound());
+
+        // Verify interactions: served from the record tables, no log queries
+        verifyNoInteractions(exerciseLogRepository);
+    }
 }
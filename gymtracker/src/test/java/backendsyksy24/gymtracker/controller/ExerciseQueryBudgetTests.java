@@ -0,0 +1,180 @@
+package backendsyksy24.gymtracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.querycount.QueryBudget;
+import backendsyksy24.gymtracker.querycount.QueryCountFilter;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Statement budgets of the exercise endpoints against a real database. Every user has several exercises and logs,
+// so a query per exercise or per log goes over the budget.
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.query-count.expose=true")
+@AutoConfigureMockMvc
+public class ExerciseQueryBudgetTests {
+
+    private static final int EXERCISES = 3;
+    private static final int LOGS = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("budget" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        List<ExerciseLog> logs = new ArrayList<>();
+        for (int i = 0; i < EXERCISES; i++) {
+            exercise = exerciseRepository.save(new Exercise("Exercise " + i, "Budget exercise", appUser));
+            for (int j = 0; j < LOGS; j++) {
+                logs.add(new ExerciseLog(exercise, LocalDateTime.now().minusDays(j), 100 + j, 5));
+            }
+        }
+        exerciseLogService.saveAll(logs);
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("List a user's exercises in one statement after the version lookup")
+    public void testGetUserExercises() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/users/{userId}/exercises", appUser.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(EXERCISES));
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("Build the dashboard in two statements")
+    public void testGetDashboard() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/users/{userId}/dashboard", appUser.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(EXERCISES))
+                .andExpect(jsonPath("$[0].days.length()").value(2));
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("Return the logs of an exercise in one statement after the version lookup, also while serializing them")
+    public void testGetExerciseLogs() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(LOGS));
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId()).param("limit", "4")
+                .with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4));
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("Read the personal records of an exercise in two statements")
+    public void testGetExerciseRecords() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/exercises/{exerciseId}/records", exercise.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.repMaxes.length()").value(1));
+    }
+
+    @Test
+    @QueryBudget(22)
+    @DisplayName("Save a batch of logs with JDBC batches instead of a statement per set")
+    public void testAddExerciseLogsBatch() throws Exception {
+        // Arrange
+        StringBuilder sets = new StringBuilder("[");
+        for (int i = 0; i < 40; i++) {
+            sets.append(i > 0 ? "," : "").append("{\"weight\":").append(60 + i).append(",\"reps\":").append(1 + i % 10).append("}");
+        }
+        sets.append("]");
+
+        // Act & Assert
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs/batch", exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(sets.toString()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("Report the statement count in a header and a metric")
+    public void testQueryCountReported() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/users/{userId}/exercises", appUser.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertThat(meterRegistry.get("gymtracker.http.queries")
+                .tag("uri", "/api/users/{userId}/exercises").summary().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @QueryBudget(17)
+    @DisplayName("Take one connection per request and report how long it was held")
+    public void testConnectionHoldReported() throws Exception {
+        // Act
+        mockMvc.perform(get("/api/users/{userId}/dashboard", appUser.getId()).with(user(principal)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs/batch", exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"weight\":100,\"reps\":5},{\"weight\":105,\"reps\":3}]"))
+                .andExpect(status().isOk());
+
+        // Assert: the lookup and the writes share the service's transaction
+        assertThat(meterRegistry.get("gymtracker.http.connections")
+                .tag("uri", "/api/users/{userId}/dashboard").summary().max()).isEqualTo(1);
+        assertThat(meterRegistry.get("gymtracker.http.connections")
+                .tag("uri", "/api/exercises/{exerciseId}/logs/batch").summary().max()).isEqualTo(1);
+        assertThat(meterRegistry.get("gymtracker.http.connection.hold")
+                .tag("uri", "/api/users/{userId}/dashboard").timer().totalTime(TimeUnit.NANOSECONDS)).isPositive();
+    }
+}
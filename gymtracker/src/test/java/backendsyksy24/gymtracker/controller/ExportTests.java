@@ -0,0 +1,142 @@
+package backendsyksy24.gymtracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.querycount.QueryCountFilter;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+// With the query count exposed, so the export also goes past the response buffering of QueryCountFilter
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.query-count.expose=true")
+@AutoConfigureMockMvc
+public class ExportTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 18, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    private AppUser appUser;
+    private Exercise bench;
+    private Exercise squat;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("export" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        bench = exerciseRepository.save(new Exercise("Bench, \"paused\"", "Chest exercise", appUser));
+        squat = exerciseRepository.save(new Exercise("Squat", "Leg exercise", appUser));
+        List<ExerciseLog> logs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            logs.add(new ExerciseLog(bench, START.plusDays(2 - i), 100 + i, 5));
+        }
+        logs.add(new ExerciseLog(squat, START, 140, 3));
+        exerciseLogService.saveAll(logs);
+    }
+
+    @Test
+    @DisplayName("Export every set as CSV, per exercise oldest first, with quoted names")
+    public void testCsv() throws Exception {
+        // Act
+        String csv = export(null)
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"gymtracker-"
+                        + appUser.getId() + ".csv\""))
+                .andExpect(header().doesNotExist(QueryCountFilter.QUERY_COUNT_HEADER))
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        List<String> lines = csv.lines().toList();
+        assertThat(lines).hasSize(5);
+        assertThat(lines.get(0)).isEqualTo("exercise_id,exercise_name,log_id,timestamp,weight,reps");
+        assertThat(lines.get(1)).startsWith(bench.getId() + ",\"Bench, \"\"paused\"\"\",")
+                .endsWith(",2024-01-01T18:00:00,102,5");
+        assertThat(lines.get(3)).endsWith(",2024-01-03T18:00:00,100,5");
+        assertThat(lines.get(4)).startsWith(squat.getId() + ",Squat,").endsWith(",140,3");
+    }
+
+    @Test
+    @DisplayName("Export every set as one JSON object per line")
+    public void testNdjson() throws Exception {
+        // Act
+        String ndjson = export("ndjson")
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        List<String> lines = ndjson.lines().toList();
+        assertThat(lines).hasSize(4);
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertThat(first.get("exerciseId").asLong()).isEqualTo(bench.getId());
+        assertThat(first.get("exerciseName").asText()).isEqualTo("Bench, \"paused\"");
+        assertThat(first.get("timestamp").asText()).isEqualTo("2024-01-01T18:00:00");
+        assertThat(first.get("weight").asInt()).isEqualTo(102);
+        assertThat(objectMapper.readTree(lines.get(3)).get("reps").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Refuse an unknown export format")
+    public void testUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/users/{userId}/export", appUser.getId()).param("format", "xml")
+                .with(user(principal)))
+                .andExpect(status().isBadRequest());
+    }
+
+    // The body is written on an async thread, so the full response comes from the async dispatch
+    private ResultActions export(String format) throws Exception {
+        var builder = get("/api/users/{userId}/export", appUser.getId()).with(user(principal));
+        if (format != null) {
+            builder.param("format", format);
+        }
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,142 @@
+package backendsyksy24.gymtracker.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+// Small chunks, so an import spans several transactions
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.import.chunk-size=2")
+@AutoConfigureMockMvc
+public class ImportTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogRepository exerciseLogRepository;
+
+    private AppUser appUser;
+    private Exercise bench;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("import" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+    }
+
+    @Test
+    @DisplayName("Import sets into existing and new exercises and report the rows that could not be read")
+    public void testImport() throws Exception {
+        // Arrange: a semicolon-separated export with the columns in another order
+        String csv = "Date;Exercise Name;Weight;Reps;Notes\n"
+                + "2023-05-01 18:30:00;bench press;100;5;\n"
+                + "2023-05-01 18:35:00;Bench Press;102.5;3;\"top set; felt good\"\n"
+                + "2023-05-02;Squat;140;5;\n"
+                + "2023-05-02;Squat;heavy;5;\n"
+                + "2023-05-03T07:00:00;Deadlift;180;0;\n"
+                + "2023-05-03T07:05:00;Deadlift;180;2;\n";
+
+        // Act
+        JsonNode status = pollUntilFinished(startImport(csv));
+
+        // Assert
+        assertThat(status.get("state").asText()).isEqualTo("DONE");
+        assertThat(status.get("rowsRead").asLong()).isEqualTo(6);
+        assertThat(status.get("rowsImported").asLong()).isEqualTo(4);
+        assertThat(status.get("rowsSkipped").asLong()).isEqualTo(2);
+        assertThat(status.get("exercisesCreated").asLong()).isEqualTo(2);
+        assertThat(status.get("errors").get(0).asText()).isEqualTo("Line 5: weight \"heavy\" is not a number");
+        assertThat(status.get("errors").get(1).asText()).isEqualTo("Line 6: reps must be positive");
+
+        List<ExerciseLogDTO> benchLogs = exerciseLogRepository.findDtosByExerciseId(bench.getId());
+        assertThat(benchLogs).extracting(ExerciseLogDTO::getWeight).containsExactly(100, 103);
+        assertThat(benchLogs.get(0).getTimestamp()).isEqualTo(LocalDateTime.of(2023, 5, 1, 18, 30));
+        assertThat(exerciseRepository.findByUserId(appUser.getId())).extracting(Exercise::getName)
+                .containsExactlyInAnyOrder("Bench Press", "Squat", "Deadlift");
+    }
+
+    @Test
+    @DisplayName("Fail a file without the needed columns, and hide the job from other users")
+    public void testMissingColumn() throws Exception {
+        // Act
+        String location = startImport("Date,Exercise,Reps\n2023-05-01,Squat,5\n");
+        JsonNode status = pollUntilFinished(location);
+
+        // Assert
+        assertThat(status.get("state").asText()).isEqualTo("FAILED");
+        assertThat(status.get("message").asText()).startsWith("The header has no weight column");
+        String otherUserLocation = location.replace("/users/" + appUser.getId() + "/",
+                "/users/" + (appUser.getId() + 1) + "/");
+        mockMvc.perform(get(otherUserLocation).with(user(principal)))
+                .andExpect(status().isNotFound());
+    }
+
+    private String startImport(String csv) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "export.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+        return mockMvc.perform(multipart("/api/users/{userId}/imports", appUser.getId()).file(file)
+                .with(user(principal)).with(csrf()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getHeader("Location");
+    }
+
+    // The import runs in the background
+    private JsonNode pollUntilFinished(String location) throws Exception {
+        JsonNode status = null;
+        for (int i = 0; i < 100; i++) {
+            status = objectMapper.readTree(mockMvc.perform(get(location).with(user(principal)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            String state = status.get("state").asText();
+            if (state.equals("DONE") || state.equals("FAILED")) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        return status;
+    }
+}
@@ -1,16 +1,21 @@
 package backendsyksy24.gymtracker.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -23,6 +28,9 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -75,7 +83,7 @@ public class UserControllerTests {
         when(appUserRepository.save(ArgumentMatchers.any(AppUser.class))).thenReturn(savedUser);
 
         // Act & Assert
-        mockMvc.perform(post("/api/register") // Ensure the endpoint matches your controller mapping
+        performAsync(post("/api/register") // Ensure the endpoint matches your controller mapping
                 .with(csrf()) // Add CSRF token
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(registerRequest)))
@@ -91,6 +99,32 @@ public class UserControllerTests {
         verifyNoMoreInteractions(appUserRepository);
     }
 
+    @Test
+    @DisplayName("Register user saves off the password hashing threads")
+    public void testRegisterUserSavesOffHashingPool() throws Exception {
+        Mockito.reset(appUserRepository);
+
+        // Arrange
+        RegisterRequest registerRequest = new RegisterRequest("pooluser", "StrongP@ssw0rd!");
+        AtomicReference<String> savingThread = new AtomicReference<>();
+        when(appUserRepository.existsByUsername("pooluser")).thenReturn(false);
+        when(bCryptPasswordEncoder.encode("StrongP@ssw0rd!")).thenReturn("encodedPassword");
+        when(appUserRepository.save(ArgumentMatchers.any(AppUser.class))).thenAnswer(invocation -> {
+            savingThread.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+
+        // Act
+        performAsync(post("/api/register")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerRequest)))
+                .andExpect(status().isOk());
+
+        // Assert
+        assertThat(savingThread.get()).isNotNull().doesNotStartWith("password-hash-");
+    }
+
     @Test
     @DisplayName("Register user with existing username")
     public void testRegisterUserDuplicateUsername() throws Exception {
@@ -103,7 +137,7 @@ public class UserControllerTests {
         when(appUserRepository.existsByUsername("existinguser")).thenReturn(true);
     
         // Act & Assert
-        mockMvc.perform(post("/api/register")
+        performAsync(post("/api/register")
                 .with(csrf()) // Add CSRF token
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(registerRequest)))
@@ -129,7 +163,7 @@ public class UserControllerTests {
         RegisterRequest registerRequest = new RegisterRequest("weakpassworduser", "weakpass");
     
         // Act & Assert
-        mockMvc.perform(post("/api/register")
+        performAsync(post("/api/register")
                 .with(csrf()) // Add CSRF token
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(registerRequest)))
@@ -167,7 +201,7 @@ public class UserControllerTests {
         // Mocking behaviors
         when(appUserRepository.findByUsername(username.toLowerCase())).thenReturn(existingUser);
         when(bCryptPasswordEncoder.matches(rawPassword, encodedPassword)).thenReturn(true);
-        when(jwtUtil.generateToken(username)).thenReturn(generatedToken);
+        when(jwtUtil.generateToken(username, 1L, "ROLE_ADMIN")).thenReturn(generatedToken);
     
         // Create login request
         RegisterRequest loginRequest = new RegisterRequest();
@@ -175,7 +209,7 @@ public class UserControllerTests {
         loginRequest.setPasswordHash(rawPassword);
     
         // Act & Assert
-        mockMvc.perform(post("/api/login")
+        performAsync(post("/api/login")
                 .with(csrf())
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(loginRequest)))
@@ -188,7 +222,15 @@ public class UserControllerTests {
         // Verify interactions
         verify(appUserRepository, times(1)).findByUsername(username.toLowerCase());
         verify(bCryptPasswordEncoder, times(1)).matches(rawPassword, encodedPassword);
-        verify(jwtUtil, times(1)).generateToken(username);
+        verify(jwtUtil, times(1)).generateToken(username, 1L, "ROLE_ADMIN");
         verifyNoMoreInteractions(appUserRepository, bCryptPasswordEncoder, jwtUtil, userDetailService);
     }
-}
\ No newline at end of file
+
+    // Password hashing runs asynchronously, so the final response comes from the async dispatch
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,102 @@
+package backendsyksy24.gymtracker.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Two in-memory H2 databases stand in for the primary and the replica. CALL DATABASE() tells which one answered.
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+    "gymtracker.datasource.replica-urls=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReadWriteDataSourceTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecentWriters recentWriters;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Send read-only transactions to the replica and the rest to the primary")
+    public void testRouting() {
+        // Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        // Act
+        String readDatabase = readOnly.execute(status -> currentDatabase());
+        String writeDatabase = readWrite.execute(status -> currentDatabase());
+
+        // Assert
+        assertThat(dataSource).isInstanceOf(ReadWriteDataSource.class);
+        assertThat(readDatabase).isEqualTo("REPLICA");
+        assertThat(writeDatabase).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Send read-only transactions to the primary while pinned")
+    public void testPinnedReads() {
+        // Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // Act
+        PrimaryPin.pin();
+        String database;
+        try {
+            database = readOnly.execute(status -> currentDatabase());
+        } finally {
+            PrimaryPin.clear();
+        }
+
+        // Assert
+        assertThat(database).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Pin a user's reads to the primary after they write")
+    @WithMockUser(username = "writer", roles = {"USER"})
+    public void testWritePinsUser() throws Exception {
+        // Arrange
+        assertThat(recentWriters.wroteRecently("writer")).isFalse();
+
+        // Act
+        mockMvc.perform(post("/api/users/{userId}/exercises", 1L)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Bench Press\"}"));
+
+        // Assert
+        assertThat(recentWriters.wroteRecently("writer")).isTrue();
+        assertThat(PrimaryPin.isPinned()).isFalse();
+    }
+
+    private String currentDatabase() {
+        return new JdbcTemplate(dataSource).queryForObject("call database()", String.class);
+    }
+}
@@ -0,0 +1,124 @@
+package backendsyksy24.gymtracker.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+// With the query count exposed, so the stream also goes past the response buffering of QueryCountFilter
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.query-count.expose=true")
+@AutoConfigureMockMvc
+public class ChangeEventHubTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private ChangeEventHub changeEventHub;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("events" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+        // Change log positions 1 and 2
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, LocalDateTime.now().minusDays(1), 100, 5),
+                new ExerciseLog(exercise, LocalDateTime.now(), 105, 3)));
+    }
+
+    @Test
+    @DisplayName("Push a set logged after subscribing, and heartbeats")
+    public void testLiveEvents() throws Exception {
+        // Arrange
+        MockHttpServletResponse stream = subscribe(null);
+
+        // Act
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"weight\":110,\"reps\":2}"))
+                .andExpect(status().isOk());
+        changeEventHub.sendHeartbeats();
+
+        // Assert: only the new set, not the two from before the subscription
+        String events = await(stream, content -> content.contains(":heartbeat"));
+        assertThat(events).contains("id:3\nevent:change\ndata:{\"seq\":3,\"type\":\"log\"")
+                .contains("\"weight\":110")
+                .doesNotContain("id:2");
+    }
+
+    @Test
+    @DisplayName("Resume after Last-Event-ID from the change log, and reset a cursor it cannot serve")
+    public void testResume() throws Exception {
+        // Act
+        String resumed = await(subscribe(1L), content -> content.contains("id:2"));
+        String reset = await(subscribe(99L), content -> content.contains("event:reset"));
+
+        // Assert
+        assertThat(resumed).doesNotContain("id:1\n").contains("\"weight\":105");
+        assertThat(reset).doesNotContain("event:change");
+    }
+
+    private MockHttpServletResponse subscribe(Long lastEventId) throws Exception {
+        var builder = get("/api/users/{userId}/events", appUser.getId()).with(user(principal));
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    // Events are written by the dispatcher threads
+    private String await(MockHttpServletResponse stream, Predicate<String> condition) throws Exception {
+        String content = stream.getContentAsString();
+        for (int i = 0; i < 100 && !condition.test(content); i++) {
+            Thread.sleep(50);
+            content = stream.getContentAsString();
+        }
+        assertThat(content).matches(condition);
+        return content;
+    }
+}
@@ -0,0 +1,122 @@
+package backendsyksy24.gymtracker.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.util.JwtUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Against the embedded Tomcat, where a write to a client that does not read blocks. One dispatcher thread, so a
+// blocked write would hold up every other subscriber.
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "gymtracker.events.threads=1", "gymtracker.events.send-timeout=PT0.5S",
+        "gymtracker.events.poll-interval=PT0.2S", "gymtracker.events.heartbeat-interval=PT0.2S"})
+public class SlowSubscriberTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Drop a subscriber that stopped reading and keep delivering to the others")
+    public void testStalledSubscriber() throws Exception {
+        // Arrange: a client with a tiny receive window that reads nothing after the headers
+        AppUser slowUser = appUserRepository.save(new AppUser("slow" + System.nanoTime(), "password", "USER"));
+        Exercise slowExercise = exerciseRepository.save(new Exercise("Bench Press", "", slowUser));
+        AppUser user = appUserRepository.save(new AppUser("fast" + System.nanoTime(), "password", "USER"));
+        Exercise exercise = exerciseRepository.save(new Exercise("Squat", "", user));
+        double evictedBefore = meterRegistry.counter("gymtracker.events.evicted").count();
+
+        try (Socket slow = new Socket(); Socket fast = new Socket()) {
+            slow.setReceiveBufferSize(1024);
+            subscribe(slow, slowUser);
+            BufferedReader reader = subscribe(fast, user);
+
+            // Act: far more events than fit in the socket buffers
+            List<ExerciseLog> logs = new ArrayList<>();
+            for (int i = 0; i < 40000; i++) {
+                logs.add(new ExerciseLog(slowExercise, LocalDateTime.now().minusMinutes(i), 100, 5));
+            }
+            exerciseLogService.saveAll(logs);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (meterRegistry.counter("gymtracker.events.evicted").count() == evictedBefore
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, LocalDateTime.now(), 140, 5)));
+
+            // Assert: the other subscriber gets its change while the slow write is still blocked
+            assertThat(meterRegistry.counter("gymtracker.events.evicted").count()).isGreaterThan(evictedBefore);
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && !line.equals("event:" + ChangeEventHub.CHANGE_EVENT));
+            assertThat(line).isEqualTo("event:" + ChangeEventHub.CHANGE_EVENT);
+            assertThat(meterRegistry.get("gymtracker.events.threads").gauge().value()).isEqualTo(2);
+        }
+
+        // Assert: once the blocked write fails, the stand-in thread goes and the dispatcher is back to its size
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (meterRegistry.get("gymtracker.events.threads").gauge().value() != 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(meterRegistry.get("gymtracker.events.threads").gauge().value()).isEqualTo(1);
+    }
+
+    // Opens the user's event stream and reads up to the end of the response headers, sent with the first heartbeat
+    private BufferedReader subscribe(Socket socket, AppUser user) throws Exception {
+        socket.connect(new InetSocketAddress("localhost", port));
+        socket.setSoTimeout(10_000);
+        String token = jwtUtil.generateToken(user.getUsername(), user.getId(), "ROLE_USER");
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /api/users/" + user.getId() + "/events HTTP/1.1\r\nHost: localhost\r\n"
+                + "Accept: text/event-stream\r\nAuthorization: Bearer " + token + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8), 256);
+        assertThat(reader.readLine()).isEqualTo("HTTP/1.1 200 ");
+        while (!reader.readLine().isEmpty()) {
+            // Headers
+        }
+        return reader;
+    }
+}
@@ -0,0 +1,20 @@
+package backendsyksy24.gymtracker.querycount;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+// Fails the test if any HTTP request it makes runs more SQL statements than allowed, e.g. after a change that
+// brings back an N+1. On a class it applies to every test; a test's own annotation takes precedence.
+// Counted by QueryCountFilter, so the requests must go through the filter chain (MockMvc does).
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+
+    /* Maximum number of statements per request */
+    long value();
+}
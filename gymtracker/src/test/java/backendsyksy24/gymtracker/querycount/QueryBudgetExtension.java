@@ -0,0 +1,50 @@
+package backendsyksy24.gymtracker.querycount;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+// Checks @QueryBudget: counts the statements of the test body and compares every request made in it to the budget
+public class QueryBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryBudgetExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(context.getUniqueId(), QueryCounter.open(context.getDisplayName()));
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        QueryCounter.Scope scope = context.getStore(NAMESPACE).remove(context.getUniqueId(), QueryCounter.Scope.class);
+        scope.close();
+        if (context.getExecutionException().isPresent()) {
+            return;
+        }
+        long budget = budget(context);
+        List<QueryCounter.Scope> requests = scope.getNested();
+        if (requests.isEmpty()) {
+            fail("@QueryBudget found no requests to check");
+        }
+        List<String> over = requests.stream()
+                .filter(request -> request.getCount() > budget)
+                .map(request -> request.getName() + " ran " + request.getCount() + " statements")
+                .collect(Collectors.toList());
+        if (!over.isEmpty()) {
+            fail("Over the budget of " + budget + " statements per request: " + String.join(", ", over));
+        }
+    }
+
+    private long budget(ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), QueryBudget.class)
+                .or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), QueryBudget.class))
+                .orElseThrow()
+                .value();
+    }
+}
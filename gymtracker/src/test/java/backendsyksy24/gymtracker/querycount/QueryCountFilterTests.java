@@ -0,0 +1,62 @@
+package backendsyksy24.gymtracker.querycount;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+// With the query count exposed, as in dev, where the filter buffers every response body
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.query-count.expose=true")
+@AutoConfigureMockMvc
+public class QueryCountFilterTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Send the body of async endpoints after their async dispatch, with the query count")
+    public void testAsyncEndpoints() throws Exception {
+        // Arrange
+        String username = "counted" + System.nanoTime();
+        String credentials = "{\"username\":\"" + username + "\",\"passwordHash\":\"StrongP@ssw0rd!\"}";
+
+        // Act & Assert
+        performAsync(post("/api/register").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(credentials))
+                .andExpect(status().isOk())
+                .andExpect(content().string("User registered successfully"))
+                .andExpect(header().exists(QueryCountFilter.QUERY_COUNT_HEADER));
+        performAsync(post("/api/login").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(credentials))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(username))
+                .andExpect(jsonPath("$.token").isNotEmpty())
+                .andExpect(header().exists(QueryCountFilter.QUERY_COUNT_HEADER));
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
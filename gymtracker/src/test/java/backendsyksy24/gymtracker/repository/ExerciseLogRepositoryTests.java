@@ -1,5 +1,6 @@
 package backendsyksy24.gymtracker.repository;
 
+import backendsyksy24.gymtracker.dto.ExerciseLogDTO;
 import backendsyksy24.gymtracker.model.AppUser;
 import backendsyksy24.gymtracker.model.Exercise;
 import backendsyksy24.gymtracker.model.ExerciseLog;
@@ -7,6 +8,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDateTime;
@@ -101,4 +103,36 @@ public class ExerciseLogRepositoryTests {
         Optional<ExerciseLog> optionalLog = exerciseLogRepository.findById(logId);
         assertFalse(optionalLog.isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Page through logs newest first with a keyset cursor")
+    public void testFindPage() {
+        // Arrange
+        AppUser user = new AppUser("testuser", "password", "USER");
+        appUserRepository.save(user);
+
+        Exercise exercise = new Exercise("Row", "Back exercise", user);
+        exerciseRepository.save(exercise);
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 10, 0);
+        ExerciseLog oldest = exerciseLogRepository.save(new ExerciseLog(exercise, base, 50, 10));
+        ExerciseLog sameTimeA = exerciseLogRepository.save(new ExerciseLog(exercise, base.plusDays(1), 55, 10));
+        ExerciseLog sameTimeB = exerciseLogRepository.save(new ExerciseLog(exercise, base.plusDays(1), 57, 8));
+        ExerciseLog newest = exerciseLogRepository.save(new ExerciseLog(exercise, base.plusDays(2), 60, 8));
+        LocalDateTime from = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+        // Act
+        List<ExerciseLogDTO> firstPage = exerciseLogRepository.findPage(exercise.getId(), from,
+                LocalDateTime.of(9999, 1, 1, 0, 0), Long.MIN_VALUE, Limit.of(2));
+        ExerciseLogDTO lastOnFirstPage = firstPage.get(1);
+        List<ExerciseLogDTO> secondPage = exerciseLogRepository.findPage(exercise.getId(), from,
+                lastOnFirstPage.getTimestamp(), lastOnFirstPage.getId(), Limit.of(2));
+        List<ExerciseLogDTO> inRange = exerciseLogRepository.findPage(exercise.getId(), base.plusDays(1),
+                base.plusDays(2), Long.MIN_VALUE, Limit.of(10));
+
+        // Assert
+        assertEquals(List.of(newest.getId(), sameTimeB.getId()), firstPage.stream().map(ExerciseLogDTO::getId).toList());
+        assertEquals(List.of(sameTimeA.getId(), oldest.getId()), secondPage.stream().map(ExerciseLogDTO::getId).toList());
+        assertEquals(List.of(sameTimeB.getId(), sameTimeA.getId()), inRange.stream().map(ExerciseLogDTO::getId).toList());
+    }
+}
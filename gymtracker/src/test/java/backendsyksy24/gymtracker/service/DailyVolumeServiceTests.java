@@ -0,0 +1,130 @@
+package backendsyksy24.gymtracker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import backendsyksy24.gymtracker.dto.DailyTotalDTO;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseDailyVolume;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseDailyVolumeRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({ExerciseLogService.class, ResourceVersionService.class, ChangeLogService.class, DailyVolumeService.class,
+        PersonalRecordService.class, Shards.class})
+public class DailyVolumeServiceTests {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 3, 4, 18, 0);
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private DailyVolumeService dailyVolumeService;
+
+    @Autowired
+    private ExerciseDailyVolumeRepository dailyVolumeRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Test
+    @DisplayName("Keep the daily totals up to date when sets are added")
+    public void testRollupFollowsAddedLogs() {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("rollupuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        Exercise squat = exerciseRepository.save(new Exercise("Squat", "Leg exercise", user));
+
+        // Act
+        exerciseLogService.save(new ExerciseLog(bench, MONDAY, 100, 5));
+        exerciseLogService.saveAll(List.of(
+                new ExerciseLog(bench, MONDAY.plusMinutes(5), 110, 3),
+                new ExerciseLog(bench, MONDAY.plusDays(2), 105, 5),
+                new ExerciseLog(squat, MONDAY, 150, 5)));
+        List<DailyTotalDTO> totals = dailyVolumeRepository.findDailyTotalsByUserId(user.getId(), 30);
+        List<DailyTotalDTO> latest = dailyVolumeRepository.findDailyTotalsByUserId(user.getId(), 1);
+
+        // Assert
+        assertThat(totals).hasSize(3);
+        assertThat(totals.get(0).getExerciseId()).isEqualTo(bench.getId());
+        assertThat(totals.get(0).getDate()).isEqualTo(MONDAY.toLocalDate().plusDays(2));
+        DailyTotalDTO mondayBench = totals.get(1);
+        assertThat(mondayBench.getDate()).isEqualTo(MONDAY.toLocalDate());
+        assertThat(mondayBench.getSets()).isEqualTo(2);
+        assertThat(mondayBench.getReps()).isEqualTo(8);
+        assertThat(mondayBench.getVolume()).isEqualTo(100 * 5 + 110 * 3);
+        assertThat(mondayBench.getMaxWeight()).isEqualTo(110);
+        assertThat(totals.get(2).getExerciseId()).isEqualTo(squat.getId());
+        assertThat(latest).extracting(DailyTotalDTO::getDate)
+                .containsExactly(MONDAY.toLocalDate().plusDays(2), MONDAY.toLocalDate());
+        assertThat(latest.get(1).getExerciseId()).isEqualTo(squat.getId());
+    }
+
+    @Test
+    @DisplayName("Recompute the day's heaviest set when it is deleted, and drop days without sets")
+    public void testRollupFollowsDeletedLogs() {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("rollupuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        ExerciseLog light = exerciseLogService.save(new ExerciseLog(bench, MONDAY, 100, 5));
+        ExerciseLog heavy = exerciseLogService.save(new ExerciseLog(bench, MONDAY.plusMinutes(5), 110, 3));
+
+        // Act
+        exerciseLogService.delete(heavy);
+
+        // Assert
+        ExerciseDailyVolume monday = dailyVolumeRepository.findByExerciseIdAndDay(bench.getId(), MONDAY.toLocalDate()).orElseThrow();
+        assertThat(monday.getSetCount()).isEqualTo(1);
+        assertThat(monday.getVolume()).isEqualTo(500);
+        assertThat(monday.getMaxWeight()).isEqualTo(100);
+
+        // Act
+        exerciseLogService.delete(light);
+
+        // Assert
+        assertThat(dailyVolumeRepository.findByExerciseIdAndDay(bench.getId(), MONDAY.toLocalDate())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Rebuild the rollup of an exercise from its logs")
+    public void testRebuild() {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("rollupuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        exerciseLogService.saveAll(List.of(
+                new ExerciseLog(bench, MONDAY, 100, 5),
+                new ExerciseLog(bench, MONDAY.plusMinutes(5), 110, 3),
+                new ExerciseLog(bench, MONDAY.plusDays(2), 105, 5)));
+        List<DailyTotalDTO> incremental = dailyVolumeRepository.findDailyTotals(bench.getId(),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+        dailyVolumeRepository.deleteByExerciseId(bench.getId());
+
+        // Act
+        dailyVolumeService.rebuild(bench.getId());
+        List<DailyTotalDTO> rebuilt = dailyVolumeRepository.findDailyTotals(bench.getId(),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        // Assert
+        assertThat(rebuilt).usingRecursiveFieldByFieldElementComparator().isEqualTo(incremental);
+        assertThat(rebuilt).hasSize(2);
+    }
+}
@@ -0,0 +1,101 @@
+package backendsyksy24.gymtracker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseLogRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.repository.IdGeneratorInitializer;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({ExerciseLogService.class, ResourceVersionService.class, ChangeLogService.class, DailyVolumeService.class,
+        PersonalRecordService.class, IdGeneratorInitializer.class, Shards.class})
+public class ExerciseLogServiceTests {
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private IdGeneratorInitializer idGeneratorInitializer;
+
+    @Autowired
+    private ExerciseLogRepository exerciseLogRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AppUser user;
+
+    // The test commits, so its rows are deleted again rather than rolled back
+    @AfterEach
+    public void tearDown() {
+        if (user == null) {
+            return;
+        }
+        for (String table : new String[] {"exercise_daily_volume_table", "exercise_rep_max_table",
+                "exercise_record_table", "exercise_log_table"}) {
+            jdbcTemplate.update("delete from " + table
+                    + " where exercise_id in (select id from exercise_table where user_id = ?)", user.getId());
+        }
+        jdbcTemplate.update("delete from resource_version_table where resource_id = ? "
+                + "or resource_id in (select id from exercise_table where user_id = ?)", user.getId(), user.getId());
+        jdbcTemplate.update("delete from change_log_table where user_id = ?", user.getId());
+        jdbcTemplate.update("delete from change_sequence_table where user_id = ?", user.getId());
+        jdbcTemplate.update("delete from exercise_table where user_id = ?", user.getId());
+        jdbcTemplate.update("delete from user_table where id = ?", user.getId());
+    }
+
+    // Runs without the test transaction: the id generator reserves blocks in its own transaction and would wait
+    // for the generator row that the initializer updated.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Save a workout worth of sets in one call, with ids above rows created before the table generator")
+    public void testSaveAllAfterLegacyIds() {
+        // Arrange
+        user = appUserRepository.save(new AppUser("batchuser", "password", "USER"));
+        Exercise exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        // A row inserted with an IDENTITY-era id
+        jdbcTemplate.update("insert into exercise_log_table (id, exercise_id, reps, timestamp, weight) values (1000, ?, 5, ?, 100)",
+                exercise.getId(), LocalDateTime.now());
+        idGeneratorInitializer.afterSingletonsInstantiated();
+
+        List<ExerciseLog> sets = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            sets.add(new ExerciseLog(exercise, LocalDateTime.now(), 100, 5));
+        }
+
+        // Act
+        int saved = exerciseLogService.saveAll(sets);
+
+        // Assert
+        assertThat(saved).isEqualTo(120);
+        assertThat(exerciseLogRepository.findByExerciseId(exercise.getId())).hasSize(121);
+        assertThat(sets).allSatisfy(set -> assertThat(set.getId()).isGreaterThan(1000L));
+    }
+}
@@ -0,0 +1,53 @@
+package backendsyksy24.gymtracker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PasswordHashingServiceTests {
+
+    @Test
+    @DisplayName("Hashing is rejected right away when the pool and its queue are full")
+    public void testRejectsWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BCryptPasswordEncoder encoder = mock(BCryptPasswordEncoder.class);
+        when(encoder.encode("slow")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashingService service = new PasswordHashingService(encoder, registry, 1, 1);
+
+        try {
+            CompletableFuture<String> running = service.encode("slow");
+            started.await(5, TimeUnit.SECONDS);
+            CompletableFuture<String> queued = service.encode("slow");
+
+            assertThat(registry.get("gymtracker.password.queue.depth").gauge().value()).isEqualTo(1.0);
+            assertThatThrownBy(() -> service.encode("slow")).isInstanceOf(RejectedExecutionException.class);
+            assertThat(registry.get("gymtracker.password.rejected").counter().count()).isEqualTo(1.0);
+
+            release.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+            assertThat(registry.get("gymtracker.password.hash").tag("operation", "encode").timer().count()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+}
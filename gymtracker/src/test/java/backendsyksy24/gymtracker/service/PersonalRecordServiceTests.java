@@ -0,0 +1,141 @@
+package backendsyksy24.gymtracker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import backendsyksy24.gymtracker.dto.PersonalRecordsDTO;
+import backendsyksy24.gymtracker.dto.RecordSetDTO;
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({ExerciseLogService.class, ResourceVersionService.class, ChangeLogService.class, DailyVolumeService.class,
+        PersonalRecordService.class, Shards.class})
+public class PersonalRecordServiceTests {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 3, 4, 18, 0);
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private DailyVolumeService dailyVolumeService;
+
+    @Autowired
+    private PersonalRecordService personalRecordService;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    private Exercise bench;
+
+    @BeforeEach
+    public void setUp() {
+        AppUser user = appUserRepository.save(new AppUser("recorduser", "password", "USER"));
+        bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+    }
+
+    @Test
+    @DisplayName("Raise the records as better sets are logged")
+    public void testRecordsFollowAddedLogs() {
+        // Act
+        exerciseLogService.save(new ExerciseLog(bench, MONDAY, 100, 5));
+        exerciseLogService.saveAll(List.of(
+                new ExerciseLog(bench, MONDAY.plusMinutes(5), 95, 5),
+                new ExerciseLog(bench, MONDAY.plusMinutes(10), 110, 1),
+                new ExerciseLog(bench, MONDAY.plusDays(2), 105, 5)));
+        PersonalRecordsDTO records = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Assert
+        assertThat(records.getRepMaxes()).extracting(RecordSetDTO::getReps).containsExactly(1, 5);
+        assertThat(records.getRepMaxes()).extracting(RecordSetDTO::getWeight).containsExactly(110, 105);
+        // 105 x 5 is about 122.5 by Epley, more than the single at 110
+        assertThat(records.getBestE1rm().getWeight()).isEqualTo(105);
+        assertThat(records.getBestE1rm().getEpley()).isEqualTo(122.5);
+        assertThat(records.getBestE1rm().getBrzycki()).isEqualTo(118.1);
+        assertThat(records.getBestVolume()).isEqualTo(100 * 5 + 95 * 5 + 110);
+        assertThat(records.getBestVolumeDate()).isEqualTo(MONDAY.toLocalDate());
+    }
+
+    @Test
+    @DisplayName("Recompute a record only when its holder is deleted")
+    public void testRecordsFollowDeletedLogs() {
+        // Arrange
+        ExerciseLog first = exerciseLogService.save(new ExerciseLog(bench, MONDAY, 100, 5));
+        ExerciseLog second = exerciseLogService.save(new ExerciseLog(bench, MONDAY.plusMinutes(5), 95, 5));
+        ExerciseLog best = exerciseLogService.save(new ExerciseLog(bench, MONDAY.plusDays(2), 105, 5));
+
+        // Act
+        exerciseLogService.delete(second);
+        PersonalRecordsDTO records = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Assert: not a holder, only the best day loses volume
+        assertThat(records.getBestE1rm().getWeight()).isEqualTo(105);
+        assertThat(records.getBestVolume()).isEqualTo(525);
+        assertThat(records.getBestVolumeDate()).isEqualTo(MONDAY.toLocalDate().plusDays(2));
+
+        // Act
+        exerciseLogService.delete(best);
+        records = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Assert: the next best set takes over every record
+        assertThat(records.getRepMaxes()).extracting(RecordSetDTO::getWeight).containsExactly(100);
+        assertThat(records.getBestE1rm().getWeight()).isEqualTo(100);
+        assertThat(records.getBestVolume()).isEqualTo(500);
+        assertThat(records.getBestVolumeDate()).isEqualTo(MONDAY.toLocalDate());
+
+        // Act
+        exerciseLogService.delete(first);
+        records = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Assert
+        assertThat(records.getRepMaxes()).isEmpty();
+        assertThat(records.getBestE1rm()).isNull();
+    }
+
+    @Test
+    @DisplayName("Rebuild gives the same records as the incremental updates")
+    public void testRebuild() {
+        // Arrange
+        exerciseLogService.saveAll(List.of(
+                new ExerciseLog(bench, MONDAY, 100, 5),
+                new ExerciseLog(bench, MONDAY.plusMinutes(5), 110, 1),
+                new ExerciseLog(bench, MONDAY.plusDays(2), 105, 5),
+                new ExerciseLog(bench, MONDAY.plusDays(2).plusMinutes(5), 80, 12)));
+        PersonalRecordsDTO incremental = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Act
+        dailyVolumeService.rebuild(bench.getId());
+        PersonalRecordsDTO rebuilt = personalRecordService.getRecords(bench.getId()).orElseThrow();
+
+        // Assert
+        assertThat(rebuilt).usingRecursiveComparison().isEqualTo(incremental);
+        assertThat(rebuilt.getRepMaxes()).hasSize(3);
+        assertThat(rebuilt.getBestVolumeDate()).isEqualTo(LocalDate.of(2024, 3, 6));
+    }
+
+    @Test
+    @DisplayName("No records for an exercise that does not exist")
+    public void testUnknownExercise() {
+        assertThat(personalRecordService.getRecords(-1L)).isEmpty();
+    }
+}
@@ -0,0 +1,144 @@
+package backendsyksy24.gymtracker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.sharding.Shards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs without the test transaction: the purge commits every chunk in a transaction of its own
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "gymtracker.purge.chunk-size=7")
+@Import({PurgeServiceTests.MetricsConfig.class, ExerciseLogService.class, ResourceVersionService.class,
+        ChangeLogService.class, DailyVolumeService.class, PersonalRecordService.class, PurgeService.class,
+        ExerciseService.class, UserService.class, Shards.class})
+public class PurgeServiceTests {
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private ExerciseService exerciseService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PurgeService purgeService;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Hide a deleted user at once and purge their history in chunks in the background")
+    public void testDeleteUser() throws Exception {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("purgeuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        Exercise squat = exerciseRepository.save(new Exercise("Squat", "Leg exercise", user));
+        exerciseLogService.saveAll(sets(bench, 20));
+        exerciseLogService.saveAll(sets(squat, 5));
+        double logsBefore = meterRegistry.counter("gymtracker.purge.logs").count();
+
+        // Act
+        userService.deleteUser(user);
+
+        // Assert: hidden right away, and the username is free again
+        assertThat(appUserRepository.findById(user.getId())).isEmpty();
+        assertThat(appUserRepository.findByUsername("purgeuser")).isNull();
+        assertThat(exerciseRepository.findByUserId(user.getId())).isEmpty();
+
+        // Assert: the background purge removes every row
+        awaitPurged("select count(*) from user_table where id = ?", user.getId());
+        assertThat(count("select count(*) from exercise_table where user_id = ?", user.getId())).isZero();
+        assertThat(count("select count(*) from exercise_log_table where exercise_id in (?, ?)", bench.getId(), squat.getId())).isZero();
+        assertThat(count("select count(*) from exercise_daily_volume_table where exercise_id in (?, ?)", bench.getId(), squat.getId())).isZero();
+        assertThat(count("select count(*) from exercise_rep_max_table where exercise_id in (?, ?)", bench.getId(), squat.getId())).isZero();
+        assertThat(count("select count(*) from change_log_table where user_id = ?", user.getId())).isZero();
+        assertThat(count("select count(*) from change_sequence_table where user_id = ?", user.getId())).isZero();
+        assertThat(meterRegistry.counter("gymtracker.purge.logs").count() - logsBefore).isEqualTo(25);
+        assertThat(meterRegistry.get("gymtracker.purge.chunk").timer().count()).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Purge a deleted exercise and leave the user's other exercises alone")
+    public void testDeleteExercise() throws Exception {
+        // Arrange
+        AppUser user = appUserRepository.save(new AppUser("purgeexerciseuser", "password", "USER"));
+        Exercise bench = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", user));
+        Exercise squat = exerciseRepository.save(new Exercise("Squat", "Leg exercise", user));
+        exerciseLogService.saveAll(sets(bench, 10));
+        exerciseLogService.saveAll(sets(squat, 3));
+
+        // Act
+        exerciseService.deleteExercise(bench);
+
+        // Assert
+        assertThat(exerciseRepository.findById(bench.getId())).isEmpty();
+        awaitPurged("select count(*) from exercise_table where id = ?", bench.getId());
+        assertThat(count("select count(*) from exercise_log_table where exercise_id = ?", bench.getId())).isZero();
+        assertThat(count("select count(*) from exercise_log_table where exercise_id = ?", squat.getId())).isEqualTo(3);
+        assertThat(exerciseRepository.findByUserId(user.getId())).extracting(Exercise::getName).containsExactly("Squat");
+        assertThat(purgeService.getStatus().getInProgress()).isEmpty();
+    }
+
+    private List<ExerciseLog> sets(Exercise exercise, int count) {
+        List<ExerciseLog> sets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sets.add(new ExerciseLog(exercise, LocalDateTime.now().minusDays(i % 4), 100 + i, 5));
+        }
+        return sets;
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+
+    private void awaitPurged(String sql, Object... args) throws InterruptedException {
+        for (int i = 0; i < 100 && count(sql, args) > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(count(sql, args)).isZero();
+    }
+}
@@ -0,0 +1,51 @@
+package backendsyksy24.gymtracker.sharding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ShardRingTests {
+
+    private static final int USERS = 30_000;
+
+    @Test
+    @DisplayName("Spread users evenly over the shards")
+    public void testEvenSpread() {
+        // Arrange
+        ShardRing ring = new ShardRing(3, 128);
+        int[] users = new int[3];
+
+        // Act
+        for (long userId = 1; userId <= USERS; userId++) {
+            users[ring.shardFor(userId)]++;
+        }
+
+        // Assert
+        for (int count : users) {
+            assertThat(count).isBetween(USERS / 3 * 8 / 10, USERS / 3 * 12 / 10);
+        }
+    }
+
+    @Test
+    @DisplayName("Move only users of the new shard when a shard is added")
+    public void testAddShard() {
+        // Arrange
+        ShardRing before = new ShardRing(3, 128);
+        ShardRing after = new ShardRing(4, 128);
+        int moved = 0;
+
+        // Act
+        for (long userId = 1; userId <= USERS; userId++) {
+            int shard = after.shardFor(userId);
+            if (shard != before.shardFor(userId)) {
+                moved++;
+                // Users only ever move to the new shard
+                assertThat(shard).isEqualTo(3);
+            }
+        }
+
+        // Assert: about a quarter of the users move
+        assertThat(moved).isBetween(USERS / 4 * 7 / 10, USERS / 4 * 13 / 10);
+    }
+}
@@ -0,0 +1,171 @@
+package backendsyksy24.gymtracker.sharding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.service.UserService;
+import backendsyksy24.gymtracker.web.AuthenticatedUser;
+
+// Three in-memory H2 databases stand in for the shards
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+    "gymtracker.sharding.shard-urls=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+    "gymtracker.sharding.move-drain-time=PT0S",
+    "gymtracker.sharding.move-chunk-size=2"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ShardingTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Register a user on the shard the ring assigns to their id")
+    public void testRegister() {
+        // Act
+        AppUser user = userService.register(newUser("ringuser"));
+
+        // Assert
+        int shard = shardDirectory.getRing().shardFor(user.getId());
+        assertThat(shardDirectory.findByUsername("ringuser").get().getShard()).isEqualTo(shard);
+        for (int i = 0; i < 3; i++) {
+            assertThat(count(i, "select count(*) from user_table where id = ?", user.getId())).isEqualTo(i == shard ? 1 : 0);
+        }
+        assertThat(userService.findByUsername("ringuser").getId()).isEqualTo(user.getId());
+        assertThat(userService.register(newUser("ringuser"))).isNull();
+    }
+
+    @Test
+    @DisplayName("Route a user's requests to their shard and move their data to another shard")
+    public void testRequestsAndMove() throws Exception {
+        // Arrange
+        AppUser user = userService.register(newUser("mover"));
+        int source = shardDirectory.findByUserId(user.getId()).get().getShard();
+        int target = (source + 1) % 3;
+        AuthenticatedUser principal = new AuthenticatedUser(user.getId(), "mover", "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        mockMvc.perform(post("/api/users/{userId}/exercises", user.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Squat\"}"))
+                .andExpect(status().isOk());
+        Long exerciseId = new JdbcTemplate(shard(source)).queryForObject(
+                "select id from exercise_table where user_id = ?", Long.class, user.getId());
+        for (int reps = 1; reps <= 5; reps++) {
+            mockMvc.perform(post("/api/exercises/{exerciseId}/logs", exerciseId)
+                    .with(user(principal)).with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"weight\":100,\"reps\":" + reps + "}"))
+                    .andExpect(status().isOk());
+        }
+        assertThat(count(source, "select count(*) from exercise_log_table where exercise_id = ?", exerciseId)).isEqualTo(5);
+
+        // Act
+        boolean moved = shardRebalancer.moveUser(user.getId(), target);
+
+        // Assert
+        assertThat(moved).isTrue();
+        assertThat(shardDirectory.findByUserId(user.getId()).get().getShard()).isEqualTo(target);
+        assertThat(count(target, "select count(*) from exercise_log_table where exercise_id = ?", exerciseId)).isEqualTo(5);
+        assertThat(count(target, "select count(*) from exercise_daily_volume_table where exercise_id = ?", exerciseId)).isEqualTo(1);
+        assertThat(count(target, "select count(*) from exercise_record_table where exercise_id = ?", exerciseId)).isEqualTo(1);
+        assertThat(count(source, "select count(*) from exercise_log_table where exercise_id = ?", exerciseId)).isZero();
+        assertThat(count(source, "select count(*) from user_table where id = ?", user.getId())).isZero();
+
+        // The exercise keeps its id and is served from the new shard
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exerciseId).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5));
+    }
+
+    @Test
+    @DisplayName("Retry deleting a copy a move left behind, and never delete the shard the user lives on")
+    public void testCleanUp() {
+        // Arrange: a move whose delete on the source failed, so the directory still lists it
+        AppUser user = userService.register(newUser("leftover"));
+        int source = shardDirectory.findByUserId(user.getId()).get().getShard();
+        int target = (source + 1) % 3;
+        assertThat(shardRebalancer.moveUser(user.getId(), target)).isTrue();
+        assertThat(shardDirectory.findCleanups()).noneMatch(cleanup -> cleanup.getUserId() == user.getId());
+        new JdbcTemplate(shard(source)).update("insert into user_table (id, username, password, role) "
+                + "values (?, ?, 'hash', 'USER')", user.getId(), "leftover");
+        new JdbcTemplate(shard(0)).update("insert into shard_cleanup_table (user_id, shard) values (?, ?)",
+                user.getId(), source);
+        new JdbcTemplate(shard(0)).update("insert into shard_cleanup_table (user_id, shard) values (?, ?)",
+                user.getId(), target);
+
+        // Act
+        int cleaned = shardRebalancer.cleanUp();
+
+        // Assert
+        assertThat(cleaned).isEqualTo(1);
+        assertThat(count(source, "select count(*) from user_table where id = ?", user.getId())).isZero();
+        assertThat(count(target, "select count(*) from user_table where id = ?", user.getId())).isEqualTo(1);
+        assertThat(shardDirectory.findCleanups()).noneMatch(cleanup -> cleanup.getUserId() == user.getId());
+    }
+
+    @Test
+    @DisplayName("List the users of every shard")
+    public void testListUsers() throws Exception {
+        // Arrange
+        for (int i = 0; i < 6; i++) {
+            userService.register(newUser("listed" + i));
+        }
+        AuthenticatedUser admin = new AuthenticatedUser(0L, "admin", "", AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/users").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.username == 'listed0')]").exists())
+                .andExpect(jsonPath("$[?(@.username == 'listed5')]").exists());
+    }
+
+    private AppUser newUser(String username) {
+        AppUser user = new AppUser();
+        user.setUsername(username);
+        user.setPasswordHash("hash");
+        user.setRole("USER");
+        return user;
+    }
+
+    private DataSource shard(int shard) {
+        return ((ShardRoutingDataSource) dataSource).getShard(shard);
+    }
+
+    private long count(int shard, String sql, Object... args) {
+        return new JdbcTemplate(shard(shard)).queryForObject(sql, Long.class, args);
+    }
+}
@@ -0,0 +1,58 @@
+package backendsyksy24.gymtracker.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CsvReaderTests {
+
+    @Test
+    @DisplayName("Read quoted fields, doubled quotes and line breaks inside quotes")
+    public void testQuotes() throws Exception {
+        // Arrange
+        CsvReader csv = reader("\uFEFFname,notes\r\n\"Bench, paused\",\"said \"\"hi\"\"\"\r\nSquat,\"two\nlines\"\n\n"
+                + "Row,", ',');
+
+        // Act / Assert
+        assertThat(csv.readRecord()).containsExactly("name", "notes");
+        assertThat(csv.readRecord()).containsExactly("Bench, paused", "said \"hi\"");
+        assertThat(csv.getLineNumber()).isEqualTo(2);
+        assertThat(csv.readRecord()).containsExactly("Squat", "two\nlines");
+        assertThat(csv.readRecord()).containsExactly("");
+        assertThat(csv.readRecord()).containsExactly("Row", "");
+        assertThat(csv.getLineNumber()).isEqualTo(6);
+        assertThat(csv.readRecord()).isNull();
+    }
+
+    @Test
+    @DisplayName("Split on another separator")
+    public void testSeparator() throws Exception {
+        // Arrange
+        CsvReader csv = reader("Date;Weight\n2024-01-01;100,5\n", ';');
+
+        // Act / Assert
+        assertThat(csv.readRecord()).containsExactly("Date", "Weight");
+        assertThat(csv.readRecord()).containsExactly("2024-01-01", "100,5");
+    }
+
+    @Test
+    @DisplayName("Refuse an unclosed quote instead of reading the rest of the file into one field")
+    public void testUnclosedQuote() throws Exception {
+        // Arrange
+        CsvReader csv = reader("name\n\"Bench\n" + "x".repeat(200), ',');
+        csv.readRecord();
+
+        // Act / Assert
+        assertThatThrownBy(csv::readRecord).isInstanceOf(IOException.class).hasMessageContaining("Line 2");
+    }
+
+    private CsvReader reader(String input, char separator) {
+        return new CsvReader(new BufferedReader(new StringReader(input)), separator, 100);
+    }
+}
@@ -0,0 +1,83 @@
+package backendsyksy24.gymtracker.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+public class JwtKeyringTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Instances sharing a keyring file accept each other's tokens")
+    public void testSharedKeyring() throws Exception {
+        Path file = writeKeyring("k1=" + newSecret());
+
+        JwtUtil instanceA = new JwtUtil(new JwtKeyring(file.toString(), "file", ""));
+        JwtUtil instanceB = new JwtUtil(new JwtKeyring(file.toString(), "file", ""));
+
+        String token = instanceA.generateToken("user", 2L, "ROLE_USER");
+        VerifiedToken verified = instanceB.verify(token);
+
+        assertThat(verified.getSubject()).isEqualTo("user");
+        assertThat(verified.getUserId()).isEqualTo(2L);
+        assertThat(verified.getRoles()).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    @DisplayName("A key scheduled for the future verifies tokens but does not sign yet")
+    public void testScheduledRotation() throws Exception {
+        Instant future = Instant.now().plus(1, ChronoUnit.DAYS);
+        Path file = writeKeyring("old=" + newSecret(), "new=" + newSecret() + "," + future);
+        JwtKeyring keyring = new JwtKeyring(file.toString(), "file", "");
+
+        assertThat(keyring.signingKey().getKid()).isEqualTo("old");
+        assertThat(keyring.verificationKey("new")).isNotNull();
+
+        // After activation the new key signs, and the old key keeps verifying tokens issued before the switch
+        Files.writeString(file, "old=" + secretOf(keyring, "old") + "\nnew=" + secretOf(keyring, "new")
+                + "," + Instant.now().minusSeconds(1));
+        keyring.reload();
+        assertThat(keyring.signingKey().getKid()).isEqualTo("new");
+        assertThat(keyring.verificationKey("old")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Tokens signed with a key that is not in the keyring are rejected")
+    public void testUnknownKeyRejected() throws Exception {
+        JwtUtil issuer = new JwtUtil(new JwtKeyring(writeKeyring("k1=" + newSecret()).toString(), "file", ""));
+        JwtUtil verifier = new JwtUtil(new JwtKeyring(writeKeyring("k2=" + newSecret()).toString(), "file", ""));
+
+        String token = issuer.generateToken("user", 2L, "ROLE_USER");
+
+        assertThatThrownBy(() -> verifier.verify(token)).isInstanceOf(JwtException.class);
+    }
+
+    private Path writeKeyring(String... lines) throws Exception {
+        Path file = Files.createTempFile(tempDir, "keyring", ".properties");
+        Files.writeString(file, String.join("\n", lines));
+        return file;
+    }
+
+    private String newSecret() {
+        return Base64.getEncoder().encodeToString(Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+    }
+
+    private String secretOf(JwtKeyring keyring, String kid) {
+        return Base64.getEncoder().encodeToString(keyring.verificationKey(kid).getEncoded());
+    }
+}
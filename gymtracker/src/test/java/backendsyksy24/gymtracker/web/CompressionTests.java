@@ -0,0 +1,108 @@
+package backendsyksy24.gymtracker.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+import backendsyksy24.gymtracker.util.JwtUtil;
+
+// Against the embedded Tomcat, which does the compressing; MockMvc never compresses
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class CompressionTests {
+
+    private static final int LOGS = 100;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Exercise exercise;
+    private String token;
+
+    @BeforeEach
+    public void setUp() {
+        AppUser appUser = appUserRepository.save(new AppUser("gzip" + System.nanoTime(), "password", "USER"));
+        exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+        List<ExerciseLog> logs = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 18, 0);
+        for (int i = 0; i < LOGS; i++) {
+            logs.add(new ExerciseLog(exercise, start.plusDays(i), 60 + i, 1 + i % 10));
+        }
+        exerciseLogService.saveAll(logs);
+        token = jwtUtil.generateToken(appUser.getUsername(), appUser.getId(), "ROLE_USER");
+    }
+
+    @Test
+    @DisplayName("Gzip a cached full log list over the minimum size, and still answer its tag with 304")
+    public void testCachedLogsCompressed() throws Exception {
+        // Act: the first read fills the cache, the second is served from it
+        get(null);
+        HttpResponse<byte[]> cached = get(null);
+
+        // Assert
+        assertThat(cached.statusCode()).isEqualTo(200);
+        assertThat(cached.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        String etag = cached.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+        assertThat(etag).startsWith("W/");
+        byte[] body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(cached.body()))) {
+            body = in.readAllBytes();
+        }
+        assertThat(body.length).isGreaterThan(2048);
+        assertThat(objectMapper.readTree(body).size()).isEqualTo(LOGS);
+
+        assertThat(get(etag).statusCode()).isEqualTo(304);
+    }
+
+    private HttpResponse<byte[]> get(String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/exercises/" + exercise.getId() + "/logs"))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,141 @@
+package backendsyksy24.gymtracker.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.querycount.QueryCountFilter;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "gymtracker.query-count.expose=true")
+@AutoConfigureMockMvc
+public class ResponseCacheTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("etag" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, LocalDateTime.now().minusDays(1), 100, 5),
+                new ExerciseLog(exercise, LocalDateTime.now(), 105, 3)));
+    }
+
+    @Test
+    @DisplayName("Answer a repeat log read from the cache or with 304, and serve a new version after a write")
+    public void testExerciseLogs() throws Exception {
+        // Act: a first read, a repeat read and a conditional read
+        String etag = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        MvcResult repeat = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andReturn();
+        MvcResult notModified = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, etag).with(user(principal)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andReturn();
+
+        // Assert: only the version was looked up
+        assertThat(etag).isNotNull();
+        assertThat(queryCount(repeat)).isEqualTo(1);
+        assertThat(queryCount(notModified)).isEqualTo(1);
+        assertThat(notModified.getResponse().getContentAsByteArray()).isEmpty();
+
+        // Act: a write gives the logs a new version
+        mockMvc.perform(post("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"weight\":110,\"reps\":2}"))
+                .andExpect(status().isOk());
+
+        // Assert
+        String newEtag = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, etag).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    @DisplayName("Give a user's exercise list a new ETag when an exercise is added or deleted")
+    public void testUserExercises() throws Exception {
+        // Arrange
+        String etag = exercisesEtag(1);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/users/{userId}/exercises", appUser.getId())
+                .with(user(principal)).with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Squat\"}"))
+                .andExpect(status().isOk());
+        String afterAdd = exercisesEtag(2);
+        assertThat(afterAdd).isNotEqualTo(etag);
+
+        mockMvc.perform(delete("/api/users/{userId}/exercises/{exerciseId}", appUser.getId(), exercise.getId())
+                .with(user(principal)).with(csrf()))
+                .andExpect(status().isOk());
+        assertThat(exercisesEtag(1)).isNotIn(etag, afterAdd);
+    }
+
+    private String exercisesEtag(int expectedExercises) throws Exception {
+        return mockMvc.perform(get("/api/users/{userId}/exercises", appUser.getId()).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(expectedExercises))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private long queryCount(MvcResult result) {
+        return Long.parseLong(result.getResponse().getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+    }
+}
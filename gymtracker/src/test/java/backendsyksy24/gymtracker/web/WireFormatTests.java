@@ -0,0 +1,165 @@
+package backendsyksy24.gymtracker.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import backendsyksy24.gymtracker.model.AppUser;
+import backendsyksy24.gymtracker.model.Exercise;
+import backendsyksy24.gymtracker.model.ExerciseLog;
+import backendsyksy24.gymtracker.repository.AppUserRepository;
+import backendsyksy24.gymtracker.repository.ExerciseRepository;
+import backendsyksy24.gymtracker.service.ExerciseLogService;
+
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class WireFormatTests {
+
+    private static final String COLUMNAR_JSON = "application/vnd.gymtracker.columnar+json";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ExerciseLogService exerciseLogService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    private AppUser appUser;
+    private Exercise exercise;
+    private AuthenticatedUser principal;
+    private LocalDateTime first;
+
+    @BeforeEach
+    public void setUp() {
+        appUser = appUserRepository.save(new AppUser("wire" + System.nanoTime(), "password", "USER"));
+        principal = new AuthenticatedUser(appUser.getId(), appUser.getUsername(), "",
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        exercise = exerciseRepository.save(new Exercise("Bench Press", "Chest exercise", appUser));
+        first = LocalDateTime.of(2024, 3, 1, 18, 0);
+        exerciseLogService.saveAll(List.of(new ExerciseLog(exercise, first, 100, 5),
+                new ExerciseLog(exercise, first.plusMinutes(3), 105, 3),
+                new ExerciseLog(exercise, first.plusDays(2), 110, 2)));
+    }
+
+    @Test
+    @DisplayName("Choose the format the Accept header prefers, and JSON for anything else")
+    public void testNegotiate() {
+        assertThat(WireFormat.negotiate(null)).isEqualTo(WireFormat.JSON);
+        assertThat(WireFormat.negotiate("*/*")).isEqualTo(WireFormat.JSON);
+        assertThat(WireFormat.negotiate("text/html, not a type")).isEqualTo(WireFormat.JSON);
+        assertThat(WireFormat.negotiate("application/cbor")).isEqualTo(WireFormat.CBOR);
+        assertThat(WireFormat.negotiate("application/json;q=0.5, " + COLUMNAR_JSON))
+                .isEqualTo(WireFormat.COLUMNAR_JSON);
+        assertThat(WireFormat.negotiate("application/vnd.gymtracker.columnar+cbor;q=0.8, application/json"))
+                .isEqualTo(WireFormat.JSON);
+    }
+
+    @Test
+    @DisplayName("Serve the logs in delta-encoded columns, cached and tagged apart from the JSON rows")
+    public void testColumnarLogs() throws Exception {
+        // Act
+        MvcResult rows = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .with(user(principal)))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult columns = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.ACCEPT, COLUMNAR_JSON).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(COLUMNAR_JSON))
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.weights[0]").value(100))
+                .andExpect(jsonPath("$.reps[2]").value(2))
+                .andReturn();
+
+        // Assert: the first timestamp is absolute and the next ones are differences
+        long[] timestamps = objectMapper.readTree(columns.getResponse().getContentAsByteArray())
+                .get("timestamps").traverse(objectMapper).readValueAs(long[].class);
+        assertThat(timestamps).containsExactly(first.toInstant(ZoneOffset.UTC).toEpochMilli(), 3 * 60_000,
+                2 * 86_400_000 - 3 * 60_000);
+        assertThat(columns.getResponse().getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT);
+        String etag = columns.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull().isNotEqualTo(rows.getResponse().getHeader(HttpHeaders.ETAG));
+
+        mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .header(HttpHeaders.ACCEPT, COLUMNAR_JSON).header(HttpHeaders.IF_NONE_MATCH, etag)
+                .with(user(principal)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("Encode a log page in CBOR with the same content as the JSON")
+    public void testCborLogs() throws Exception {
+        // Act
+        byte[] json = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .param("limit", "2").with(user(principal)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        MvcResult cbor = mockMvc.perform(get("/api/exercises/{exerciseId}/logs", exercise.getId())
+                .param("limit", "2").header(HttpHeaders.ACCEPT, "application/cbor").with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+
+        // Assert
+        byte[] body = cbor.getResponse().getContentAsByteArray();
+        assertThat(body.length).isLessThan(json.length);
+        assertThat(cborConverter.getObjectMapper().readTree(body)).isEqualTo(objectMapper.readTree(json));
+    }
+
+    @Test
+    @DisplayName("Serve the dashboard and the volume with the daily totals in columns")
+    public void testColumnarTotals() throws Exception {
+        mockMvc.perform(get("/api/users/{userId}/dashboard", appUser.getId())
+                .header(HttpHeaders.ACCEPT, COLUMNAR_JSON).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Bench Press"))
+                .andExpect(jsonPath("$[0].days.count").value(2))
+                .andExpect(jsonPath("$[0].days.sets[0]").value(1))
+                .andExpect(jsonPath("$[0].days.sets[1]").value(2));
+
+        mockMvc.perform(get("/api/exercises/{exerciseId}/volume", exercise.getId())
+                .param("from", "2024-03-01").param("to", "2024-03-31")
+                .header(HttpHeaders.ACCEPT, COLUMNAR_JSON).with(user(principal)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.dates[0]").value((int) first.toLocalDate().toEpochDay()))
+                .andExpect(jsonPath("$.dates[1]").value(2))
+                .andExpect(jsonPath("$.volumes[1]").value(220));
+    }
+}